@@ -3,6 +3,7 @@ module jrawio {
     requires javafx.fxml;
     requires transitive javafx.graphics;
     requires java.desktop;
+    requires java.xml;
     requires static lombok;
 
     opens org.jrawio to javafx.fxml;
@@ -13,4 +14,6 @@ module jrawio {
 
     exports org.jrawio.controller.components;
     exports org.jrawio.controller.shape;
+    exports org.jrawio.model;
+    exports org.jrawio.model.command;
 }
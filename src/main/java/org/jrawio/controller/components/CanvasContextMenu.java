@@ -5,6 +5,10 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
 import javafx.scene.layout.Pane;
 import org.jrawio.controller.shape.Shape;
+import org.jrawio.controller.shape.ShapeSelectionModel;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 画布右键菜单类
@@ -106,12 +110,13 @@ public class CanvasContextMenu {
      * 全选画布中的所有形状
      */
     public void selectAllShapes() {
+        List<Shape> shapes = new ArrayList<>();
         for (javafx.scene.Node node : canvasPane.getChildren()) {
             if (node instanceof Shape) {
-                Shape shape = (Shape) node;
-                shape.setSelected(true);
+                shapes.add((Shape) node);
             }
         }
+        ShapeSelectionModel.getInstance().selectAll(shapes);
     }
 
     /**
@@ -0,0 +1,119 @@
+package org.jrawio.controller.components;
+
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.ImagePattern;
+import javafx.scene.transform.Scale;
+
+/**
+ * 背景网格层
+ * 网格画布只覆盖当前可见区域，使用一个网格单元大小的图块作为重复图案填充，
+ * 图块只在缩放比例变化时重新生成。网格占用的内存只与视口大小有关，与文档大小无关。
+ */
+public class GridLayer {
+
+    /** 网格间隔（画布坐标） */
+    private static final double GRID_SIZE = 20;
+
+    /** 网格线在屏幕上的最小间隔（像素），缩小时合并网格避免过密 */
+    private static final double MIN_SCREEN_SPACING = 8;
+
+    /** 用于显示网格的画布 */
+    private final Canvas gridCanvas;
+
+    /** 把网格画布的像素映射回画布坐标的变换 */
+    private final Scale canvasScale = new Scale(1, 1);
+
+    /** 当前图块对应的缩放比例 */
+    private double tileZoom = -1;
+
+    /** 当前实际使用的网格间隔（画布坐标） */
+    private double gridStep = GRID_SIZE;
+
+    /** 网格图块图案 */
+    private ImagePattern tilePattern;
+
+    /**
+     * 构造函数
+     *
+     * @param gridCanvas 用于显示网格的画布
+     */
+    public GridLayer(Canvas gridCanvas) {
+        this.gridCanvas = gridCanvas;
+        gridCanvas.setMouseTransparent(true);
+        gridCanvas.getTransforms().add(canvasScale);
+    }
+
+    /**
+     * 让网格覆盖指定的可见区域
+     *
+     * @param viewport 可见区域（画布坐标）
+     * @param zoom     画布缩放比例
+     */
+    public void setViewport(Bounds viewport, double zoom) {
+        if (viewport == null || viewport.isEmpty() || zoom <= 0) {
+            return;
+        }
+        if (zoom != tileZoom) {
+            regenerateTile(zoom);
+        }
+
+        // 起点对齐到网格线，使图案从画布左上角开始重复
+        double x = Math.floor(viewport.getMinX() / gridStep) * gridStep;
+        double y = Math.floor(viewport.getMinY() / gridStep) * gridStep;
+        double width = Math.ceil((viewport.getMaxX() - x) * zoom);
+        double height = Math.ceil((viewport.getMaxY() - y) * zoom);
+
+        gridCanvas.setLayoutX(x);
+        gridCanvas.setLayoutY(y);
+        gridCanvas.setWidth(width);
+        gridCanvas.setHeight(height);
+        canvasScale.setX(1 / zoom);
+        canvasScale.setY(1 / zoom);
+
+        GraphicsContext gc = gridCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        gc.setFill(tilePattern);
+        gc.fillRect(0, 0, width, height);
+    }
+
+    /**
+     * 按缩放比例重新生成网格图块
+     *
+     * @param zoom 画布缩放比例
+     */
+    private void regenerateTile(double zoom) {
+        tileZoom = zoom;
+
+        // 缩小时按5倍合并网格，保证网格线在屏幕上不会过密
+        gridStep = GRID_SIZE;
+        while (gridStep * zoom < MIN_SCREEN_SPACING) {
+            gridStep *= 5;
+        }
+
+        double tileSize = Math.max(1, Math.round(gridStep * zoom));
+        Canvas tileCanvas = new Canvas(tileSize, tileSize);
+        GraphicsContext gc = tileCanvas.getGraphicsContext2D();
+
+        // 填充白色背景
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, tileSize, tileSize);
+
+        // 图块只画左边和上边的网格线，重复后形成完整网格
+        gc.setStroke(Color.LIGHTGRAY);
+        gc.setLineWidth(0.5);
+        gc.strokeLine(0.25, 0, 0.25, tileSize);
+        gc.strokeLine(0, 0.25, tileSize, 0.25);
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        WritableImage tile = tileCanvas.snapshot(params, null);
+        // 图案按精确的屏幕间隔重复，避免取整后网格线逐渐偏移
+        double spacing = gridStep * zoom;
+        tilePattern = new ImagePattern(tile, 0, 0, spacing, spacing, false);
+    }
+}
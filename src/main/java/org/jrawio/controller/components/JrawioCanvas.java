@@ -12,16 +12,43 @@ import javafx.scene.Node;
 import javafx.geometry.Point2D;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.KeyCode;
+import org.jrawio.controller.shape.ConnectorLayer;
+import org.jrawio.controller.shape.DiagramBinding;
+import org.jrawio.controller.shape.DirtyRegion;
+import org.jrawio.controller.shape.ElementPainter;
+import org.jrawio.controller.shape.LineShape;
+import org.jrawio.controller.shape.SceneRenderer;
+import org.jrawio.controller.shape.SelectionOverlay;
 import org.jrawio.controller.shape.Shape;
-import org.jrawio.controller.shape.ShapeType;
+import org.jrawio.model.ShapeType;
 import org.jrawio.controller.shape.ShapeFactory;
+import org.jrawio.controller.shape.ShapeSelectionModel;
+import org.jrawio.controller.shape.ShapeSpatialIndex;
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramElement;
+import org.jrawio.model.DiagramFile;
+import org.jrawio.model.DiagramSnapshot;
+import org.jrawio.model.DrawioFile;
+import org.jrawio.model.command.CommandStack;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public class JrawioCanvas {
     @FXML
     private Canvas gridCanvas;
 
+    @FXML
+    private Canvas sceneCanvas;
+
+    @FXML
+    private Canvas connectorCanvas;
+
+    @FXML
+    private Canvas selectionCanvas;
+
     @FXML
     private Pane canvasPane;
 
@@ -33,25 +60,104 @@ public class JrawioCanvas {
     // 剪贴板
     private ShapeClipboard shapeClipboard;
 
+    // 图形空间索引
+    private ShapeSpatialIndex spatialIndex;
+
+    // 单画布渲染器及其事件转发
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    private SceneRenderer sceneRenderer;
+    private ShapeEventRouter shapeEventRouter;
+
+    // 连接线层和选中覆盖层
+    private ConnectorLayer connectorLayer;
+    private SelectionOverlay selectionOverlay;
+
+    // 背景网格
+    private GridLayer gridLayer;
+
+    // 缩放平移和视口剔除
+    private ZoomPanController zoomPanController;
+    private ViewportCuller viewportCuller;
+
+    // 文档模型，画布上的图形是它的投影
+    private final Diagram diagram = new Diagram();
+    private DiagramBinding diagramBinding;
+
+    // 撤销/重做栈，记录文档模型的每次修改
+    private CommandStack commandStack;
+
+    // 全选时文档中所有图元的ID，没有全选时为null
+    // 图元很多时可见区域之外的图元没有图形，全选后的删除按这些ID进行，之后加入的图元不受影响
+    private List<Integer> selectAllIds;
+
+    // 当前打开或保存的文件，尚未保存时为null
+    private java.io.File currentFile;
+
+    // 上次保存、打开或导入时文档的版本号，与当前版本号不同说明有未保存的修改
+    private long savedVersion;
+
+    // 在后台写入保存和导出的文件，按提交顺序逐个执行，空闲时线程退出；
+    // 写入线程不是守护线程，关闭窗口时正在写入的文件会写完
+    private final java.util.concurrent.ThreadPoolExecutor fileWriter = createFileWriter();
+
     @FXML
     public void initialize() {
         // 初始化剪贴板
         shapeClipboard = ShapeClipboard.getInstance();
 
+        // 初始化图形空间索引
+        spatialIndex = ShapeSpatialIndex.of(canvasPane);
+
+        // 绑定文档模型
+        diagramBinding = new DiagramBinding(diagram, canvasPane);
+        commandStack = new CommandStack(diagram);
+        savedVersion = diagram.getVersion();
+
+        // 选择发生其他变化后不再是全选
+        ShapeSelectionModel.getInstance().addListener(selection -> selectAllIds = null);
+
         // 设置canvasPane的大小
         double paneWidth = 1200; // 设置更大的画布区域
         double paneHeight = 800;
         canvasPane.setPrefWidth(paneWidth);
         canvasPane.setPrefHeight(paneHeight);
 
-        // 调整gridCanvas大小以覆盖整个区域
-        gridCanvas.setWidth(paneWidth);
-        gridCanvas.setHeight(paneHeight);
-        gridCanvas.setLayoutX(0);
-        gridCanvas.setLayoutY(0);
-
-        // 让gridCanvas不响应鼠标事件
-        gridCanvas.setMouseTransparent(true);
+        // 网格只覆盖可见区域，初始时覆盖整个画布区域
+        gridLayer = new GridLayer(gridCanvas);
+        gridLayer.setViewport(new javafx.geometry.BoundingBox(0, 0, paneWidth, paneHeight), 1.0);
+
+        // 调整sceneCanvas大小以覆盖整个区域
+        sceneCanvas.setWidth(paneWidth);
+        sceneCanvas.setHeight(paneHeight);
+        sceneCanvas.setLayoutX(0);
+        sceneCanvas.setLayoutY(0);
+
+        // 初始化连接线层和选中覆盖层，初始时覆盖整个画布区域
+        javafx.geometry.Bounds initialViewport = new javafx.geometry.BoundingBox(0, 0, paneWidth, paneHeight);
+        connectorLayer = new ConnectorLayer(canvasPane, connectorCanvas);
+        connectorLayer.setViewport(initialViewport, 1.0);
+        selectionOverlay = new SelectionOverlay(canvasPane, selectionCanvas);
+        selectionOverlay.setViewport(initialViewport, 1.0);
+
+        // 初始化单画布渲染器（默认关闭），线形始终由连接线层绘制
+        // 控制点和连接线的事件转发始终启用
+        sceneRenderer = new SceneRenderer(canvasPane, sceneCanvas, dirtyRegion,
+                shape -> !(shape instanceof LineShape));
+        shapeEventRouter = new ShapeEventRouter(canvasPane, this::pickShapeAt, this::pickLayerShapeAt);
+
+        // 初始化缩放平移
+        zoomPanController = new ZoomPanController(canvasPane);
+
+        // 初始化视口剔除，网格、单画布渲染、连接线层、选中覆盖层的画布跟随可见区域和缩放比例，
+        // 模型投影跟随带边距的剔除区域
+        viewportCuller = new ViewportCuller(canvasPane, (visibleArea, viewport) -> {
+            gridLayer.setViewport(visibleArea, zoomPanController.getZoom());
+            sceneRenderer.setViewport(visibleArea, zoomPanController.getZoom());
+            connectorLayer.setViewport(visibleArea, zoomPanController.getZoom());
+            selectionOverlay.setViewport(visibleArea, zoomPanController.getZoom());
+            // 图元很多时只为剔除区域内的图元创建图形
+            diagramBinding.setViewport(viewport);
+        });
 
         // 初始化拖拽功能
         initializeDragAndDrop();
@@ -62,42 +168,6 @@ public class JrawioCanvas {
 
         // 初始化键盘快捷键
         initializeKeyboardShortcuts();
-
-        drawGrid();
-    }
-
-    private void drawGrid() {
-        double width = gridCanvas.getWidth();
-        double height = gridCanvas.getHeight();
-        double gridSize = 20; // 网格间隔
-
-        GraphicsContext gc = gridCanvas.getGraphicsContext2D();
-
-        // 清除画布
-        gc.clearRect(0, 0, width, height);
-
-        // 填充白色背景
-        gc.setFill(Color.WHITE);
-        gc.fillRect(0, 0, width, height);
-
-        // 设置网格线样式
-        gc.setStroke(Color.LIGHTGRAY);
-        gc.setLineWidth(0.5);
-
-        // 画竖线 - 覆盖整个宽度
-        for (double x = 0; x <= width; x += gridSize) {
-            gc.strokeLine(x, 0, x, height);
-        }
-
-        // 画横线 - 覆盖整个高度
-        for (double y = 0; y <= height; y += gridSize) {
-            gc.strokeLine(0, y, width, y);
-        }
-
-        // 添加边框
-        gc.setStroke(Color.GRAY);
-        gc.setLineWidth(1);
-        gc.strokeRect(0, 0, width, height);
     }
 
     /**
@@ -165,7 +235,7 @@ public class JrawioCanvas {
             shape.setLayoutX(x - shape.getWidth() / 2);
             shape.setLayoutY(y - shape.getHeight() / 2);
             canvasPane.getChildren().add(shape);
-            shape.draw();
+            shape.requestRedraw();
             return true;
         } catch (Exception e) {
             System.err.println("创建形状失败: " + e.getMessage());
@@ -230,6 +300,9 @@ public class JrawioCanvas {
      * 处理框选结束事件
      */
     private void onSelectionMouseReleased(javafx.scene.input.MouseEvent event) {
+        // 图形处理释放事件时会消费它；释放到达画布说明按下的图形可能已被移除，在这里结束合并撤销的操作
+        diagramBinding.endGesture();
+
         if (selectionRect.isVisible()) {
             selectShapesInRectangle();
             selectionRect.setVisible(false);
@@ -238,26 +311,11 @@ public class JrawioCanvas {
 
     /**
      * 选择在选区框内的所有Shape
+     * 通过空间索引只查询与选区相交的图形，整体替换当前选择，只通知一次右侧面板
      */
     private void selectShapesInRectangle() {
-        for (javafx.scene.Node node : canvasPane.getChildren()) {
-            if (node instanceof Shape) {
-                Shape shape = (Shape) node;
-                boolean isInSelection = isShapeInSelection(shape);
-                shape.setSelected(isInSelection);
-            }
-        }
-    }
-
-    /**
-     * 判断Shape是否在选区内
-     */
-    private boolean isShapeInSelection(Shape shape) {
-        double sx = shape.getLayoutX();
-        double sy = shape.getLayoutY();
-        double sw = shape.getWidth();
-        double sh = shape.getHeight();
-        return selectionRect.getBoundsInParent().intersects(sx, sy, sw, sh);
+        List<Shape> shapesInSelection = spatialIndex.query(selectionRect.getBoundsInParent());
+        ShapeSelectionModel.getInstance().setSelection(shapesInSelection);
     }
 
     /**
@@ -276,6 +334,21 @@ public class JrawioCanvas {
      */
     private void setupCanvasMouseEvents() {
         canvasPane.setOnMousePressed(this::onCanvasMousePressed);
+
+        // 窗口失去焦点时释放事件可能不再送达，结束进行中的合并撤销的操作，之后的修改不再并入其中
+        canvasPane.sceneProperty().addListener((sceneObs, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((windowObs, oldWindow, window) -> {
+                    if (window != null) {
+                        window.focusedProperty().addListener((focusObs, wasFocused, focused) -> {
+                            if (!focused) {
+                                diagramBinding.endGesture();
+                            }
+                        });
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -318,12 +391,13 @@ public class JrawioCanvas {
      * 全选功能实现
      */
     private void selectAllShapes() {
-        for (javafx.scene.Node node : canvasPane.getChildren()) {
-            if (node instanceof Shape) {
-                Shape shape = (Shape) node;
-                shape.setSelected(true);
-            }
+        ShapeSelectionModel.getInstance().selectAll(spatialIndex.getShapes());
+        // 只有已创建的图形能被选中，记录此时的全部图元，删除时包括没有图形的图元
+        List<Integer> ids = new ArrayList<>(diagram.size());
+        for (DiagramElement element : diagram.getElements()) {
+            ids.add(element.getId());
         }
+        selectAllIds = ids;
     }
 
     /**
@@ -348,10 +422,8 @@ public class JrawioCanvas {
             return;
         }
 
-        // 将粘贴的图形添加到画布
-        for (Shape shape : pastedShapes) {
-            canvasPane.getChildren().add(shape);
-        }
+        // 将粘贴的图形一次性添加到画布
+        addShapes(pastedShapes);
 
         System.out.println("Successfully pasted " + pastedShapes.size() + " shapes at position (" +
                 clickPosition.getX() + ", " + clickPosition.getY() + ")");
@@ -379,22 +451,71 @@ public class JrawioCanvas {
         canvasContextMenu.addSeparator();
         canvasContextMenu.addMenuItem("粘贴", this::pasteFromClipboard);
         canvasContextMenu.addSeparator();
+        canvasContextMenu.addMenuItem("打开...", this::openDiagram);
+        canvasContextMenu.addMenuItem("保存", this::saveDiagram);
+        canvasContextMenu.addMenuItem("另存为...", this::saveDiagramAs);
+        canvasContextMenu.addMenuItem("导入draw.io...", this::importDrawio);
+        canvasContextMenu.addMenuItem("导出为draw.io...", this::exportDrawio);
+        canvasContextMenu.addSeparator();
         canvasContextMenu.addMenuItem("导出为PNG", this::exportToPNG);
+        canvasContextMenu.addSeparator();
+        if (sceneRenderer.isEnabled()) {
+            canvasContextMenu.addMenuItem("关闭单画布渲染", () -> setRetainedRendering(false));
+        } else {
+            canvasContextMenu.addMenuItem("启用单画布渲染", () -> setRetainedRendering(true));
+        }
+    }
+
+    /**
+     * 启用或关闭单画布渲染
+     * 启用后所有图形统一绘制到sceneCanvas上，鼠标事件通过命中测试转发给图形
+     *
+     * @param enabled 是否启用
+     */
+    public void setRetainedRendering(boolean enabled) {
+        sceneRenderer.setEnabled(enabled);
+        shapeEventRouter.setEnabled(enabled);
+        System.out.println("Single canvas rendering " + (enabled ? "enabled" : "disabled"));
+    }
+
+    /**
+     * 查找指定位置上最上层的图形
+     *
+     * @param x 画布坐标X
+     * @param y 画布坐标Y
+     * @return 命中的图形，没有则返回null
+     */
+    private Shape pickShapeAt(double x, double y) {
+        return sceneRenderer.pick(x, y);
+    }
+
+    /**
+     * 查找指定位置上共享层中的图形
+     * 选中控制点优先，其次是连接线
+     *
+     * @param x 画布坐标X
+     * @param y 画布坐标Y
+     * @return 命中的图形，没有则返回null
+     */
+    private Shape pickLayerShapeAt(double x, double y) {
+        Shape owner = selectionOverlay.pickHandleOwner(x, y);
+        return owner != null ? owner : connectorLayer.pick(x, y);
+    }
+
+    /**
+     * 获取画布对应的文档模型
+     * 
+     * @return 文档模型
+     */
+    public Diagram getDiagram() {
+        return diagram;
     }
 
     /**
      * 检查是否有选中的图形
      */
     private boolean hasSelectedShapes() {
-        for (javafx.scene.Node node : canvasPane.getChildren()) {
-            if (node instanceof Shape) {
-                Shape shape = (Shape) node;
-                if (shape.isSelected()) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return !ShapeSelectionModel.getInstance().isEmpty();
     }
 
     /**
@@ -422,27 +543,112 @@ public class JrawioCanvas {
     }
 
     /**
-     * 删除选中的图形
+     * 批量添加图形
+     * 已经在画布中的图形被忽略，其余图形通过一次子节点列表修改加入画布
+     *
+     * @param shapes 要添加的图形
      */
-    private void deleteSelectedShapes() {
-        // 获取所有选中的图形
-        List<Shape> shapesToDelete = new ArrayList<>();
-        for (Node node : canvasPane.getChildren()) {
-            if (node instanceof Shape) {
-                Shape shape = (Shape) node;
-                if (shape.isSelected()) {
-                    shapesToDelete.add(shape);
+    public void addShapes(Collection<? extends Shape> shapes) {
+        List<Shape> added = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            if (shape.getParent() == null) {
+                added.add(shape);
+            }
+        }
+        if (!added.isEmpty()) {
+            // 所有图形的加入作为一步撤销
+            commandStack.beginCompound();
+            try {
+                canvasPane.getChildren().addAll(added);
+            } finally {
+                commandStack.endCompound();
+            }
+        }
+    }
+
+    /**
+     * 批量删除图形
+     * 连接到被删除块状图形的箭头一起删除，子节点列表只修改一次，选择变化只通知一次
+     *
+     * @param shapes 要删除的图形
+     * @return 实际删除的图形数量，包括一起删除的箭头
+     */
+    public int removeShapes(Collection<? extends Shape> shapes) {
+        return Shape.deleteShapes(shapes);
+    }
+
+    /**
+     * 按图元ID批量删除图元
+     * 图元不论是否有对应的图形都会被删除，连接到被删除块状图元的连线一起删除，所有删除作为一步撤销
+     *
+     * @param ids 要删除的图元ID
+     * @return 实际删除的图元数量，包括一起删除的连线
+     */
+    public int removeElements(Collection<Integer> ids) {
+        Set<Integer> removed = new LinkedHashSet<>();
+        for (int id : ids) {
+            DiagramElement element = diagram.get(id);
+            if (element == null || !removed.add(id) || element.isEdge()) {
+                continue;
+            }
+            for (int edgeId : diagram.getAdjacency().getConnectedEdges(id)) {
+                removed.add(edgeId);
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+
+        commandStack.beginCompound();
+        try {
+            // 有图形的图元通过图形删除，同时维护保留下来的图形之间的连接关系
+            List<Shape> shapes = new ArrayList<>();
+            for (int id : removed) {
+                Shape shape = diagramBinding.getShape(id);
+                if (shape != null) {
+                    shapes.add(shape);
+                }
+            }
+            removeShapes(shapes);
+
+            // 其余图元直接从模型中删除，先删除连线，删除块状图元时不再逐条断开
+            for (int id : removed) {
+                DiagramElement element = diagram.get(id);
+                if (element != null && element.isEdge()) {
+                    diagram.remove(id);
                 }
             }
+            for (int id : removed) {
+                diagram.remove(id);
+            }
+        } finally {
+            commandStack.endCompound();
+        }
+        return removed.size();
+    }
+
+    /**
+     * 删除选中的图形
+     */
+    private void deleteSelectedShapes() {
+        if (selectAllIds != null) {
+            // 全选时删除全选那一刻文档中的所有图元，包括可见区域之外没有图形的图元；
+            // 之后粘贴、拖入或重做加入的图元没有被选中，不删除，已经不存在的图元被跳过
+            List<Integer> ids = selectAllIds;
+            selectAllIds = null;
+            int deleted = removeElements(ids);
+            System.out.println("Deleted all " + deleted + " elements");
+            return;
         }
 
+        // 获取所有选中的图形
+        ShapeSelectionModel selectionModel = ShapeSelectionModel.getInstance();
+        List<Shape> shapesToDelete = new ArrayList<>(selectionModel.getSelectedShapes());
+
         if (!shapesToDelete.isEmpty()) {
-            // 删除所有选中的图形
-            for (Shape shape : shapesToDelete) {
-                // 调用 Shape 的删除方法，会自动处理清理逻辑
-                shape.deleteShape();
-            }
-            System.out.println("Deleted " + shapesToDelete.size() + " selected shapes");
+            // 批量删除所有选中的图形以及连接到它们的箭头
+            int deleted = removeShapes(shapesToDelete);
+            System.out.println("Deleted " + shapesToDelete.size() + " selected shapes (" + deleted + " in total)");
         } else {
             System.out.println("No shapes selected for deletion");
         }
@@ -488,15 +694,391 @@ public class JrawioCanvas {
             selectAllShapes();
             event.consume();
         }
+        // Ctrl+Shift+Z 或 Ctrl+Y - 重做
+        else if (event.isControlDown() && (event.getCode() == KeyCode.Y
+                || (event.isShiftDown() && event.getCode() == KeyCode.Z))) {
+            redo();
+            event.consume();
+        }
+        // Ctrl+Z - 撤销
+        else if (event.isControlDown() && event.getCode() == KeyCode.Z) {
+            undo();
+            event.consume();
+        }
+        // Ctrl+Shift+S - 另存为
+        else if (event.isControlDown() && event.isShiftDown() && event.getCode() == KeyCode.S) {
+            saveDiagramAs();
+            event.consume();
+        }
+        // Ctrl+S - 保存
+        else if (event.isControlDown() && event.getCode() == KeyCode.S) {
+            saveDiagram();
+            event.consume();
+        }
+        // Ctrl+O - 打开
+        else if (event.isControlDown() && event.getCode() == KeyCode.O) {
+            openDiagram();
+            event.consume();
+        }
+    }
+
+    /**
+     * 撤销最近一步操作
+     */
+    public void undo() {
+        try {
+            if (commandStack.undo()) {
+                refreshRightPanel();
+            } else {
+                System.out.println("Nothing to undo");
+            }
+        } catch (java.io.UncheckedIOException e) {
+            showError("无法撤销", "较早的撤销记录无法从临时文件读回：" + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 重做最近撤销的操作
+     */
+    public void redo() {
+        try {
+            if (commandStack.redo()) {
+                refreshRightPanel();
+            } else {
+                System.out.println("Nothing to redo");
+            }
+        } catch (java.io.UncheckedIOException e) {
+            showError("无法重做", "较早的重做记录无法从临时文件读回：" + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 获取撤销/重做栈
+     *
+     * @return 撤销/重做栈
+     */
+    public CommandStack getCommandStack() {
+        return commandStack;
+    }
+
+    /**
+     * 撤销或重做修改了图形的属性，右侧面板重新显示选中图形的属性
+     */
+    private void refreshRightPanel() {
+        RightPanel rightPanel = RightPanel.getInstance();
+        if (rightPanel != null) {
+            rightPanel.onShapeSelectionChanged(ShapeSelectionModel.getInstance().getSelectedShapes());
+        }
+    }
+
+    /**
+     * 保存到当前文件，尚未保存过时选择文件
+     */
+    public void saveDiagram() {
+        if (currentFile == null) {
+            saveDiagramAs();
+        } else {
+            saveDiagramTo(currentFile);
+        }
+    }
+
+    /**
+     * 是否有上次保存、打开或导入之后的修改
+     *
+     * @return true如果有未保存的修改
+     */
+    public boolean hasUnsavedChanges() {
+        return diagram.getVersion() != savedVersion;
+    }
+
+    /**
+     * 打开和导入会替换全部内容并清空撤销历史，有未保存的修改时请用户确认
+     *
+     * @return true如果没有未保存的修改或用户确认丢弃
+     */
+    private boolean confirmDiscardChanges() {
+        if (!hasUnsavedChanges()) {
+            return true;
+        }
+        javafx.scene.control.Alert alert = new javafx.scene.control.Alert(
+                javafx.scene.control.Alert.AlertType.CONFIRMATION);
+        alert.initOwner(canvasPane.getScene().getWindow());
+        alert.setTitle("未保存的修改");
+        alert.setHeaderText("当前流程图有未保存的修改");
+        alert.setContentText("继续将替换当前内容，未保存的修改会丢失且不能撤销。是否继续？");
+        return alert.showAndWait().filter(javafx.scene.control.ButtonType.OK::equals).isPresent();
+    }
+
+    /**
+     * 选择文件并保存
+     */
+    public void saveDiagramAs() {
+        javafx.stage.FileChooser fileChooser = createDiagramFileChooser("保存流程图");
+        fileChooser.setInitialFileName(currentFile != null ? currentFile.getName() : "diagram" + DiagramFile.EXTENSION);
+        java.io.File file = fileChooser.showSaveDialog(canvasPane.getScene().getWindow());
+        if (file == null) {
+            System.out.println("Save cancelled by user");
+            return;
+        }
+        // 确保文件名以.jrawio结尾
+        if (!file.getName().toLowerCase().endsWith(DiagramFile.EXTENSION)) {
+            file = new java.io.File(file.getParentFile(), file.getName() + DiagramFile.EXTENSION);
+        }
+        saveDiagramTo(file);
+    }
+
+    /**
+     * 选择文件并打开，替换画布上的全部内容，有未保存的修改时先请用户确认
+     */
+    public void openDiagram() {
+        if (!confirmDiscardChanges()) {
+            System.out.println("Open cancelled by user");
+            return;
+        }
+        javafx.stage.FileChooser fileChooser = createDiagramFileChooser("打开流程图");
+        java.io.File file = fileChooser.showOpenDialog(canvasPane.getScene().getWindow());
+        if (file == null) {
+            System.out.println("Open cancelled by user");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            DiagramFile.load(file.toPath(), diagram);
+            // 新内容可能复用全选时记录的ID
+            selectAllIds = null;
+            currentFile = file;
+            savedVersion = diagram.getVersion();
+            refreshRightPanel();
+            System.out.println("Opened " + diagram.size() + " elements from " + file.getAbsolutePath()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            System.err.println("Failed to open diagram: " + e.getMessage());
+            e.printStackTrace();
+            showError("打开流程图失败", file.getName() + "：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 选择draw.io文件并导入，替换画布上的全部内容，有未保存的修改时先请用户确认
+     * 文件在后台任务中流式解析，解析期间显示进度窗口，可以取消；完成后在FX线程上加载到文档，失败时显示错误对话框
+     */
+    public void importDrawio() {
+        if (!confirmDiscardChanges()) {
+            System.out.println("Import cancelled by user");
+            return;
+        }
+        javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
+        fileChooser.setTitle("导入draw.io文件");
+        fileChooser.getExtensionFilters().add(
+                new javafx.stage.FileChooser.ExtensionFilter("draw.io文件", "*" + DrawioFile.EXTENSION, "*.xml"));
+        java.io.File file = fileChooser.showOpenDialog(canvasPane.getScene().getWindow());
+        if (file == null) {
+            System.out.println("Import cancelled by user");
+            return;
+        }
+        long start = System.nanoTime();
+        javafx.concurrent.Task<List<DiagramElement>> task = new javafx.concurrent.Task<>() {
+            @Override
+            protected List<DiagramElement> call() throws Exception {
+                updateMessage("正在导入 " + file.getName());
+                return DrawioFile.read(file.toPath(), fraction -> {
+                    // 取消后在下一次读取时中止解析
+                    if (isCancelled()) {
+                        throw new java.util.concurrent.CancellationException();
+                    }
+                    updateProgress(fraction, 1);
+                });
+            }
+        };
+        javafx.stage.Stage progressStage = createProgressStage("导入draw.io文件", task);
+
+        // 解析期间画布仍然可以编辑，加载前内容又被修改时需要再次确认
+        long confirmedVersion = diagram.getVersion();
+        task.setOnSucceeded(event -> {
+            progressStage.close();
+            List<DiagramElement> elements = task.getValue();
+            if (diagram.getVersion() != confirmedVersion && !confirmDiscardChanges()) {
+                System.out.println("Import cancelled by user");
+                return;
+            }
+            diagram.load(elements);
+            selectAllIds = null;
+            // 导入的内容尚未保存为jrawio文件，但与导入的文件一致，不算未保存的修改
+            currentFile = null;
+            savedVersion = diagram.getVersion();
+            refreshRightPanel();
+            System.out.println("Imported " + elements.size() + " elements from " + file.getAbsolutePath()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        });
+        task.setOnFailed(event -> {
+            progressStage.close();
+            Throwable error = task.getException();
+            System.err.println("Failed to import draw.io file: " + error.getMessage());
+            error.printStackTrace();
+            showError("导入draw.io文件失败", file.getName() + "：" + error.getMessage());
+        });
+        task.setOnCancelled(event -> {
+            progressStage.close();
+            System.out.println("Import cancelled by user");
+        });
+
+        // 文件在后台线程上流式解析
+        Thread importThread = new Thread(task, "drawio-import");
+        importThread.setDaemon(true);
+        importThread.start();
+        progressStage.show();
+    }
+
+    /**
+     * 创建显示后台任务进度的窗口
+     * 进度条和提示文字绑定到任务，点击取消或关闭窗口时取消任务
+     *
+     * @param title 窗口标题
+     * @param task  后台任务
+     * @return 窗口，由调用方在任务结束时关闭
+     */
+    private javafx.stage.Stage createProgressStage(String title, javafx.concurrent.Task<?> task) {
+        javafx.scene.control.Label message = new javafx.scene.control.Label();
+        message.textProperty().bind(task.messageProperty());
+
+        javafx.scene.control.ProgressBar progressBar = new javafx.scene.control.ProgressBar();
+        progressBar.setPrefWidth(300);
+        progressBar.progressProperty().bind(task.progressProperty());
+
+        javafx.scene.control.Button cancelButton = new javafx.scene.control.Button("取消");
+        cancelButton.setOnAction(e -> task.cancel());
+
+        javafx.scene.layout.VBox content = new javafx.scene.layout.VBox(10, message, progressBar, cancelButton);
+        content.setPadding(new javafx.geometry.Insets(15));
+
+        javafx.stage.Stage stage = new javafx.stage.Stage();
+        stage.initOwner(canvasPane.getScene().getWindow());
+        stage.initStyle(javafx.stage.StageStyle.UTILITY);
+        stage.setTitle(title);
+        stage.setResizable(false);
+        stage.setScene(new javafx.scene.Scene(content));
+        stage.setOnCloseRequest(e -> task.cancel());
+        return stage;
+    }
+
+    /**
+     * 显示错误对话框
+     *
+     * @param header  错误标题
+     * @param content 错误详情
+     */
+    private void showError(String header, String content) {
+        javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.ERROR);
+        alert.initOwner(canvasPane.getScene().getWindow());
+        alert.setTitle("错误");
+        alert.setHeaderText(header);
+        alert.setContentText(content);
+        alert.showAndWait();
+    }
+
+    /**
+     * 选择文件并导出为draw.io格式
+     */
+    public void exportDrawio() {
+        javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
+        fileChooser.setTitle("导出为draw.io文件");
+        fileChooser.getExtensionFilters().add(
+                new javafx.stage.FileChooser.ExtensionFilter("draw.io文件", "*" + DrawioFile.EXTENSION));
+        fileChooser.setInitialFileName("diagram" + DrawioFile.EXTENSION);
+        java.io.File file = fileChooser.showSaveDialog(canvasPane.getScene().getWindow());
+        if (file == null) {
+            System.out.println("Export cancelled by user");
+            return;
+        }
+        // 确保文件名以.drawio结尾
+        if (!file.getName().toLowerCase().endsWith(DrawioFile.EXTENSION)) {
+            file = new java.io.File(file.getParentFile(), file.getName() + DrawioFile.EXTENSION);
+        }
+        // 在FX线程上拍摄快照，后台写入期间可以继续编辑
+        DiagramSnapshot snapshot = diagram.snapshot();
+        java.io.File target = file;
+        javafx.concurrent.Task<Void> task = new javafx.concurrent.Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                DrawioFile.write(snapshot.getElementList(), target.toPath(), false);
+                return null;
+            }
+        };
+        task.setOnSucceeded(event -> System.out.println(
+                "Successfully exported " + snapshot.size() + " elements to: " + target.getAbsolutePath()));
+        task.setOnFailed(event -> {
+            Throwable error = task.getException();
+            System.err.println("Failed to export draw.io file: " + error.getMessage());
+            error.printStackTrace();
+            showError("导出draw.io文件失败", target.getName() + "：" + error.getMessage());
+        });
+        fileWriter.execute(task);
+    }
+
+    /**
+     * 保存到指定文件
+     * 文件中先保存所有块状图元，再保存所有连线，各自保持模型中的顺序；
+     * 画布上连线总是绘制在块状图元之上，因此块状图元之间、连线之间的叠放顺序不变。
+     * 在FX线程上拍摄快照，后台线程编码和写入快照，写入期间的修改仍然算作未保存的修改
+     */
+    private void saveDiagramTo(java.io.File file) {
+        DiagramSnapshot snapshot = diagram.snapshot();
+        javafx.concurrent.Task<Void> task = new javafx.concurrent.Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                DiagramFile.save(snapshot.getElementList(), file.toPath());
+                return null;
+            }
+        };
+        task.setOnSucceeded(event -> {
+            // 写入期间打开或导入了其他文件时，当前内容与保存的文件无关
+            if (savedVersion <= snapshot.getVersion()) {
+                currentFile = file;
+                savedVersion = snapshot.getVersion();
+            }
+            System.out.println("Saved " + snapshot.size() + " elements to " + file.getAbsolutePath());
+        });
+        task.setOnFailed(event -> {
+            Throwable error = task.getException();
+            System.err.println("Failed to save diagram: " + error.getMessage());
+            error.printStackTrace();
+            showError("保存流程图失败", file.getName() + "：" + error.getMessage());
+        });
+        fileWriter.execute(task);
+    }
+
+    /**
+     * 创建写入文件的单线程执行器
+     *
+     * @return 执行器
+     */
+    private static java.util.concurrent.ThreadPoolExecutor createFileWriter() {
+        java.util.concurrent.ThreadPoolExecutor executor = new java.util.concurrent.ThreadPoolExecutor(
+                1, 1, 1, java.util.concurrent.TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "diagram-writer"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private javafx.stage.FileChooser createDiagramFileChooser(String title) {
+        javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
+        fileChooser.setTitle(title);
+        fileChooser.getExtensionFilters().add(
+                new javafx.stage.FileChooser.ExtensionFilter("Jrawio文件", "*" + DiagramFile.EXTENSION));
+        if (currentFile != null && currentFile.getParentFile() != null) {
+            fileChooser.setInitialDirectory(currentFile.getParentFile());
+        }
+        return fileChooser;
     }
 
     /**
      * 在画布中心粘贴图形（用于快捷键粘贴）
      */
     private void pasteAtCenter() {
-        // 计算画布中心位置
-        double centerX = gridCanvas.getWidth() / 2;
-        double centerY = gridCanvas.getHeight() / 2;
+        // 计算可见区域中心位置，尚未确定可见区域时使用画布中心
+        javafx.geometry.Bounds viewport = viewportCuller.getVisibleArea();
+        double centerX = viewport != null ? viewport.getCenterX() : canvasPane.getPrefWidth() / 2;
+        double centerY = viewport != null ? viewport.getCenterY() : canvasPane.getPrefHeight() / 2;
         Point2D centerPosition = new Point2D(centerX, centerY);
 
         // 获取剪贴板实例
@@ -510,10 +1092,8 @@ public class JrawioCanvas {
             return;
         }
 
-        // 将粘贴的图形添加到画布
-        for (Shape shape : pastedShapes) {
-            canvasPane.getChildren().add(shape);
-        }
+        // 将粘贴的图形一次性添加到画布
+        addShapes(pastedShapes);
 
         System.out.println("Successfully pasted " + pastedShapes.size() + " shapes at center position (" +
                 centerX + ", " + centerY + ")");
@@ -552,11 +1132,16 @@ public class JrawioCanvas {
             double offsetX = -minX + padding;
             double offsetY = -minY + padding;
 
-            // 绘制所有图形到导出Canvas
-            for (Node node : canvasPane.getChildren()) {
-                if (node instanceof Shape) {
-                    Shape shape = (Shape) node;
-                    drawShapeToExportCanvas(shape, gc, offsetX, offsetY);
+            // 按文档模型绘制所有图元，包括可见区域之外没有图形的图元
+            // 与画布一致，连线绘制在块状图元之上
+            for (DiagramElement element : diagram.getElements()) {
+                if (!element.isEdge()) {
+                    ElementPainter.paint(gc, element, offsetX, offsetY);
+                }
+            }
+            for (DiagramElement element : diagram.getElements()) {
+                if (element.isEdge()) {
+                    ElementPainter.paint(gc, element, offsetX, offsetY);
                 }
             }
 
@@ -599,52 +1184,9 @@ public class JrawioCanvas {
      * @return [minX, minY, maxX, maxY] 或 null 如果没有图形
      */
     private double[] calculateShapesBounds() {
-        double minX = Double.MAX_VALUE;
-        double minY = Double.MAX_VALUE;
-        double maxX = Double.MIN_VALUE;
-        double maxY = Double.MIN_VALUE;
-
-        boolean hasShapes = false;
-
-        for (Node node : canvasPane.getChildren()) {
-            if (node instanceof Shape) {
-                Shape shape = (Shape) node;
-                hasShapes = true;
-
-                double shapeMinX = shape.getLayoutX();
-                double shapeMinY = shape.getLayoutY();
-                double shapeMaxX = shapeMinX + shape.getWidth();
-                double shapeMaxY = shapeMinY + shape.getHeight();
-
-                minX = Math.min(minX, shapeMinX);
-                minY = Math.min(minY, shapeMinY);
-                maxX = Math.max(maxX, shapeMaxX);
-                maxY = Math.max(maxY, shapeMaxY);
-            }
-        }
-
-        return hasShapes ? new double[] { minX, minY, maxX, maxY } : null;
-    }
-
-    /**
-     * 将Shape绘制到导出Canvas上
-     */
-    private void drawShapeToExportCanvas(Shape shape, GraphicsContext gc, double offsetX, double offsetY) {
-        // 保存当前变换状态
-        gc.save();
-
-        // 应用偏移变换
-        gc.translate(shape.getLayoutX() + offsetX, shape.getLayoutY() + offsetY);
-
-        // 直接对Shape进行快照
-        javafx.scene.SnapshotParameters snapParams = new javafx.scene.SnapshotParameters();
-        snapParams.setFill(Color.TRANSPARENT);
-        javafx.scene.image.WritableImage shapeImage = shape.snapshot(snapParams, null);
-
-        gc.drawImage(shapeImage, 0, 0);
-
-        // 恢复变换状态
-        gc.restore();
+        // 使用文档模型的几何存储，包括可见区域之外没有图形的图元
+        double[] bounds = new double[4];
+        return diagram.getGeometry().getBounds(bounds) ? bounds : null;
     }
 
     /**
@@ -6,7 +6,7 @@ import java.util.List;
 
 import javafx.fxml.FXML;
 import javafx.scene.layout.VBox;
-import org.jrawio.controller.shape.ShapeType;
+import org.jrawio.model.ShapeType;
 
 public class LeftPanel {
     @FXML
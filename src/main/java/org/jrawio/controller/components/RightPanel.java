@@ -4,6 +4,7 @@ import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
 import org.jrawio.controller.shape.Shape;
+import org.jrawio.controller.shape.ShapeSelectionModel;
 import java.util.Set;
 import java.util.List;
 
@@ -27,14 +28,15 @@ public class RightPanel {
 
         if (selectedShapes == null || selectedShapes.isEmpty()) {
             rightPanelRoot.getChildren().add(new Label("未选中任何图形"));
-            System.out.println("RightPanel: 没有选中的图形");
+        } else if (selectedShapes.size() > 1) {
+            // 多选时只显示一组汇总的控件，修改后统一应用到所有选中的图形
+            SelectionPropertyEditor editor = new SelectionPropertyEditor(selectedShapes,
+                    () -> onShapeSelectionChanged(ShapeSelectionModel.getInstance().getSelectedShapes()));
+            rightPanelRoot.getChildren().addAll(editor.createControls());
         } else {
-            System.out.println("RightPanel: 选中了 " + selectedShapes.size() + " 个图形");
             for (Shape shape : selectedShapes) {
                 // 直接使用Shape的getControlComponents方法
                 List<javafx.scene.Node> controls = shape.getControlComponents();
-                System.out.println(
-                        "RightPanel: 为 " + shape.getClass().getSimpleName() + " 添加 " + controls.size() + " 个控件");
                 rightPanelRoot.getChildren().addAll(controls);
             }
         }
@@ -0,0 +1,290 @@
+package org.jrawio.controller.components;
+
+import javafx.scene.Node;
+import javafx.scene.control.ColorPicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.TextField;
+import javafx.scene.paint.Color;
+import org.jrawio.controller.shape.BlockShape;
+import org.jrawio.controller.shape.LineShape;
+import org.jrawio.controller.shape.Shape;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 多选属性编辑器
+ * 选中多个图形时只生成一组控件，编辑所有选中图形的共同属性：
+ * 各图形取值相同时显示该值，取值不同时标记为“多个值”。
+ * 修改某个控件后，新值一次性应用到所有选中的图形；
+ * 按回车提交时刷新一次右侧面板，失去焦点提交时只更新该控件自身的显示。
+ */
+public class SelectionPropertyEditor {
+
+    /** 取值不同时的提示文字 */
+    private static final String MIXED_VALUE = "多个值";
+
+    /** 被编辑的图形 */
+    private final List<Shape> shapes;
+
+    /** 修改应用到所有图形之后的回调，用于刷新右侧面板 */
+    private final Runnable onApplied;
+
+    /**
+     * 构造函数
+     *
+     * @param shapes    被编辑的图形
+     * @param onApplied 修改应用之后的回调
+     */
+    public SelectionPropertyEditor(Collection<Shape> shapes, Runnable onApplied) {
+        this.shapes = new ArrayList<>(shapes);
+        this.onApplied = onApplied;
+    }
+
+    /**
+     * 创建编辑控件
+     * 文本、尺寸和位置对所有图形都可编辑；
+     * 全部是块状图形时增加填充色和边框色，全部是线形时增加线条颜色和粗细
+     *
+     * @return 控件列表
+     */
+    public List<Node> createControls() {
+        List<Node> controls = new ArrayList<>();
+        controls.add(new Label("已选中 " + shapes.size() + " 个图形"));
+
+        controls.addAll(createTextControl("文本：", Shape::getText, Shape::setText));
+        controls.addAll(createNumberControl("宽度：", shape -> shape.getWidth(), Shape::setShapeWidth));
+        controls.addAll(createNumberControl("高度：", shape -> shape.getHeight(), Shape::setShapeHeight));
+        controls.addAll(createNumberControl("X坐标：", shape -> shape.getLayoutX(),
+                (shape, x) -> shape.setPosition(x, shape.getLayoutY())));
+        controls.addAll(createNumberControl("Y坐标：", shape -> shape.getLayoutY(),
+                (shape, y) -> shape.setPosition(shape.getLayoutX(), y)));
+
+        List<BlockShape> blocks = filter(BlockShape.class);
+        if (blocks != null) {
+            controls.addAll(createColorControl("填充色：", blocks, BlockShape::getFillColor,
+                    BlockShape::setFillColor, Color.WHITE));
+            controls.addAll(createColorControl("边框色：", blocks, BlockShape::getStrokeColor,
+                    BlockShape::setStrokeColor, Color.BLACK));
+        }
+
+        List<LineShape> lines = filter(LineShape.class);
+        if (lines != null) {
+            controls.addAll(createColorControl("线条颜色：", lines, LineShape::getLineColor,
+                    LineShape::setLineColor, Color.BLACK));
+            controls.addAll(createLineWidthControl(lines));
+        }
+        return controls;
+    }
+
+    /**
+     * 创建文本控制组件
+     */
+    private List<Node> createTextControl(String title, Function<Shape, String> getter,
+            BiConsumer<Shape, String> setter) {
+        String common = commonValue(shapes, getter);
+        TextField input = new TextField(common != null ? common : "");
+        input.setPrefWidth(120);
+        if (isMixed(shapes, getter)) {
+            input.setPromptText(MIXED_VALUE);
+        }
+        // 当前显示的已应用值，失去焦点提交后随之更新
+        String[] applied = { input.getText() };
+
+        Runnable apply = () -> {
+            String value = input.getText();
+            // 未修改的多值文本框失去焦点时不覆盖各图形原有的值
+            if (value.equals(applied[0])) {
+                return;
+            }
+            applyToAll(shapes, shape -> setter.accept(shape, value));
+            applied[0] = value;
+            input.setPromptText(null);
+        };
+        input.setOnAction(e -> {
+            apply.run();
+            refresh();
+        });
+        // 失去焦点时只提交这个控件的值，不重建面板，避免销毁用户正要切换到的控件
+        input.focusedProperty().addListener((obs, oldV, newV) -> {
+            if (!newV) {
+                apply.run();
+            }
+        });
+
+        List<Node> controls = new ArrayList<>();
+        controls.add(new Label(title));
+        controls.add(input);
+        return controls;
+    }
+
+    /**
+     * 创建数值控制组件，显示取整后的值
+     */
+    private List<Node> createNumberControl(String title, Function<Shape, Double> getter,
+            BiConsumer<Shape, Double> setter) {
+        Function<Shape, Integer> shown = shape -> (int) getter.apply(shape).doubleValue();
+        Integer common = commonValue(shapes, shown);
+        TextField input = new TextField(common != null ? String.valueOf(common) : "");
+        input.setPrefWidth(80);
+        if (common == null) {
+            input.setPromptText(MIXED_VALUE);
+        }
+        // 当前显示的已应用值，失去焦点提交后随之更新
+        String[] applied = { input.getText() };
+
+        Runnable apply = () -> {
+            String text = input.getText().trim();
+            if (text.equals(applied[0])) {
+                return;
+            }
+            try {
+                double value = Double.parseDouble(text);
+                applyToAll(shapes, shape -> setter.accept(shape, value));
+                // 所有图形现在取同一个值，按取整后的形式显示
+                Integer shownValue = commonValue(shapes, shown);
+                applied[0] = shownValue != null ? String.valueOf(shownValue) : text;
+                input.setText(applied[0]);
+                input.setPromptText(null);
+            } catch (NumberFormatException ex) {
+                // 输入无效时恢复原值
+                input.setText(applied[0]);
+            }
+        };
+        input.setOnAction(e -> {
+            apply.run();
+            refresh();
+        });
+        // 失去焦点时只提交这个控件的值，不重建面板，避免销毁用户正要切换到的控件
+        input.focusedProperty().addListener((obs, oldV, newV) -> {
+            if (!newV) {
+                apply.run();
+            }
+        });
+
+        List<Node> controls = new ArrayList<>();
+        controls.add(new Label(title));
+        controls.add(input);
+        return controls;
+    }
+
+    /**
+     * 创建颜色控制组件，取值不同时在标签上标记多个值
+     */
+    private <T extends Shape> List<Node> createColorControl(String title, List<T> targets,
+            Function<T, Color> getter, BiConsumer<T, Color> setter, Color fallback) {
+        Color common = commonValue(targets, getter);
+        boolean mixed = isMixed(targets, getter);
+        ColorPicker picker = new ColorPicker();
+        picker.setValue(common != null && !common.equals(Color.TRANSPARENT) ? common : fallback);
+
+        picker.setOnAction(e -> {
+            Color selectedColor = picker.getValue();
+            applyToAll(targets, shape -> setter.accept(shape, selectedColor));
+        });
+
+        List<Node> controls = new ArrayList<>();
+        controls.add(new Label(mixed ? title + "（" + MIXED_VALUE + "）" : title));
+        controls.add(picker);
+        return controls;
+    }
+
+    /**
+     * 创建线条粗细控制组件
+     */
+    private List<Node> createLineWidthControl(List<LineShape> lines) {
+        Double common = commonValue(lines, LineShape::getLineWidth);
+        Spinner<Double> spinner = new Spinner<>(0.5, 10.0,
+                common != null ? common : lines.get(0).getLineWidth(), 0.5);
+        spinner.setEditable(true);
+        spinner.setPrefWidth(80);
+
+        spinner.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue != null && newValue > 0) {
+                applyToAll(lines, line -> line.setLineWidth(newValue));
+            }
+        });
+
+        List<Node> controls = new ArrayList<>();
+        controls.add(new Label(common == null ? "线条粗细（" + MIXED_VALUE + "）：" : "线条粗细："));
+        controls.add(spinner);
+        return controls;
+    }
+
+    /**
+     * 把一次修改应用到所有图形
+     * 重绘和连接线更新由调度器合并到下一帧
+     */
+    private static <T extends Shape> void applyToAll(List<T> targets, Consumer<T> change) {
+        // 对所有图形的修改作为一步撤销
+        Shape.batchEdit(targets, () -> {
+            for (T shape : targets) {
+                change.accept(shape);
+            }
+        });
+    }
+
+    /**
+     * 修改应用之后刷新一次右侧面板
+     * 只在按回车提交时调用；失去焦点、颜色选择器和粗细调节器都不刷新，避免控件被替换
+     */
+    private void refresh() {
+        if (onApplied != null) {
+            onApplied.run();
+        }
+    }
+
+    /**
+     * 所有图形都是指定类型时返回转换后的列表，否则返回null
+     */
+    private <T extends Shape> List<T> filter(Class<T> type) {
+        List<T> result = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            if (!type.isInstance(shape)) {
+                return null;
+            }
+            result.add(type.cast(shape));
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * 获取所有图形共同的属性值
+     *
+     * @return 共同的值，取值不同或没有图形时返回null
+     */
+    private static <T, V> V commonValue(List<T> targets, Function<T, V> getter) {
+        if (targets.isEmpty()) {
+            return null;
+        }
+        V first = getter.apply(targets.get(0));
+        for (int i = 1; i < targets.size(); i++) {
+            if (!Objects.equals(first, getter.apply(targets.get(i)))) {
+                return null;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * 属性值是否不完全相同（值本身可以为null）
+     */
+    private static <T, V> boolean isMixed(List<T> targets, Function<T, V> getter) {
+        if (targets.isEmpty()) {
+            return false;
+        }
+        V first = getter.apply(targets.get(0));
+        for (int i = 1; i < targets.size(); i++) {
+            if (!Objects.equals(first, getter.apply(targets.get(i)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,7 +6,7 @@ import java.util.List;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.TitledPane;
 import javafx.scene.layout.FlowPane;
-import org.jrawio.controller.shape.ShapeType;
+import org.jrawio.model.ShapeType;
 
 public class ShapeBar extends TitledPane {
 
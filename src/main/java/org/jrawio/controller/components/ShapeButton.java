@@ -10,7 +10,7 @@ import javafx.scene.input.Dragboard;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.TransferMode;
 import org.jrawio.controller.shape.Shape;
-import org.jrawio.controller.shape.ShapeType;
+import org.jrawio.model.ShapeType;
 import org.jrawio.controller.shape.ShapeFactory;
 import java.net.URL;
 import java.util.ResourceBundle;
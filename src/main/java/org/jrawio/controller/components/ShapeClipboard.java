@@ -1,7 +1,7 @@
 package org.jrawio.controller.components;
 
 import org.jrawio.controller.shape.Shape;
-import org.jrawio.controller.shape.ShapeType;
+import org.jrawio.model.ShapeType;
 import org.jrawio.controller.shape.ShapeFactory;
 import org.jrawio.controller.shape.OvalShape;
 import org.jrawio.controller.shape.RectangleShape;
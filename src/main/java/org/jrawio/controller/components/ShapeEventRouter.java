@@ -0,0 +1,193 @@
+package org.jrawio.controller.components;
+
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.scene.Cursor;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import org.jrawio.controller.shape.Shape;
+
+/**
+ * 图形事件路由器
+ * 当图形节点不直接参与拾取时（例如由单画布渲染器绘制而被隐藏），
+ * 由路由器在画布上进行命中测试，并将鼠标事件转发给命中的图形，
+ * 使图形原有的按下、拖拽、释放、点击和右键菜单逻辑保持不变。
+ * 选中图形的控制点和连接线分别由选中覆盖层和连接线层绘制，图形节点本身无法拾取，
+ * 路由器始终优先检测这些共享层，并把事件转发给命中的图形。
+ */
+public class ShapeEventRouter {
+
+    /**
+     * 命中测试接口
+     */
+    @FunctionalInterface
+    public interface ShapePicker {
+        /**
+         * 查找指定位置上最上层的图形
+         *
+         * @param x 容器坐标X
+         * @param y 容器坐标Y
+         * @return 命中的图形，没有则返回null
+         */
+        Shape pick(double x, double y);
+    }
+
+    private final Pane container;
+    private final ShapePicker picker;
+
+    /** 共享层（选中控制点和连接线）的命中测试，始终启用 */
+    private final ShapePicker layerPicker;
+
+    /** 是否启用图形本体的命中测试和事件转发 */
+    private boolean enabled = false;
+
+    /** 是否正在转发事件，转发出去的事件不再处理 */
+    private boolean forwarding = false;
+
+    /** 按下鼠标时命中的图形，后续拖拽、释放和点击事件都转发给它 */
+    private Shape pressTarget;
+
+    /** 鼠标悬停的图形，用于同步光标 */
+    private Shape hoverTarget;
+
+    private final EventHandler<MouseEvent> mouseFilter = this::onMouseEvent;
+    private final EventHandler<ContextMenuEvent> contextMenuFilter = this::onContextMenuEvent;
+
+    /**
+     * 构造函数
+     *
+     * @param container   图形所在的容器
+     * @param picker      图形本体的命中测试实现
+     * @param layerPicker 共享层（选中控制点和连接线）的命中测试实现
+     */
+    public ShapeEventRouter(Pane container, ShapePicker picker, ShapePicker layerPicker) {
+        this.container = container;
+        this.picker = picker;
+        this.layerPicker = layerPicker;
+
+        container.addEventFilter(MouseEvent.ANY, mouseFilter);
+        container.addEventFilter(ContextMenuEvent.CONTEXT_MENU_REQUESTED, contextMenuFilter);
+    }
+
+    /**
+     * 启用或关闭图形本体的事件转发
+     * 共享层的事件转发不受影响
+     *
+     * @param enabled 是否启用
+     */
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+
+        if (!enabled) {
+            pressTarget = null;
+            hoverTarget = null;
+            container.setCursor(Cursor.DEFAULT);
+        }
+    }
+
+    /**
+     * 是否启用了事件转发
+     *
+     * @return true如果启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 处理容器上的鼠标事件
+     *
+     * @param event 鼠标事件
+     */
+    private void onMouseEvent(MouseEvent event) {
+        // 转发出去的事件以及指向文本框等其他控件的事件不再处理
+        if (forwarding || (event.getTarget() != container && !(event.getTarget() instanceof Shape))) {
+            return;
+        }
+
+        if (event.getEventType() == MouseEvent.MOUSE_PRESSED) {
+            pressTarget = resolveTarget(event);
+            forward(event, pressTarget);
+        } else if (event.getEventType() == MouseEvent.MOUSE_DRAGGED
+                || event.getEventType() == MouseEvent.MOUSE_RELEASED) {
+            forward(event, pressTarget);
+        } else if (event.getEventType() == MouseEvent.MOUSE_CLICKED) {
+            Shape target = pressTarget;
+            pressTarget = null;
+            forward(event, target);
+        } else if (event.getEventType() == MouseEvent.MOUSE_MOVED) {
+            Shape target = resolveTarget(event);
+            if (target == null && hoverTarget != null) {
+                container.setCursor(Cursor.DEFAULT);
+            }
+            hoverTarget = target;
+            forward(event, target);
+        }
+    }
+
+    /**
+     * 查找鼠标事件应该转发给的图形
+     * 共享层优先于图形本体，图形本体只在启用时且事件落在容器空白处时检测
+     *
+     * @param event 鼠标事件
+     * @return 目标图形，没有则返回null
+     */
+    private Shape resolveTarget(MouseEvent event) {
+        Shape target = layerPicker.pick(event.getX(), event.getY());
+        if (target == null && enabled && event.getTarget() == container) {
+            target = picker.pick(event.getX(), event.getY());
+        }
+        return target;
+    }
+
+    /**
+     * 处理容器上的右键菜单请求
+     *
+     * @param event 右键菜单事件
+     */
+    private void onContextMenuEvent(ContextMenuEvent event) {
+        if (forwarding || (event.getTarget() != container && !(event.getTarget() instanceof Shape))) {
+            return;
+        }
+        Shape target = layerPicker.pick(event.getX(), event.getY());
+        if (target == null && enabled && event.getTarget() == container) {
+            target = picker.pick(event.getX(), event.getY());
+        }
+        if (target != null && target != event.getTarget()) {
+            forwarding = true;
+            try {
+                Event.fireEvent(target, event.copyFor(target, target));
+            } finally {
+                forwarding = false;
+            }
+            event.consume();
+        }
+    }
+
+    /**
+     * 将事件转发给图形，并同步图形设置的光标
+     *
+     * @param event  原始事件
+     * @param target 目标图形，为null或事件本来就指向它时不转发
+     */
+    private void forward(MouseEvent event, Shape target) {
+        if (target == null || target == event.getTarget()) {
+            return;
+        }
+        forwarding = true;
+        try {
+            Event.fireEvent(target, event.copyFor(target, target));
+        } finally {
+            forwarding = false;
+        }
+        event.consume();
+
+        // 隐藏的图形节点无法显示光标，由容器代为显示
+        Cursor cursor = target.getCursor();
+        container.setCursor(cursor != null ? cursor : Cursor.DEFAULT);
+    }
+}
@@ -0,0 +1,248 @@
+package org.jrawio.controller.components;
+
+import javafx.collections.ListChangeListener;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.Pane;
+import org.jrawio.controller.shape.Shape;
+import org.jrawio.controller.shape.ShapeSpatialIndex;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 视口剔除器
+ * 跟踪画布所在ScrollPane的可见区域，把与可见区域不相交的图形标记为剔除，
+ * 被剔除的图形不显示、不参与拾取、不绘制，进入可见区域时再恢复。
+ * 每次只处理上一次可见和这一次可见的图形，滚动开销与图形总数无关。
+ */
+public class ViewportCuller {
+
+    /** 剔除区域在可见区域之外扩展的边距，减少滚动时图形频繁切换 */
+    private static final double MARGIN = 200;
+
+    /** 图形所在的容器 */
+    private final Pane container;
+
+    /** 容器的图形空间索引 */
+    private final ShapeSpatialIndex spatialIndex;
+
+    /** 可见区域变化时的回调，参数依次为可见区域和剔除区域 */
+    private final BiConsumer<Bounds, Bounds> viewportListener;
+
+    /** 画布所在的滚动面板 */
+    private ScrollPane scrollPane;
+
+    /** 当前监听脉冲的场景 */
+    private Scene scene;
+
+    /** 上一次计算的剔除区域（容器坐标，可见区域扩展边距） */
+    private Bounds lastViewport;
+
+    /** 上一次计算的可见区域（容器坐标，不含边距，限制在容器范围内） */
+    private Bounds lastVisibleArea;
+
+    /** 上一次处理时空间索引的修改计数 */
+    private long lastModCount = -1;
+
+    /** 上一次处于可见区域内的图形 */
+    private Set<Shape> shownShapes = newIdentitySet();
+
+    private final Runnable pulseListener = this::update;
+    private final ListChangeListener<Node> childrenListener = this::onChildrenChanged;
+
+    /**
+     * 构造函数
+     *
+     * @param container        图形所在的容器
+     * @param viewportListener 可见区域变化时的回调，参数依次为可见区域和剔除区域，可以为null；
+     *                         跟随视口的画布层使用可见区域，创建和剔除图形使用剔除区域。
+     *                         可见区域限制在容器范围内：容器没有裁剪，超出容器的画布层会扩大滚动范围，
+     *                         下一次计算的可见区域随之扩大，滚动范围会不断增长
+     */
+    public ViewportCuller(Pane container, BiConsumer<Bounds, Bounds> viewportListener) {
+        this.container = container;
+        this.spatialIndex = ShapeSpatialIndex.of(container);
+        this.viewportListener = viewportListener;
+
+        container.getChildren().addListener(childrenListener);
+        container.sceneProperty().addListener((observable, oldScene, newScene) -> attachToScene(newScene));
+        attachToScene(container.getScene());
+    }
+
+    /**
+     * 获取当前剔除区域（容器坐标，可见区域扩展边距）
+     *
+     * @return 剔除区域，尚未确定时返回null
+     */
+    public Bounds getViewport() {
+        return lastViewport;
+    }
+
+    /**
+     * 获取当前可见区域（容器坐标，不含边距，限制在容器范围内）
+     *
+     * @return 可见区域，尚未确定时返回null
+     */
+    public Bounds getVisibleArea() {
+        return lastVisibleArea;
+    }
+
+    /**
+     * 在场景的每个布局脉冲之后检查可见区域
+     *
+     * @param newScene 新场景
+     */
+    private void attachToScene(Scene newScene) {
+        if (scene != null) {
+            scene.removePostLayoutPulseListener(pulseListener);
+        }
+        scene = newScene;
+        scrollPane = null;
+        if (scene != null) {
+            scrollPane = findScrollPane(container);
+            scene.addPostLayoutPulseListener(pulseListener);
+        }
+    }
+
+    /**
+     * 查找包含节点的滚动面板
+     *
+     * @param node 节点
+     * @return 滚动面板，没有则返回null
+     */
+    static ScrollPane findScrollPane(Node node) {
+        for (Parent parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent instanceof ScrollPane) {
+                return (ScrollPane) parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 计算滚动面板的可见区域在容器中的位置
+     * 使用滚动面板的视口大小，不包括滚动条和边框
+     *
+     * @return 可见区域（容器坐标，不含边距），无法计算时返回null
+     */
+    private Bounds computeVisibleArea() {
+        if (scrollPane == null) {
+            return null;
+        }
+        Bounds viewportBounds = scrollPane.getViewportBounds();
+        Insets insets = scrollPane.getInsets();
+        Bounds sceneBounds = scrollPane.localToScene(new BoundingBox(insets.getLeft(), insets.getTop(),
+                viewportBounds.getWidth(), viewportBounds.getHeight()));
+        if (sceneBounds == null) {
+            return null;
+        }
+        Bounds local = container.sceneToLocal(sceneBounds);
+        if (local == null || local.isEmpty()) {
+            return null;
+        }
+        return local;
+    }
+
+    /**
+     * 把区域限制在容器的范围内
+     *
+     * @param area 区域（容器坐标）
+     * @return 与容器范围的交集，不相交时宽度或高度为0
+     */
+    private Bounds clampToContainer(Bounds area) {
+        double width = container.getWidth() > 0 ? container.getWidth() : container.getPrefWidth();
+        double height = container.getHeight() > 0 ? container.getHeight() : container.getPrefHeight();
+        double minX = Math.min(Math.max(area.getMinX(), 0), width);
+        double minY = Math.min(Math.max(area.getMinY(), 0), height);
+        double maxX = Math.max(Math.min(area.getMaxX(), width), minX);
+        double maxY = Math.max(Math.min(area.getMaxY(), height), minY);
+        return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * 根据当前可见区域更新图形的剔除状态
+     * 只在可见区域或图形发生变化时执行
+     */
+    public void update() {
+        Bounds visibleArea = computeVisibleArea();
+        if (visibleArea == null) {
+            return;
+        }
+        Bounds viewport = new BoundingBox(visibleArea.getMinX() - MARGIN, visibleArea.getMinY() - MARGIN,
+                visibleArea.getWidth() + 2 * MARGIN, visibleArea.getHeight() + 2 * MARGIN);
+        visibleArea = clampToContainer(visibleArea);
+        long modCount = spatialIndex.getModCount();
+        boolean viewportChanged = !viewport.equals(lastViewport) || !visibleArea.equals(lastVisibleArea);
+        if (!viewportChanged && modCount == lastModCount) {
+            return;
+        }
+        boolean firstPass = lastViewport == null;
+        lastViewport = viewport;
+        lastVisibleArea = visibleArea;
+        lastModCount = modCount;
+
+        List<Shape> visible = spatialIndex.query(viewport);
+        Set<Shape> nowShown = newIdentitySet();
+        nowShown.addAll(visible);
+
+        if (firstPass) {
+            // 第一次计算时剔除所有不可见的图形
+            for (Shape shape : spatialIndex.getShapes()) {
+                shape.setCulled(!nowShown.contains(shape));
+            }
+        } else {
+            // 之后只处理离开和进入可见区域的图形
+            for (Shape shape : shownShapes) {
+                if (!nowShown.contains(shape) && shape.getParent() == container) {
+                    shape.setCulled(true);
+                }
+            }
+            for (Shape shape : visible) {
+                shape.setCulled(false);
+            }
+        }
+        shownShapes = nowShown;
+
+        if (viewportChanged && viewportListener != null) {
+            viewportListener.accept(visibleArea, viewport);
+        }
+    }
+
+    /**
+     * 新加入的图形如果不在可见区域内则直接剔除，被移除的图形恢复正常状态
+     *
+     * @param change 子节点变化
+     */
+    private void onChildrenChanged(ListChangeListener.Change<? extends Node> change) {
+        while (change.next()) {
+            if (change.wasRemoved()) {
+                for (Node node : change.getRemoved()) {
+                    if (node instanceof Shape && node.getParent() != container) {
+                        ((Shape) node).setCulled(false);
+                    }
+                }
+            }
+            if (change.wasAdded() && lastViewport != null) {
+                for (Node node : change.getAddedSubList()) {
+                    if (node instanceof Shape) {
+                        Shape shape = (Shape) node;
+                        shape.setCulled(!shape.getBoundsInParent().intersects(lastViewport));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<Shape> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
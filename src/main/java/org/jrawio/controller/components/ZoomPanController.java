@@ -0,0 +1,253 @@
+package org.jrawio.controller.components;
+
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Cursor;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TextInputControl;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Scale;
+import org.jrawio.controller.shape.LevelOfDetail;
+import org.jrawio.controller.shape.Shape;
+import org.jrawio.controller.shape.ShapeSpatialIndex;
+
+/**
+ * 画布缩放和平移控制器
+ * 鼠标滚轮以光标为中心缩放画布，按住空格拖拽平移画布。
+ * 缩放比例跨越细节层次阈值时重绘所有图形。
+ */
+public class ZoomPanController {
+
+    /** 最小缩放比例 */
+    private static final double MIN_ZOOM = 0.05;
+
+    /** 最大缩放比例 */
+    private static final double MAX_ZOOM = 4.0;
+
+    /** 每一格滚轮的缩放倍数 */
+    private static final double ZOOM_STEP = 1.1;
+
+    /** 画布容器 */
+    private final Pane canvasPane;
+
+    /** 作用在画布容器上的缩放变换 */
+    private final Scale zoomScale = new Scale(1, 1);
+
+    /** 画布所在的滚动面板 */
+    private ScrollPane scrollPane;
+
+    /** 当前缩放比例 */
+    private double zoom = 1.0;
+
+    /** 是否按住了空格键 */
+    private boolean spaceDown = false;
+
+    /** 是否正在平移 */
+    private boolean panning = false;
+
+    /** 上一次平移时鼠标的场景坐标 */
+    private double lastPanSceneX;
+    private double lastPanSceneY;
+
+    /**
+     * 构造函数
+     *
+     * @param canvasPane 画布容器
+     */
+    public ZoomPanController(Pane canvasPane) {
+        this.canvasPane = canvasPane;
+        canvasPane.getTransforms().add(zoomScale);
+
+        canvasPane.addEventFilter(ScrollEvent.SCROLL, this::onScroll);
+        canvasPane.sceneProperty().addListener((observable, oldScene, newScene) -> attachToScene(newScene));
+        attachToScene(canvasPane.getScene());
+    }
+
+    /**
+     * 获取当前缩放比例
+     *
+     * @return 缩放比例
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * 在场景中找到滚动面板，并在其上注册平移相关的事件过滤器
+     * 过滤器注册在滚动面板上，先于画布和图形处理事件
+     *
+     * @param scene 新场景
+     */
+    private void attachToScene(Scene scene) {
+        if (scene == null || scrollPane != null) {
+            return;
+        }
+        scrollPane = ViewportCuller.findScrollPane(canvasPane);
+        if (scrollPane == null) {
+            return;
+        }
+        scrollPane.addEventFilter(KeyEvent.KEY_PRESSED, this::onKeyPressed);
+        scrollPane.addEventFilter(KeyEvent.KEY_RELEASED, this::onKeyReleased);
+        scrollPane.addEventFilter(MouseEvent.MOUSE_PRESSED, this::onPanPressed);
+        scrollPane.addEventFilter(MouseEvent.MOUSE_DRAGGED, this::onPanDragged);
+        scrollPane.addEventFilter(MouseEvent.MOUSE_RELEASED, this::onPanReleased);
+    }
+
+    /**
+     * 滚轮缩放，以光标所在位置为中心
+     *
+     * @param event 滚动事件
+     */
+    private void onScroll(ScrollEvent event) {
+        if (event.getDeltaY() == 0) {
+            return;
+        }
+        double factor = event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+        zoomAt(zoom * factor, event.getSceneX(), event.getSceneY());
+        event.consume();
+    }
+
+    /**
+     * 设置缩放比例，保持指定场景坐标下的画布内容不动
+     *
+     * @param newZoom 新的缩放比例
+     * @param sceneX  缩放中心的场景坐标X
+     * @param sceneY  缩放中心的场景坐标Y
+     */
+    public void zoomAt(double newZoom, double sceneX, double sceneY) {
+        newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+        if (newZoom == zoom) {
+            return;
+        }
+
+        // 记录光标下的画布坐标
+        Point2D anchor = canvasPane.sceneToLocal(sceneX, sceneY);
+
+        zoom = newZoom;
+        zoomScale.setX(zoom);
+        zoomScale.setY(zoom);
+        onZoomChanged();
+
+        if (scrollPane != null && anchor != null) {
+            // 先完成布局，使滚动范围按新的缩放比例更新
+            scrollPane.layout();
+            Point2D moved = canvasPane.localToScene(anchor);
+            scrollBy(moved.getX() - sceneX, moved.getY() - sceneY);
+        }
+    }
+
+    /**
+     * 缩放比例变化后更新细节层次，跨越阈值时重绘所有图形
+     */
+    private void onZoomChanged() {
+        if (LevelOfDetail.setZoom(zoom)) {
+            for (Shape shape : ShapeSpatialIndex.of(canvasPane).getShapes()) {
+                shape.requestRedraw();
+            }
+        }
+    }
+
+    /**
+     * 按像素滚动视口
+     *
+     * @param dx 水平方向滚动的像素
+     * @param dy 垂直方向滚动的像素
+     */
+    private void scrollBy(double dx, double dy) {
+        if (scrollPane == null || scrollPane.getContent() == null) {
+            return;
+        }
+        Bounds contentBounds = scrollPane.getContent().getBoundsInParent();
+        Bounds viewportBounds = scrollPane.getViewportBounds();
+
+        double extraWidth = contentBounds.getWidth() - viewportBounds.getWidth();
+        if (extraWidth > 0) {
+            double range = scrollPane.getHmax() - scrollPane.getHmin();
+            double value = scrollPane.getHvalue() + dx / extraWidth * range;
+            scrollPane.setHvalue(clamp(value, scrollPane.getHmin(), scrollPane.getHmax()));
+        }
+
+        double extraHeight = contentBounds.getHeight() - viewportBounds.getHeight();
+        if (extraHeight > 0) {
+            double range = scrollPane.getVmax() - scrollPane.getVmin();
+            double value = scrollPane.getVvalue() + dy / extraHeight * range;
+            scrollPane.setVvalue(clamp(value, scrollPane.getVmin(), scrollPane.getVmax()));
+        }
+    }
+
+    /**
+     * 按下空格进入平移模式
+     * 正在编辑文本（例如图形标签的编辑框）时空格是输入的字符，不进入平移模式
+     */
+    private void onKeyPressed(KeyEvent event) {
+        if (event.getCode() == KeyCode.SPACE && !(event.getTarget() instanceof TextInputControl)) {
+            if (!spaceDown) {
+                spaceDown = true;
+                canvasPane.setCursor(Cursor.OPEN_HAND);
+            }
+            event.consume();
+        }
+    }
+
+    /**
+     * 松开空格退出平移模式
+     */
+    private void onKeyReleased(KeyEvent event) {
+        if (event.getCode() == KeyCode.SPACE) {
+            spaceDown = false;
+            panning = false;
+            canvasPane.setCursor(Cursor.DEFAULT);
+            if (!(event.getTarget() instanceof TextInputControl)) {
+                event.consume();
+            }
+        }
+    }
+
+    /**
+     * 按住空格时按下鼠标开始平移，事件不再传递给画布和图形
+     */
+    private void onPanPressed(MouseEvent event) {
+        if (!spaceDown) {
+            return;
+        }
+        panning = true;
+        lastPanSceneX = event.getSceneX();
+        lastPanSceneY = event.getSceneY();
+        canvasPane.setCursor(Cursor.CLOSED_HAND);
+        event.consume();
+    }
+
+    /**
+     * 平移拖拽
+     */
+    private void onPanDragged(MouseEvent event) {
+        if (!panning) {
+            return;
+        }
+        scrollBy(lastPanSceneX - event.getSceneX(), lastPanSceneY - event.getSceneY());
+        lastPanSceneX = event.getSceneX();
+        lastPanSceneY = event.getSceneY();
+        event.consume();
+    }
+
+    /**
+     * 结束平移
+     */
+    private void onPanReleased(MouseEvent event) {
+        if (!panning) {
+            return;
+        }
+        panning = false;
+        canvasPane.setCursor(spaceDown ? Cursor.OPEN_HAND : Cursor.DEFAULT);
+        event.consume();
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -23,11 +23,8 @@ public class ArrowCreationManager {
         double shapeWidth = sourceShape.getWidth();
         double shapeHeight = sourceShape.getHeight();
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace;
+        // 图形绘制区域与canvas边缘的间距
+        double padding = BlockShape.CONTENT_PADDING;
 
         // 计算实际图形区域（不包括padding）
         double actualShapeX = shapeLayoutX + padding;
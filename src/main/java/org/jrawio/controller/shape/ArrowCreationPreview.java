@@ -0,0 +1,203 @@
+package org.jrawio.controller.shape;
+
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 箭头创建预览
+ * 每个容器只有一组预览节点：一条线、一个箭头头部和一组吸附点指示器，
+ * 拖动创建箭头时只更新这些节点的坐标，不再为每个鼠标事件创建新的ArrowShape和圆点，
+ * 拖动过程中不产生新的节点对象。不使用时节点隐藏，留在容器中供下次复用。
+ */
+public class ArrowCreationPreview {
+
+    /** 在容器属性中保存预览的键 */
+    private static final String PROPERTY_KEY = ArrowCreationPreview.class.getName();
+
+    /** 箭头头部的长度，与ArrowShape一致 */
+    private static final double ARROW_HEAD_LENGTH = 5.0;
+
+    /** 箭头头部的半角（弧度），与ArrowShape一致 */
+    private static final double ARROW_HEAD_ANGLE = Math.PI / 6;
+
+    /** 预览的透明度，表示这还不是真正的箭头 */
+    private static final double PREVIEW_OPACITY = 0.5;
+
+    /** 吸附点指示器的半径 */
+    private static final double INDICATOR_RADIUS = 4.0;
+
+    /** 预览所在的容器 */
+    private final Pane container;
+
+    /** 箭头主线 */
+    private final Line line = new Line();
+
+    /** 箭头头部，尖端位于原点、朝向X正方向，通过变换移动到结束点并旋转 */
+    private final Polygon arrowHead = new Polygon(
+            0, 0,
+            -ARROW_HEAD_LENGTH * Math.cos(ARROW_HEAD_ANGLE), -ARROW_HEAD_LENGTH * Math.sin(ARROW_HEAD_ANGLE),
+            -ARROW_HEAD_LENGTH * Math.cos(ARROW_HEAD_ANGLE), ARROW_HEAD_LENGTH * Math.sin(ARROW_HEAD_ANGLE));
+
+    /** 箭头头部的位置 */
+    private final Translate arrowHeadPosition = new Translate();
+
+    /** 箭头头部的方向 */
+    private final Rotate arrowHeadRotation = new Rotate();
+
+    /** 吸附点指示器池，数量只增不减 */
+    private final List<Circle> indicators = new ArrayList<>();
+
+    /** 当前显示的吸附点指示器数量 */
+    private int visibleIndicators = 0;
+
+    /**
+     * 获取容器对应的箭头创建预览，不存在时创建
+     *
+     * @param container 图形所在的容器
+     * @return 箭头创建预览
+     */
+    public static ArrowCreationPreview of(Pane container) {
+        Object preview = container.getProperties().get(PROPERTY_KEY);
+        if (preview instanceof ArrowCreationPreview) {
+            return (ArrowCreationPreview) preview;
+        }
+        ArrowCreationPreview created = new ArrowCreationPreview(container);
+        container.getProperties().put(PROPERTY_KEY, created);
+        return created;
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param container 图形所在的容器
+     */
+    private ArrowCreationPreview(Pane container) {
+        this.container = container;
+
+        line.setStroke(Color.BLACK);
+        line.setStrokeWidth(1.0);
+        arrowHead.setFill(Color.BLACK);
+        arrowHead.setStroke(Color.BLACK);
+        arrowHead.setStrokeWidth(1.0);
+        arrowHead.getTransforms().add(arrowHeadPosition);
+        arrowHead.getTransforms().add(arrowHeadRotation);
+        for (Node node : new Node[] { line, arrowHead }) {
+            node.setOpacity(PREVIEW_OPACITY);
+            preparePreviewNode(node);
+        }
+    }
+
+    /**
+     * 显示或移动预览箭头
+     *
+     * @param startX 起始点X（容器坐标）
+     * @param startY 起始点Y（容器坐标）
+     * @param endX   结束点X（容器坐标）
+     * @param endY   结束点Y（容器坐标）
+     */
+    public void showArrow(double startX, double startY, double endX, double endY) {
+        line.setStartX(startX);
+        line.setStartY(startY);
+        line.setEndX(endX);
+        line.setEndY(endY);
+        arrowHeadPosition.setX(endX);
+        arrowHeadPosition.setY(endY);
+        arrowHeadRotation.setAngle(Math.toDegrees(Math.atan2(endY - startY, endX - startX)));
+        attach(line);
+        attach(arrowHead);
+        line.setVisible(true);
+        arrowHead.setVisible(true);
+    }
+
+    /**
+     * 显示目标图形的所有可吸附点
+     * 复用指示器池中的圆点，只在目标的吸附点比以往都多时才补充新的圆点
+     *
+     * @param target 吸附目标图形
+     */
+    public void showSnapPoints(BlockShape target) {
+        List<Point2D> snapPoints = target.getSnapPoints();
+        // 吸附点是目标的本地坐标，按目标当前的变换直接换算，不创建中间对象
+        Transform toParent = target.getLocalToParentTransform();
+        int count = snapPoints.size();
+        while (indicators.size() < count) {
+            indicators.add(createIndicator());
+        }
+        for (int i = 0; i < count; i++) {
+            Point2D snapPoint = snapPoints.get(i);
+            Circle indicator = indicators.get(i);
+            indicator.setCenterX(toParent.getMxx() * snapPoint.getX() + toParent.getMxy() * snapPoint.getY()
+                    + toParent.getTx());
+            indicator.setCenterY(toParent.getMyx() * snapPoint.getX() + toParent.getMyy() * snapPoint.getY()
+                    + toParent.getTy());
+            attach(indicator);
+            indicator.setVisible(true);
+        }
+        for (int i = count; i < visibleIndicators; i++) {
+            indicators.get(i).setVisible(false);
+        }
+        visibleIndicators = count;
+    }
+
+    /**
+     * 隐藏所有吸附点指示器
+     */
+    public void hideSnapPoints() {
+        for (int i = 0; i < visibleIndicators; i++) {
+            indicators.get(i).setVisible(false);
+        }
+        visibleIndicators = 0;
+    }
+
+    /**
+     * 隐藏预览箭头和吸附点指示器
+     */
+    public void hide() {
+        line.setVisible(false);
+        arrowHead.setVisible(false);
+        hideSnapPoints();
+    }
+
+    /**
+     * 创建一个吸附点指示器（红色圆点）
+     */
+    private Circle createIndicator() {
+        Circle indicator = new Circle();
+        indicator.setRadius(INDICATOR_RADIUS);
+        indicator.setFill(Color.RED);
+        indicator.setStroke(Color.DARKRED);
+        indicator.setStrokeWidth(1.0);
+        preparePreviewNode(indicator);
+        return indicator;
+    }
+
+    /**
+     * 预览节点只负责显示：不参与布局和拾取，并显示在图形之上
+     */
+    private static void preparePreviewNode(Node node) {
+        node.setManaged(false);
+        node.setMouseTransparent(true);
+        node.setViewOrder(-1);
+        node.setVisible(false);
+    }
+
+    /**
+     * 首次使用或被移出容器后把节点加入容器
+     */
+    private void attach(Node node) {
+        if (node.getParent() != container) {
+            container.getChildren().add(node);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import javafx.scene.paint.Color;
 import javafx.geometry.Point2D;
 import java.util.ArrayList;
 import java.util.List;
+import org.jrawio.model.ShapeType;
 
 /**
  * 箭头形状类
@@ -12,12 +13,6 @@ import java.util.List;
  */
 public class ArrowShape extends LineShape {
 
-    /** 箭头头部的长度 */
-    private static final double ARROW_HEAD_LENGTH = 5.0;
-
-    /** 箭头头部的角度（弧度） */
-    private static final double ARROW_HEAD_ANGLE = Math.PI / 6; // 30度
-
     /**
      * 构造函数
      * 
@@ -76,41 +71,8 @@ public class ArrowShape extends LineShape {
         double actualEndX = x + (endPoint.getX() / getWidth()) * width;
         double actualEndY = y + (endPoint.getY() / getHeight()) * height;
 
-        // 绘制箭头主线
-        gc.strokeLine(actualStartX, actualStartY, actualEndX, actualEndY);
-
-        // 计算箭头头部
-        drawArrowHead(gc, actualStartX, actualStartY, actualEndX, actualEndY);
-    }
-
-    /**
-     * 绘制箭头头部
-     * 
-     * @param gc     图形上下文
-     * @param startX 起始点X坐标
-     * @param startY 起始点Y坐标
-     * @param endX   结束点X坐标
-     * @param endY   结束点Y坐标
-     */
-    private void drawArrowHead(GraphicsContext gc, double startX, double startY, double endX, double endY) {
-        // 计算箭头方向角度
-        double angle = Math.atan2(endY - startY, endX - startX);
-
-        // 计算箭头头部的两个端点
-        double arrowX1 = endX - ARROW_HEAD_LENGTH * Math.cos(angle - ARROW_HEAD_ANGLE);
-        double arrowY1 = endY - ARROW_HEAD_LENGTH * Math.sin(angle - ARROW_HEAD_ANGLE);
-
-        double arrowX2 = endX - ARROW_HEAD_LENGTH * Math.cos(angle + ARROW_HEAD_ANGLE);
-        double arrowY2 = endY - ARROW_HEAD_LENGTH * Math.sin(angle + ARROW_HEAD_ANGLE);
-
-        // 绘制箭头头部（三角形）
-        gc.strokeLine(endX, endY, arrowX1, arrowY1);
-        gc.strokeLine(endX, endY, arrowX2, arrowY2);
-
-        // 可选：填充箭头头部
-        double[] xPoints = { endX, arrowX1, arrowX2 };
-        double[] yPoints = { endY, arrowY1, arrowY2 };
-        gc.fillPolygon(xPoints, yPoints, 3);
+        // 绘制箭头主线和头部
+        ElementPainter.paintArrow(gc, actualStartX, actualStartY, actualEndX, actualEndY);
     }
 
     /**
@@ -6,15 +6,13 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
-import javafx.scene.text.Text;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 import org.jrawio.controller.components.RightPanel;
+import org.jrawio.model.DiagramProperty;
 
 /**
  * 块状图形抽象类 - 负责管理拖动和缩放逻辑
@@ -24,19 +22,31 @@ public abstract class BlockShape extends Shape {
     /** 箭头创建相关字段 */
     private Point2D arrowStartPoint = null;
     private Point2D currentArrowEndPoint = null;
-    private ArrowShape temporaryArrow = null;
 
-    private Set<LineShape> LineStart = new HashSet<>();
-    private Set<LineShape> LineEnd = new HashSet<>();
+    /** 从此形状开始和连接到此形状的线形 */
+    private LineList LineStart = new LineList(true);
+    private LineList LineEnd = new LineList(false);
+
+    /** 连接线列表的只读视图 */
+    private List<LineShape> lineStartView = Collections.unmodifiableList(LineStart);
+    private List<LineShape> lineEndView = Collections.unmodifiableList(LineEnd);
 
     /** 形状颜色属性 */
     private Color fillColor = Color.TRANSPARENT; // 默认填充为透明
     private Color strokeColor = Color.BLACK; // 默认边框颜色为黑色
 
-    /** 可吸附点视觉显示相关字段 */
-    private List<javafx.scene.shape.Circle> snapPointIndicators = new ArrayList<>();
+    /** 箭头吸附半径 */
+    private static final double SNAP_RADIUS = 20.0;
+
+    /** 图形绘制区域与canvas边缘的间距，控制点由选中覆盖层绘制，canvas不再为其预留空间 */
+    protected static final double CONTENT_PADDING = 4;
+
+    /** 当前的吸附目标，吸附点由容器的箭头创建预览显示 */
     private SnapTargetResult currentSnapTarget = null;
 
+    /** 可吸附点缓存（本地坐标），尺寸变化时失效 */
+    private List<Point2D> snapPointsCache = null;
+
     /**
      * 构造函数
      * 
@@ -44,10 +54,7 @@ public abstract class BlockShape extends Shape {
      * @param height 图形高度
      */
     public BlockShape(double width, double height) {
-        // 为了容纳箭头控制点，需要增加canvas的尺寸
-        // 箭头控制点位于图形外围，需要额外的空间
-        super(width + 2 * (ArrowHandleManager.getArrowHandleOffset() + ArrowHandleManager.getArrowHandleSize()),
-                height + 2 * (ArrowHandleManager.getArrowHandleOffset() + ArrowHandleManager.getArrowHandleSize()));
+        super(width, height);
     }
 
     /**
@@ -61,8 +68,10 @@ public abstract class BlockShape extends Shape {
 
         // 复制BlockShape特有属性
         // 注意：不复制连接线集合，新对象应该没有连接
-        this.LineStart = new HashSet<>();
-        this.LineEnd = new HashSet<>();
+        this.LineStart = new LineList(true);
+        this.LineEnd = new LineList(false);
+        this.lineStartView = Collections.unmodifiableList(LineStart);
+        this.lineEndView = Collections.unmodifiableList(LineEnd);
 
         // 复制颜色属性
         this.fillColor = source.fillColor;
@@ -71,7 +80,6 @@ public abstract class BlockShape extends Shape {
         // 不复制箭头创建状态，新对象应该是干净状态
         this.arrowStartPoint = null;
         this.currentArrowEndPoint = null;
-        this.temporaryArrow = null;
     }
 
     /**
@@ -121,8 +129,11 @@ public abstract class BlockShape extends Shape {
      * 处理缩放操作
      */
     protected void handleResize(MouseEvent event) {
-        double deltaX = event.getSceneX() - stateMachine.getOrgSceneX();
-        double deltaY = event.getSceneY() - stateMachine.getOrgSceneY();
+        // 将场景坐标中的位移换算到父容器坐标（考虑画布缩放）
+        Point2D delta = sceneDeltaToParent(event.getSceneX() - stateMachine.getOrgSceneX(),
+                event.getSceneY() - stateMachine.getOrgSceneY());
+        double deltaX = delta.getX();
+        double deltaY = delta.getY();
 
         // 使用控制点管理器计算新的尺寸和位置
         double[] newDimensions = ResizeHandleManager.calculateNewDimensions(
@@ -132,22 +143,16 @@ public abstract class BlockShape extends Shape {
                 20 // 最小尺寸
         );
 
-        // 应用新的尺寸和位置
-        setShapeWidth(newDimensions[0]); // newWidth
-        setShapeHeight(newDimensions[1]); // newHeight
+        // 应用新的尺寸和位置，先更新位置，使尺寸变化回调中连接线能使用新位置
         setLayoutX(newDimensions[2]); // newX
         setLayoutY(newDimensions[3]); // newY
+        setShapeSize(newDimensions[0], newDimensions[1]); // newWidth, newHeight
 
-        // 更新文本框位置（考虑额外空间）
+        // 更新文本框位置
         if (textField != null) {
-            double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-            double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-            double extraSpace = arrowHandleOffset + arrowHandleSize;
-
-            // 文本框位置需要考虑图形在canvas中的偏移
-            textField.setLayoutX(getLayoutX() + 4 + extraSpace);
+            textField.setLayoutX(getLayoutX() + CONTENT_PADDING);
             textField.setLayoutY(getLayoutY() + getHeight() / 2 - 12);
-            textField.setPrefWidth(getWidth() - 8 - 2 * extraSpace);
+            textField.setPrefWidth(getWidth() - 2 * CONTENT_PADDING);
         }
     }
 
@@ -192,13 +197,8 @@ public abstract class BlockShape extends Shape {
         if (!selected)
             return null;
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace; // 原有padding + 箭头控制点所需空间
-
-        return ResizeHandleManager.getResizeHandleAt(x, y, getWidth(), getHeight(), padding);
+        // 控制点可能位于canvas之外，坐标由选中覆盖层转发的事件换算而来
+        return ResizeHandleManager.getResizeHandleAt(x, y, getWidth(), getHeight(), CONTENT_PADDING);
     }
 
     /**
@@ -212,13 +212,8 @@ public abstract class BlockShape extends Shape {
         if (!selected)
             return null;
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace; // 原有padding + 箭头控制点所需空间
-
-        return ArrowHandleManager.getArrowHandleAt(x, y, getWidth(), getHeight(), padding);
+        // 控制点可能位于canvas之外，坐标由选中覆盖层转发的事件换算而来
+        return ArrowHandleManager.getArrowHandleAt(x, y, getWidth(), getHeight(), CONTENT_PADDING);
     }
 
     /**
@@ -284,20 +279,10 @@ public abstract class BlockShape extends Shape {
             clearSnapPointVisuals(container);
         }
 
-        // 清除之前的临时箭头
-        if (temporaryArrow != null) {
-            if (container != null) {
-                container.getChildren().remove(temporaryArrow);
-            }
-        }
-
-        // 创建新的临时箭头用于预览
-        temporaryArrow = ArrowCreationManager.createArrow(arrowStartPoint, currentArrowEndPoint);
-        temporaryArrow.setOpacity(0.5); // 设置半透明以表示这是预览
-
-        // 添加到容器中
+        // 移动复用的预览箭头，不再为每次拖动创建新的箭头
         if (container != null) {
-            ArrowCreationManager.addArrowToContainer(temporaryArrow, container);
+            ArrowCreationPreview.of(container).showArrow(arrowStartPoint.getX(), arrowStartPoint.getY(),
+                    currentArrowEndPoint.getX(), currentArrowEndPoint.getY());
         }
     }
 
@@ -339,13 +324,6 @@ public abstract class BlockShape extends Shape {
             return;
         }
 
-        // 移除临时箭头
-        if (temporaryArrow != null) {
-            if (container != null) {
-                container.getChildren().remove(temporaryArrow);
-            }
-        }
-
         // 创建最终的箭头
         ArrowShape finalArrow = ArrowCreationManager.createArrow(arrowStartPoint, finalEndPoint);
 
@@ -371,21 +349,15 @@ public abstract class BlockShape extends Shape {
         // 获取容器
         Pane container = ArrowCreationManager.getShapeContainer(this);
 
-        // 移除临时箭头
-        if (temporaryArrow != null) {
-            if (container != null) {
-                container.getChildren().remove(temporaryArrow);
-            }
+        // 隐藏预览箭头和可吸附点
+        if (container != null) {
+            ArrowCreationPreview.of(container).hide();
         }
 
-        // 清除可吸附点的视觉显示
-        clearSnapPointVisuals(container);
-
         // 重置状态
         stateMachine.toIdle();
         arrowStartPoint = null;
         currentArrowEndPoint = null;
-        temporaryArrow = null;
         currentSnapTarget = null;
         setCursor(Cursor.DEFAULT);
     }
@@ -408,7 +380,7 @@ public abstract class BlockShape extends Shape {
             // 通知右侧面板更新尺寸信息
             RightPanel rightPanel = RightPanel.getInstance();
             if (rightPanel != null) {
-                rightPanel.onShapeSelectionChanged(selectedShapes);
+                rightPanel.onShapeSelectionChanged(getSelectedShapes());
             }
             return true; // 已处理缩放释放
         }
@@ -422,26 +394,27 @@ public abstract class BlockShape extends Shape {
     }
 
     /**
-     * 重写绘制方法，添加箭头控制点的绘制
+     * 重写绘制方法，使用块状图形的填充色和边框色
      */
     @Override
-    public void draw() {
-        GraphicsContext gc = getGraphicsContext2D();
-        gc.clearRect(0, 0, getWidth(), getHeight());
-
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-
-        // 使用工具类计算绘制区域，但要考虑额外的空间
-        double padding = 4 + extraSpace; // 原有padding + 箭头控制点所需空间
-        double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), padding);
+    public void paint(GraphicsContext gc) {
+        // 使用工具类计算绘制区域
+        double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), CONTENT_PADDING);
         double x = drawingArea[0];
         double y = drawingArea[1];
         double shapeWidth = drawingArea[2];
         double shapeHeight = drawingArea[3];
 
+        // 缩放比例较小时简化为填充矩形，不绘制文本
+        if (LevelOfDetail.isSimplified()) {
+            gc.setFill(fillColor != null && fillColor.getOpacity() > 0 ? fillColor : Color.LIGHTGRAY);
+            gc.fillRect(x, y, shapeWidth, shapeHeight);
+            if (selected && !isSelectionOnOverlay()) {
+                paintSelection(gc);
+            }
+            return;
+        }
+
         // 设置图形绘制颜色，处理NULL情况为透明色
         gc.setFill(fillColor != null ? fillColor : Color.TRANSPARENT);
         gc.setStroke(strokeColor != null ? strokeColor : Color.TRANSPARENT);
@@ -449,104 +422,106 @@ public abstract class BlockShape extends Shape {
         // 调用子类实现的图形绘制方法
         drawShape(gc, x, y, shapeWidth, shapeHeight);
 
-        // 如果选中，画蓝色虚线方框和控制点
-        if (selected) {
-            gc.setStroke(Color.BLUE);
-            gc.setLineWidth(2); // 使用较粗的线条
-
-            // 设置虚线样式
-            gc.setLineDashes(5, 5); // 虚线长度为5，间隔为5
-            gc.strokeRect(x, y, shapeWidth, shapeHeight);
-
-            // 重置为实线，用于绘制控制点
-            gc.setLineDashes(null);
-            gc.setLineWidth(1);
-
-            // 绘制八个缩放控制点
-            ResizeHandleManager.drawResizeHandles(gc, x, y, shapeWidth, shapeHeight);
-
-            // 绘制四个箭头控制点（位于缩放控制框外围）
-            ArrowHandleManager.drawArrowHandles(gc, x, y, shapeWidth, shapeHeight);
-        } // 绘制文本
-        if (text != null && !text.isEmpty() && textField == null) {
-            gc.setFill(Color.BLACK);
-            Font font = Font.font(14);
-            gc.setFont(font);
+        // 没有选中覆盖层时（例如不在画布中），由图形自己绘制选中装饰
+        if (selected && !isSelectionOnOverlay()) {
+            paintSelection(gc);
+        }
 
-            // 用Text类测量文本宽度
-            Text tempText = new Text(text);
-            tempText.setFont(font);
-            double textWidth = tempText.getLayoutBounds().getWidth();
+        // 绘制文本
+        drawLabel(gc);
 
-            // 使用工具类计算文本居中位置
-            double[] textPosition = ShapeGeometryUtils.calculateCenteredTextPosition(
-                    getWidth(), getHeight(), textWidth, 14);
-            double textX = textPosition[0];
-            double textY = textPosition[1];
+        // 绘制调试信息（canvas边界和中心点）
+        // drawDebugInfo(gc); // 调试绘制已禁用
+    }
 
-            gc.fillText(text, textX, textY);
+    /**
+     * 重写选中装饰的绘制，在缩放控制框外围添加四个箭头控制点
+     */
+    @Override
+    protected void paintSelection(GraphicsContext gc) {
+        super.paintSelection(gc);
+        if (LevelOfDetail.isSimplified()) {
+            return;
         }
 
-        // 绘制调试信息（canvas边界和中心点）
-        // drawDebugInfo(gc); // 调试绘制已禁用
+        double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), CONTENT_PADDING);
+        ArrowHandleManager.drawArrowHandles(gc, drawingArea[0], drawingArea[1], drawingArea[2], drawingArea[3]);
+    }
+
+    /**
+     * 检测鼠标位置是否在缩放控制点或箭头控制点上
+     */
+    @Override
+    protected boolean isOnSelectionHandle(double x, double y) {
+        return getResizeHandleAt(x, y) != null || getArrowHandleAt(x, y) != null;
     }
 
     /**
      * 查找可吸附的目标点
-     * 遍历容器中的其他形状，查找最近的可吸附点
+     * 通过空间索引只查询吸附半径范围内的形状，在它们缓存的吸附点中查找最近的一个
      * 
      * @param mousePoint 鼠标当前位置（容器坐标）
      * @param container  形状容器
      * @return 吸附目标结果，如果没有找到则返回null
      */
     protected SnapTargetResult findSnapTarget(Point2D mousePoint, Pane container) {
-        if (container == null) {
-            return null;
+        List<SnapTargetResult> targets = findNearestSnapTargets(mousePoint, container, 1);
+        return targets.isEmpty() ? null : targets.get(0);
+    }
+
+    /**
+     * 查找吸附半径内最近的k个吸附点
+     * 吸附点一定位于其形状的边界内，因此只需查询与吸附范围相交的形状
+     * 
+     * @param mousePoint 鼠标当前位置（容器坐标）
+     * @param container  形状容器
+     * @param k          最多返回的吸附点数量
+     * @return 按距离从近到远排列的吸附目标
+     */
+    protected List<SnapTargetResult> findNearestSnapTargets(Point2D mousePoint, Pane container, int k) {
+        List<SnapTargetResult> result = new ArrayList<>();
+        if (container == null || k <= 0) {
+            return result;
         }
 
-        double snapRadius = 20.0; // 吸附半径，可以根据需要调整
-        SnapTargetResult nearestTarget = null;
-        double minDistance = Double.MAX_VALUE; // 第一步：遍历容器中的所有子节点，找到最近的图形
-        BlockShape nearestShape = null;
-        double minShapeDistance = Double.MAX_VALUE;
+        double snapRadius = SNAP_RADIUS;
+        List<Shape> candidates = ShapeSpatialIndex.of(container).query(
+                mousePoint.getX() - snapRadius, mousePoint.getY() - snapRadius,
+                2 * snapRadius, 2 * snapRadius);
 
-        for (javafx.scene.Node node : container.getChildren()) {
+        List<Double> distances = new ArrayList<>();
+        for (Shape candidate : candidates) {
             // 只处理BlockShape类型的节点，且不是当前形状本身
-            if (node instanceof BlockShape && node != this) {
-                BlockShape targetShape = (BlockShape) node;
-
-                // 计算鼠标点到图形中心的距离作为初步筛选
-                double shapeCenterX = targetShape.getLayoutX() + targetShape.getWidth() / 2;
-                double shapeCenterY = targetShape.getLayoutY() + targetShape.getHeight() / 2;
-                Point2D shapeCenter = new Point2D(shapeCenterX, shapeCenterY);
-
-                double distanceToShape = mousePoint.distance(shapeCenter);
-                if (distanceToShape < minShapeDistance) {
-                    minShapeDistance = distanceToShape;
-                    nearestShape = targetShape;
-                }
+            if (!(candidate instanceof BlockShape) || candidate == this) {
+                continue;
             }
-        }
-
-        // 第二步：如果找到最近的图形，则从该图形中找最近的吸附点
-        if (nearestShape != null) {
-            List<Point2D> snapPoints = nearestShape.getAllSnapPoints();
+            BlockShape targetShape = (BlockShape) candidate;
 
-            for (Point2D snapPoint : snapPoints) {
+            for (Point2D snapPoint : targetShape.getSnapPoints()) {
                 // 将形状本地坐标转换回容器坐标
-                Point2D containerSnapPoint = nearestShape.localToParent(snapPoint);
-
-                // 计算距离
+                Point2D containerSnapPoint = targetShape.localToParent(snapPoint);
                 double distance = mousePoint.distance(containerSnapPoint);
+                if (distance > snapRadius) {
+                    continue;
+                }
 
-                if (distance <= snapRadius && distance < minDistance) {
-                    minDistance = distance;
-                    nearestTarget = new SnapTargetResult(nearestShape, containerSnapPoint);
+                // 按距离插入，只保留最近的k个
+                int index = 0;
+                while (index < distances.size() && distances.get(index) <= distance) {
+                    index++;
+                }
+                if (index < k) {
+                    distances.add(index, distance);
+                    result.add(index, new SnapTargetResult(targetShape, containerSnapPoint));
+                    if (result.size() > k) {
+                        distances.remove(k);
+                        result.remove(k);
+                    }
                 }
             }
         }
 
-        return nearestTarget;
+        return result;
     }
 
     /**
@@ -580,21 +555,45 @@ public abstract class BlockShape extends Shape {
     protected abstract List<Point2D> getAllSnapPoints();
 
     /**
-     * 获取从此形状开始的线形集合
+     * 获取缓存的可吸附点
+     * 首次调用或尺寸变化后重新计算
      * 
-     * @return 线形集合
+     * @return 所有可吸附点的列表（本地坐标）
      */
-    public Set<LineShape> getLineStart() {
-        return new HashSet<>(LineStart);
+    protected List<Point2D> getSnapPoints() {
+        if (snapPointsCache == null) {
+            snapPointsCache = java.util.Collections.unmodifiableList(new ArrayList<>(getAllSnapPoints()));
+        }
+        return snapPointsCache;
+    }
+
+    /**
+     * 获取从此形状开始的线形
+     * 返回只读视图，不复制；按下标遍历不创建对象，遍历期间修改连接关系前需要先复制
+     * 
+     * @return 线形列表的只读视图
+     */
+    public List<LineShape> getLineStart() {
+        return lineStartView;
+    }
+
+    /**
+     * 获取连接到此形状的线形
+     * 返回只读视图，不复制；按下标遍历不创建对象，遍历期间修改连接关系前需要先复制
+     * 
+     * @return 线形列表的只读视图
+     */
+    public List<LineShape> getLineEnd() {
+        return lineEndView;
     }
 
     /**
-     * 获取连接到此形状的线形集合
+     * 连接到此形状的线形数量
      * 
-     * @return 线形集合
+     * @return 起始和结束连接的线形总数
      */
-    public Set<LineShape> getLineEnd() {
-        return new HashSet<>(LineEnd);
+    public int getConnectionCount() {
+        return LineStart.size() + LineEnd.size();
     }
 
     /**
@@ -603,8 +602,12 @@ public abstract class BlockShape extends Shape {
      * @param line 线形
      */
     public void addLineStart(LineShape line) {
-        if (!LineStart.contains(line)) {
-            LineStart.add(line);
+        // 线形只有一个起始形状，先从原来的形状的列表中移除
+        BlockShape previous = line.getStartShape();
+        if (previous != null && previous != this) {
+            previous.LineStart.removeLine(line);
+        }
+        if (LineStart.addLine(line)) {
             // 只有当线形的起始形状不是当前形状时才设置，避免循环调用
             if (line.getStartShape() != this) {
                 line.setStartShapeInternal(this);
@@ -618,8 +621,12 @@ public abstract class BlockShape extends Shape {
      * @param line 线形
      */
     public void addLineEnd(LineShape line) {
-        if (!LineEnd.contains(line)) {
-            LineEnd.add(line);
+        // 线形只有一个结束形状，先从原来的形状的列表中移除
+        BlockShape previous = line.getEndShape();
+        if (previous != null && previous != this) {
+            previous.LineEnd.removeLine(line);
+        }
+        if (LineEnd.addLine(line)) {
             // 只有当线形的结束形状不是当前形状时才设置，避免循环调用
             if (line.getEndShape() != this) {
                 line.setEndShapeInternal(this);
@@ -633,7 +640,7 @@ public abstract class BlockShape extends Shape {
      * @param line 线形
      */
     public void removeLineStart(LineShape line) {
-        if (LineStart.remove(line)) {
+        if (LineStart.removeLine(line)) {
             // 只有当线形的起始形状是当前形状时才清除，避免循环调用
             if (line.getStartShape() == this) {
                 line.setStartShapeInternal(null);
@@ -647,7 +654,7 @@ public abstract class BlockShape extends Shape {
      * @param line 线形
      */
     public void removeLineEnd(LineShape line) {
-        if (LineEnd.remove(line)) {
+        if (LineEnd.removeLine(line)) {
             // 只有当线形的结束形状是当前形状时才清除，避免循环调用
             if (line.getEndShape() == this) {
                 line.setEndShapeInternal(null);
@@ -655,6 +662,14 @@ public abstract class BlockShape extends Shape {
         }
     }
 
+    /**
+     * 清空连接线列表，只在批量删除时使用，此时列表中的线形已经一起删除
+     */
+    void clearConnections() {
+        LineStart.clear();
+        LineEnd.clear();
+    }
+
     /**
      * 重写位置变化后的处理逻辑
      * 当形状位置改变时，更新所有连接线的端点
@@ -670,40 +685,23 @@ public abstract class BlockShape extends Shape {
      */
     @Override
     protected void onSizeChanged() {
+        // 尺寸变化后吸附点位置改变，清除缓存
+        snapPointsCache = null;
         updateConnectedLines();
     }
 
     /**
      * 更新所有连接的线形的端点位置
-     * 此方法在形状移动或尺寸改变后被调用
+     * 此方法在形状移动或尺寸改变后被调用，只登记受影响的线形，
+     * 由连接线路由器在下一帧统一计算，两端图形同时移动的线形每帧也只更新一次
      */
     protected void updateConnectedLines() {
-        // 更新从此形状开始的线形的起始点
-        for (LineShape line : LineStart) {
-            if (line instanceof ArrowShape) {
-                ArrowShape arrow = (ArrowShape) line;
-                // 根据箭头的方向重新计算起始点
-                Point2D newStartPoint = calculateConnectionPointForArrow(arrow);
-                if (newStartPoint != null) {
-                    // 将绝对坐标转换为相对于线形画布的坐标
-                    Point2D relativeStartPoint = convertToLineRelativeCoordinate(arrow, newStartPoint);
-                    arrow.setStartPoint(relativeStartPoint);
-                }
-            }
+        ConnectorRouter router = ConnectorRouter.getInstance();
+        for (int i = 0; i < LineStart.size(); i++) {
+            router.schedule(LineStart.get(i));
         }
-
-        // 更新连接到此形状的线形的结束点
-        for (LineShape line : LineEnd) {
-            if (line instanceof ArrowShape) {
-                ArrowShape arrow = (ArrowShape) line;
-                // 根据箭头的方向重新计算结束点
-                Point2D newEndPoint = calculateConnectionPointForArrow(arrow);
-                if (newEndPoint != null) {
-                    // 将绝对坐标转换为相对于线形画布的坐标
-                    Point2D relativeEndPoint = convertToLineRelativeCoordinate(arrow, newEndPoint);
-                    arrow.setEndPoint(relativeEndPoint);
-                }
-            }
+        for (int i = 0; i < LineEnd.size(); i++) {
+            router.schedule(LineEnd.get(i));
         }
     }
 
@@ -715,23 +713,27 @@ public abstract class BlockShape extends Shape {
      * @return 连接点的绝对坐标
      */
     protected Point2D calculateConnectionPointForArrow(ArrowShape arrow) {
-        // 获取箭头的起始点和结束点（绝对坐标）
-        Point2D arrowStart = arrow.localToParent(arrow.getStartPoint());
-        Point2D arrowEnd = arrow.localToParent(arrow.getEndPoint());
-
-        // 根据箭头的连接关系确定要更新的端点
-        Point2D targetPoint;
-        if (LineStart.contains(arrow)) {
-            // 如果箭头从此形状开始，使用箭头的起始点
-            targetPoint = arrowStart;
-        } else {
-            // 如果箭头连接到此形状，使用箭头的结束点
-            targetPoint = arrowEnd;
-        } // 将目标点转换为此形状的本地坐标
+        // 如果箭头从此形状开始，更新起始点；否则更新结束点
+        return calculateConnectionPoint(arrow, arrow.getStartShape() == this);
+    }
+
+    /**
+     * 为线形的一个端点计算连接点
+     * 根据线形该端点的当前位置，找到形状上最近的吸附点
+     * 
+     * @param line    线形
+     * @param atStart true计算起始点，false计算结束点
+     * @return 连接点的绝对坐标
+     */
+    protected Point2D calculateConnectionPoint(LineShape line, boolean atStart) {
+        // 获取线形对应端点的绝对坐标
+        Point2D targetPoint = line.localToParent(atStart ? line.getStartPoint() : line.getEndPoint());
+
+        // 将目标点转换为此形状的本地坐标
         Point2D localPoint = this.parentToLocal(targetPoint);
 
         // 获取所有可吸附点，找到最近的点
-        List<Point2D> snapPoints = getAllSnapPoints();
+        List<Point2D> snapPoints = getSnapPoints();
         Point2D nearestSnapPoint = null;
         double minDistance = Double.MAX_VALUE;
 
@@ -786,12 +788,10 @@ public abstract class BlockShape extends Shape {
         // 获取父容器用于移除箭头
         Pane container = ArrowCreationManager.getShapeContainer(this);
 
-        // 创建拷贝以避免并发修改异常
-        Set<LineShape> startLinesCopy = new HashSet<>(LineStart);
-        Set<LineShape> endLinesCopy = new HashSet<>(LineEnd);
-
+        // 从后向前遍历，断开连接会按线形记录的下标把它从列表中移除，不需要复制列表
         // 移除从此形状开始的箭头
-        for (LineShape line : startLinesCopy) {
+        for (int i = LineStart.size() - 1; i >= 0; i--) {
+            LineShape line = LineStart.get(i);
             if (line instanceof ArrowShape) {
                 // 断开连接
                 line.disconnectAll();
@@ -804,7 +804,8 @@ public abstract class BlockShape extends Shape {
         }
 
         // 移除连接到此形状的箭头
-        for (LineShape line : endLinesCopy) {
+        for (int i = LineEnd.size() - 1; i >= 0; i--) {
+            LineShape line = LineEnd.get(i);
             if (line instanceof ArrowShape) {
                 // 断开连接
                 line.disconnectAll();
@@ -830,10 +831,29 @@ public abstract class BlockShape extends Shape {
         if (fillColor != null) {
             this.fillColor = fillColor;
             // 重新绘制图形以应用新颜色
-            draw();
+            requestRedraw();
+            modelChanged(DiagramProperty.STYLE);
         }
     }
 
+    /**
+     * 获取填充颜色
+     * 
+     * @return 填充颜色
+     */
+    public Color getFillColor() {
+        return fillColor;
+    }
+
+    /**
+     * 获取边框颜色
+     * 
+     * @return 边框颜色
+     */
+    public Color getStrokeColor() {
+        return strokeColor;
+    }
+
     /**
      * 设置边框颜色
      * 
@@ -843,7 +863,8 @@ public abstract class BlockShape extends Shape {
         if (strokeColor != null) {
             this.strokeColor = strokeColor;
             // 重新绘制图形以应用新颜色
-            draw();
+            requestRedraw();
+            modelChanged(DiagramProperty.STYLE);
         }
     }
 
@@ -911,7 +932,7 @@ public abstract class BlockShape extends Shape {
 
     /**
      * 更新可吸附点的视觉显示
-     * 显示目标形状的所有可吸附点为红色圆点
+     * 显示目标形状的所有可吸附点为红色圆点，圆点由预览复用，只更新位置
      * 
      * @param snapResult 吸附目标结果
      * @param container  形状容器
@@ -921,36 +942,9 @@ public abstract class BlockShape extends Shape {
             return;
         }
 
-        // 清除之前的显示
-        clearSnapPointVisuals(container);
-
         // 保存当前的吸附目标
         currentSnapTarget = snapResult;
-
-        // 获取目标形状的所有可吸附点
-        List<Point2D> snapPoints = snapResult.targetShape.getAllSnapPoints();
-
-        // 为每个吸附点创建红色圆点指示器
-        for (Point2D snapPoint : snapPoints) {
-            // 将形状本地坐标转换为容器坐标
-            Point2D containerPoint = snapResult.targetShape.localToParent(snapPoint);
-
-            // 创建红色圆点
-            javafx.scene.shape.Circle indicator = new javafx.scene.shape.Circle();
-            indicator.setCenterX(containerPoint.getX());
-            indicator.setCenterY(containerPoint.getY());
-            indicator.setRadius(4.0); // 圆点半径
-            indicator.setFill(Color.RED);
-            indicator.setStroke(Color.DARKRED);
-            indicator.setStrokeWidth(1.0);
-
-            // 设置为不可交互，避免干扰其他操作
-            indicator.setMouseTransparent(true);
-
-            // 添加到容器中
-            container.getChildren().add(indicator);
-            snapPointIndicators.add(indicator);
-        }
+        ArrowCreationPreview.of(container).showSnapPoints(snapResult.targetShape);
     }
 
     /**
@@ -962,14 +956,7 @@ public abstract class BlockShape extends Shape {
         if (container == null) {
             return;
         }
-
-        // 从容器中移除所有指示器
-        for (javafx.scene.shape.Circle indicator : snapPointIndicators) {
-            container.getChildren().remove(indicator);
-        }
-
-        // 清空指示器列表
-        snapPointIndicators.clear();
+        ArrowCreationPreview.of(container).hideSnapPoints();
 
         // 清除当前吸附目标
         currentSnapTarget = null;
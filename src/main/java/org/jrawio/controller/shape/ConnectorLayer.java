@@ -0,0 +1,53 @@
+package org.jrawio.controller.shape;
+
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.layout.Pane;
+
+/**
+ * 连接线层
+ * 容器中所有的线形（包括箭头）统一以矢量路径绘制到一个覆盖可见区域的共享画布上，
+ * 线形节点自身隐藏，不再为两端点的包围盒分配纹理，也不会在整个包围盒内拦截鼠标事件。
+ * 鼠标事件通过{@link #pick(double, double)}按线条几何进行命中测试后转发给线形。
+ * 连接线层显示在块状图形之上、选中覆盖层之下。
+ */
+public class ConnectorLayer {
+
+    /** 只接管线形的渲染器 */
+    private final SceneRenderer renderer;
+
+    /**
+     * 构造函数
+     *
+     * @param container       图形所在的容器
+     * @param connectorCanvas 用于绘制连接线的画布
+     */
+    public ConnectorLayer(Pane container, Canvas connectorCanvas) {
+        this.renderer = new SceneRenderer(container, connectorCanvas, new DirtyRegion(),
+                shape -> shape instanceof LineShape);
+        // 显示在块状图形之上（图形被点击时会调用toFront），选中覆盖层之下
+        connectorCanvas.setViewOrder(-0.5);
+        renderer.setEnabled(true);
+    }
+
+    /**
+     * 设置连接线层覆盖的视口区域
+     *
+     * @param viewport 可见区域（容器坐标）
+     * @param scale    画布缩放比例
+     */
+    public void setViewport(Bounds viewport, double scale) {
+        renderer.setViewport(viewport, scale);
+    }
+
+    /**
+     * 查找指定位置上最上层的线形
+     *
+     * @param x 容器坐标X
+     * @param y 容器坐标Y
+     * @return 命中的线形，没有则返回null
+     */
+    public Shape pick(double x, double y) {
+        return renderer.pick(x, y);
+    }
+}
@@ -0,0 +1,92 @@
+package org.jrawio.controller.shape;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 连接线路由器（单例）
+ * 块状图形移动或缩放时只登记受影响的线形，由路由器在下一帧绘制之前统一重新计算端点。
+ * 同一帧内无论连接的图形移动了多少次、两端的图形是否同时移动，
+ * 每条线形只计算一次两端的连接点，并一次性应用。
+ */
+public class ConnectorRouter {
+
+    private static ConnectorRouter instance;
+
+    /** 待重新计算端点的线形，保持登记顺序 */
+    private final Set<LineShape> pendingLines = new LinkedHashSet<>();
+
+    /** 是否正在重新计算端点 */
+    private boolean routing = false;
+
+    private ConnectorRouter() {
+    }
+
+    /**
+     * 获取连接线路由器实例
+     *
+     * @return 连接线路由器实例
+     */
+    public static ConnectorRouter getInstance() {
+        if (instance == null) {
+            instance = new ConnectorRouter();
+        }
+        return instance;
+    }
+
+    /**
+     * 登记需要在下一帧重新计算端点的线形
+     *
+     * @param line 线形
+     */
+    public void schedule(LineShape line) {
+        if (pendingLines.add(line)) {
+            // 路由在重绘调度器的每一帧开始时执行
+            RedrawScheduler.getInstance().requestFrame();
+        }
+    }
+
+    /**
+     * 是否有等待重新计算端点的线形
+     *
+     * @return true如果有待处理的线形
+     */
+    public boolean hasPending() {
+        return !pendingLines.isEmpty();
+    }
+
+    /**
+     * 是否正在重新计算端点
+     * 此期间线形端点的变化是图形移动的派生结果，不作为单独的操作记录
+     *
+     * @return true如果正在重新计算
+     */
+    public boolean isRouting() {
+        return routing;
+    }
+
+    /**
+     * 立即重新计算所有已登记线形的端点
+     * 由重绘调度器在绘制之前调用，也可以在需要同步得到结果时直接调用
+     */
+    public void flush() {
+        if (pendingLines.isEmpty()) {
+            return;
+        }
+        List<LineShape> lines = new ArrayList<>(pendingLines);
+        pendingLines.clear();
+        routing = true;
+        try {
+            for (LineShape line : lines) {
+                // 已经从画布中移除的线形不再更新
+                if (line.getParent() != null) {
+                    line.rerouteToConnectedShapes();
+                }
+            }
+        } finally {
+            routing = false;
+        }
+    }
+}
@@ -0,0 +1,721 @@
+package org.jrawio.controller.shape;
+
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import org.jrawio.model.AdjacencyIndex;
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramElement;
+import org.jrawio.model.DiagramListener;
+import org.jrawio.model.DiagramProperty;
+import org.jrawio.model.GeometryStore;
+import org.jrawio.model.ShapeStyle;
+import org.jrawio.model.ShapeType;
+import org.jrawio.model.command.CommandStack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 文档模型与画布的双向绑定
+ * 容器中的每个Shape对应文档模型中的一个图元：
+ * 用户在画布上的操作（添加、删除、移动、缩放、修改文本和样式、连接）同步写入模型；
+ * 直接对模型的修改（加载、撤销、批量变换等）投影到画布上，必要时创建或移除Shape节点。
+ *
+ * 图元数量超过{@link #VIRTUALIZE_THRESHOLD}时只为可见区域内的图元创建Shape节点，
+ * 其余图元只存在于模型的列式几何存储中，滚动到可见区域时再创建，离开时释放。
+ * 只能在FX线程上使用。
+ */
+public class DiagramBinding implements DiagramListener {
+
+    /** 超过此图元数量时只为可见区域内的图元创建图形 */
+    public static final int VIRTUALIZE_THRESHOLD = 5000;
+
+    /** 文档模型 */
+    private final Diagram diagram;
+
+    /** 图形所在的容器 */
+    private final Pane container;
+
+    /** 图元ID到图形的映射 */
+    private final Map<Integer, Shape> shapes = new HashMap<>();
+
+    /** 是否正在把模型的变化应用到图形，期间图形的变化不再写回模型 */
+    private boolean applying = false;
+
+    /** 是否有未结束的连续用户操作 */
+    private boolean gestureOpen = false;
+
+    /** 当前可见区域（容器坐标），尚未确定时为null */
+    private Bounds viewport;
+
+    /** 上一次设置可见区域时是否只为可见区域内的图元创建了图形 */
+    private boolean virtualizedViewport = false;
+
+    /** 位于可见区域之外但仍保留的图形（选中时跳过释放，或被拖出可见区域），下次释放时一并检查 */
+    private final Set<Shape> outside = new HashSet<>();
+
+    /**
+     * 构造函数
+     * 容器中已有的图形加入模型，模型中已有的图元在容器中创建图形
+     *
+     * @param diagram   文档模型
+     * @param container 图形所在的容器
+     */
+    public DiagramBinding(Diagram diagram, Pane container) {
+        this.diagram = diagram;
+        this.container = container;
+
+        List<Shape> existing = new ArrayList<>();
+        for (Node node : container.getChildren()) {
+            if (node instanceof Shape) {
+                existing.add((Shape) node);
+            }
+        }
+        List<DiagramElement> elements = new ArrayList<>(diagram.getElements());
+
+        diagram.addListener(this);
+        container.getChildren().addListener(this::onChildrenChanged);
+        for (Shape shape : existing) {
+            bind(shape);
+        }
+        for (DiagramElement element : elements) {
+            if (shouldMaterialize(element)) {
+                createShape(element);
+            }
+        }
+        for (DiagramElement element : elements) {
+            if (element.isEdge()) {
+                applyToShape(element, DiagramProperty.CONNECTION);
+            }
+        }
+    }
+
+    /**
+     * 获取文档模型
+     *
+     * @return 文档模型
+     */
+    public Diagram getDiagram() {
+        return diagram;
+    }
+
+    /**
+     * 获取图元对应的图形
+     *
+     * @param elementId 图元ID
+     * @return 图形，没有对应的图形时返回null
+     */
+    public Shape getShape(int elementId) {
+        return shapes.get(elementId);
+    }
+
+    /**
+     * 可见区域变化
+     * 图元数量较多时为进入可见区域的图元创建图形，释放离开可见区域的图形；
+     * 图元数量较少时保证每个图元都有图形
+     *
+     * @param viewport 可见区域（容器坐标）
+     */
+    public void setViewport(Bounds viewport) {
+        Bounds previous = virtualizedViewport ? this.viewport : null;
+        this.viewport = viewport;
+        virtualizedViewport = false;
+        if (viewport == null) {
+            return;
+        }
+        Set<Integer> created = new HashSet<>();
+        if (!isVirtualized()) {
+            if (shapes.size() < diagram.size()) {
+                for (DiagramElement element : new ArrayList<>(diagram.getElements())) {
+                    if (!shapes.containsKey(element.getId())) {
+                        createShape(element);
+                        created.add(element.getId());
+                    }
+                }
+            }
+        } else {
+            releaseOutside(previous, viewport);
+            virtualizedViewport = true;
+            diagram.getGeometry().query(viewport.getMinX(), viewport.getMinY(),
+                    viewport.getMaxX(), viewport.getMaxY(), id -> {
+                        if (!shapes.containsKey(id)) {
+                            createShape(diagram.get(id));
+                            created.add(id);
+                        }
+                    });
+        }
+        reconnect(created);
+    }
+
+    /**
+     * 是否只为可见区域内的图元创建图形
+     *
+     * @return true如果图元数量超过阈值
+     */
+    public boolean isVirtualized() {
+        return diagram.size() >= VIRTUALIZE_THRESHOLD;
+    }
+
+    /**
+     * 图元是否需要立即创建图形
+     */
+    private boolean shouldMaterialize(DiagramElement element) {
+        if (viewport == null || !isVirtualized()) {
+            return true;
+        }
+        GeometryStore geometry = diagram.getGeometry();
+        int index = geometry.indexOf(element.getId());
+        return index >= 0 && viewport.intersects(geometry.getX(index), geometry.getY(index),
+                geometry.getWidth(index), geometry.getHeight(index));
+    }
+
+    /**
+     * 释放完全位于可见区域之外的图形，图元保留在模型中
+     * 已知上一次的可见区域时，只有其中的图形可能离开可见区域，通过几何索引查出这些图形，
+     * 不需要遍历所有图形；否则检查所有图形。
+     * 选中的图形不释放，避免打断正在进行的编辑和拖动
+     *
+     * @param previous 上一次的可见区域，未知时为null
+     * @param viewport 当前可见区域
+     */
+    private void releaseOutside(Bounds previous, Bounds viewport) {
+        Set<Shape> selected = ShapeSelectionModel.getInstance().getSelectedShapes();
+        Set<Shape> candidates = new HashSet<>(outside);
+        outside.clear();
+        if (previous == null) {
+            candidates.addAll(shapes.values());
+        } else {
+            diagram.getGeometry().query(previous.getMinX(), previous.getMinY(),
+                    previous.getMaxX(), previous.getMaxY(), id -> {
+                        Shape shape = shapes.get(id);
+                        if (shape != null) {
+                            candidates.add(shape);
+                        }
+                    });
+        }
+        List<Shape> released = new ArrayList<>();
+        for (Shape shape : candidates) {
+            if (shapes.get(shape.getElementId()) != shape || shape.getBoundsInParent().intersects(viewport)) {
+                continue;
+            }
+            if (selected.contains(shape)) {
+                outside.add(shape);
+            } else {
+                released.add(shape);
+            }
+        }
+        if (released.isEmpty()) {
+            return;
+        }
+        applying = true;
+        try {
+            for (Shape shape : released) {
+                shapes.remove(shape.getElementId());
+                shape.attachDiagram(null, DiagramElement.NO_ELEMENT);
+                if (shape instanceof BlockShape) {
+                    BlockShape block = (BlockShape) shape;
+                    List<LineShape> starts = block.getLineStart();
+                    for (int i = starts.size() - 1; i >= 0; i--) {
+                        starts.get(i).disconnectFrom(block);
+                    }
+                    List<LineShape> ends = block.getLineEnd();
+                    for (int i = ends.size() - 1; i >= 0; i--) {
+                        ends.get(i).disconnectFrom(block);
+                    }
+                } else if (shape instanceof LineShape) {
+                    ((LineShape) shape).disconnectAll();
+                }
+            }
+            container.getChildren().removeAll(released);
+        } finally {
+            applying = false;
+        }
+    }
+
+    /**
+     * 为新创建的块状图形恢复已有图形的连线连接
+     */
+    private void reconnect(Set<Integer> created) {
+        if (created.isEmpty()) {
+            return;
+        }
+        AdjacencyIndex adjacency = diagram.getAdjacency();
+        for (int nodeId : created) {
+            for (int i = 0; i < adjacency.getOutDegree(nodeId); i++) {
+                reconnectEdge(adjacency.getOutgoing(nodeId, i), created);
+            }
+            for (int i = 0; i < adjacency.getInDegree(nodeId); i++) {
+                reconnectEdge(adjacency.getIncoming(nodeId, i), created);
+            }
+        }
+    }
+
+    /**
+     * 已有图形的连线重新应用连接关系，新创建的连线在创建时已经应用过
+     */
+    private void reconnectEdge(int edgeId, Set<Integer> created) {
+        if (!created.contains(edgeId) && shapes.containsKey(edgeId)) {
+            applyToShape(diagram.get(edgeId), DiagramProperty.CONNECTION);
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 画布 -> 模型
+    // ---------------------------------------------------------------
+
+    /**
+     * 图形的状态发生变化，写入对应的图元
+     *
+     * @param shape    图形
+     * @param property 变化的属性
+     */
+    void shapeChanged(Shape shape, DiagramProperty property) {
+        int id = shape.getElementId();
+        if (applying || id == DiagramElement.NO_ELEMENT || !diagram.contains(id)) {
+            return;
+        }
+        switch (property) {
+            case BOUNDS:
+            case ENDPOINTS:
+                CommandStack commandStack = diagram.getCommandStack();
+                if (commandStack != null && ConnectorRouter.getInstance().isRouting()) {
+                    // 连接线跟随图形重新计算的端点由图形的移动决定，不单独记录
+                    commandStack.runWithoutRecording(() -> pushGeometry(shape, id));
+                } else {
+                    pushGeometry(shape, id);
+                }
+                break;
+            case TEXT:
+                diagram.setText(id, shape.getText());
+                break;
+            case STYLE:
+                diagram.setStyle(id, styleOf(shape));
+                break;
+            case CONNECTION:
+                if (shape instanceof LineShape) {
+                    LineShape line = (LineShape) shape;
+                    DiagramElement element = diagram.get(id);
+                    diagram.connect(id, idOf(line.getStartShape(), element.getSourceId()),
+                            idOf(line.getEndShape(), element.getTargetId()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 开始一次连续的用户操作，例如拖动或缩放，操作期间的修改合并为一步撤销
+     * 由图形在鼠标按下时调用
+     */
+    void beginGesture() {
+        if (!gestureOpen && diagram.getCommandStack() != null) {
+            gestureOpen = true;
+            diagram.getCommandStack().beginCompound();
+        }
+    }
+
+    /**
+     * 结束连续的用户操作
+     * 由图形在鼠标释放时调用；释放事件可能送达不了按下的图形（图形被移除、窗口失去焦点），
+     * 画布在这些情况下也会调用，没有进行中的操作时不做任何处理
+     */
+    public void endGesture() {
+        if (gestureOpen) {
+            gestureOpen = false;
+            diagram.getCommandStack().endCompound();
+        }
+    }
+
+    /**
+     * 为新加入容器的图形创建图元
+     * 创建图元、写入文本、样式和连接合并为一步撤销
+     */
+    private void bind(Shape shape) {
+        if (shape.getElementId() != DiagramElement.NO_ELEMENT && shapes.get(shape.getElementId()) == shape) {
+            return;
+        }
+        CommandStack commandStack = diagram.getCommandStack();
+        if (commandStack != null) {
+            commandStack.beginCompound();
+        }
+        try {
+            bindElement(shape);
+        } finally {
+            if (commandStack != null) {
+                commandStack.endCompound();
+            }
+        }
+    }
+
+    private void bindElement(Shape shape) {
+        DiagramElement element;
+        applying = true;
+        try {
+            if (shape instanceof LineShape && DiagramElement.isEdgeType(shape.getShapeType())) {
+                double[] endpoints = endpointsOf((LineShape) shape);
+                element = diagram.addEdge(shape.getShapeType(), endpoints[0], endpoints[1], endpoints[2], endpoints[3]);
+            } else {
+                element = diagram.addNode(shape.getShapeType(), shape.getLayoutX(), shape.getLayoutY(),
+                        shape.getWidth(), shape.getHeight());
+            }
+            diagram.setText(element.getId(), shape.getText());
+            diagram.setStyle(element.getId(), styleOf(shape));
+        } finally {
+            applying = false;
+        }
+        shapes.put(element.getId(), shape);
+        shape.attachDiagram(this, element.getId());
+
+        // 连接关系可能早于图形加入容器建立，加入后补写
+        if (shape instanceof LineShape) {
+            shapeChanged(shape, DiagramProperty.CONNECTION);
+        } else if (shape instanceof BlockShape) {
+            BlockShape block = (BlockShape) shape;
+            for (LineShape line : block.getLineStart()) {
+                shapeChanged(line, DiagramProperty.CONNECTION);
+            }
+            for (LineShape line : block.getLineEnd()) {
+                shapeChanged(line, DiagramProperty.CONNECTION);
+            }
+        }
+    }
+
+    /**
+     * 图形移出容器时移除对应的图元
+     */
+    private void unbind(Shape shape) {
+        int id = shape.getElementId();
+        if (id == DiagramElement.NO_ELEMENT || shapes.get(id) != shape) {
+            return;
+        }
+        shapes.remove(id);
+        outside.remove(shape);
+        shape.attachDiagram(null, DiagramElement.NO_ELEMENT);
+        if (!applying) {
+            diagram.remove(id);
+        }
+    }
+
+    /**
+     * 把图形当前的位置、尺寸或端点写入图元
+     */
+    private void pushGeometry(Shape shape, int id) {
+        DiagramElement element = diagram.get(id);
+        if (element.isEdge()) {
+            if (shape instanceof LineShape) {
+                double[] endpoints = endpointsOf((LineShape) shape);
+                diagram.setEndpoints(id, endpoints[0], endpoints[1], endpoints[2], endpoints[3]);
+            }
+        } else {
+            diagram.setBounds(id, shape.getLayoutX(), shape.getLayoutY(), shape.getWidth(), shape.getHeight());
+        }
+    }
+
+    /**
+     * 处理容器子节点变化
+     */
+    private void onChildrenChanged(ListChangeListener.Change<? extends Node> change) {
+        if (applying) {
+            return;
+        }
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            for (Node node : change.getRemoved()) {
+                if (node instanceof Shape && node.getParent() != container) {
+                    unbind((Shape) node);
+                }
+            }
+            for (Node node : change.getAddedSubList()) {
+                if (node instanceof Shape) {
+                    bind((Shape) node);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 模型 -> 画布
+    // ---------------------------------------------------------------
+
+    @Override
+    public void elementAdded(DiagramElement element) {
+        if (!applying && !shapes.containsKey(element.getId()) && shouldMaterialize(element)) {
+            createShape(element);
+        }
+    }
+
+    @Override
+    public void elementRemoved(DiagramElement element) {
+        if (applying) {
+            return;
+        }
+        Shape shape = shapes.remove(element.getId());
+        if (shape == null) {
+            return;
+        }
+        outside.remove(shape);
+        applying = true;
+        try {
+            shape.attachDiagram(null, DiagramElement.NO_ELEMENT);
+            ShapeSelectionModel.getInstance().deselect(shape);
+            container.getChildren().remove(shape);
+        } finally {
+            applying = false;
+        }
+    }
+
+    @Override
+    public void elementChanged(DiagramElement element, DiagramProperty property) {
+        if (applying) {
+            return;
+        }
+        if (!shapes.containsKey(element.getId())) {
+            // 移入可见区域的图元创建图形，其余的只保留在模型中
+            if (shouldMaterialize(element)) {
+                createShape(element);
+                reconnect(Set.of(element.getId()));
+            }
+            return;
+        }
+        if (virtualizedViewport && !shouldMaterialize(element)) {
+            outside.add(shapes.get(element.getId()));
+        }
+        applyToShape(element, property);
+    }
+
+    @Override
+    public void diagramReloaded() {
+        // 原有图形全部移除，先解除绑定，移除时不再写回模型
+        List<Shape> removed = new ArrayList<>(shapes.values());
+        for (Shape shape : removed) {
+            shape.attachDiagram(null, DiagramElement.NO_ELEMENT);
+        }
+        shapes.clear();
+        outside.clear();
+        applying = true;
+        try {
+            Shape.deleteShapes(removed);
+        } finally {
+            applying = false;
+        }
+
+        // 按可见区域为新内容创建图形
+        if (viewport != null) {
+            setViewport(viewport);
+            return;
+        }
+        List<DiagramElement> elements = new ArrayList<>(diagram.getElements());
+        for (DiagramElement element : elements) {
+            if (shouldMaterialize(element)) {
+                createShape(element);
+            }
+        }
+        for (DiagramElement element : elements) {
+            if (element.isEdge()) {
+                applyToShape(element, DiagramProperty.CONNECTION);
+            }
+        }
+    }
+
+    /**
+     * 为模型中的图元创建图形并加入容器
+     */
+    private void createShape(DiagramElement element) {
+        if (shapes.containsKey(element.getId())) {
+            return;
+        }
+        Shape shape = ShapeFactory.createShape(element.getType(),
+                Math.max(1, element.getWidth()), Math.max(1, element.getHeight()));
+        applying = true;
+        try {
+            shape.setLayoutX(element.getX());
+            shape.setLayoutY(element.getY());
+            container.getChildren().add(stackingIndex(element.getZOrder()), shape);
+            shapes.put(element.getId(), shape);
+            shape.attachDiagram(this, element.getId());
+        } finally {
+            applying = false;
+        }
+        applyToShape(element, element.isEdge() ? DiagramProperty.ENDPOINTS : DiagramProperty.BOUNDS);
+        applyToShape(element, DiagramProperty.TEXT);
+        applyToShape(element, DiagramProperty.STYLE);
+        if (element.isEdge()) {
+            applyToShape(element, DiagramProperty.CONNECTION);
+        }
+    }
+
+    /**
+     * 按叠放顺序计算新图形在容器中的位置，撤销删除的图元回到原来的层次
+     * 从末尾向前查找，新建的图元位于最上层时直接追加
+     *
+     * @param zOrder 新图元的叠放顺序
+     * @return 插入位置
+     */
+    private int stackingIndex(int zOrder) {
+        List<Node> children = container.getChildren();
+        int index = children.size();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            Node node = children.get(i);
+            if (!(node instanceof Shape)) {
+                continue;
+            }
+            DiagramElement other = diagram.get(((Shape) node).getElementId());
+            if (other == null) {
+                continue;
+            }
+            if (other.getZOrder() < zOrder) {
+                break;
+            }
+            index = i;
+        }
+        return index;
+    }
+
+    /**
+     * 把图元的属性应用到对应的图形
+     */
+    private void applyToShape(DiagramElement element, DiagramProperty property) {
+        Shape shape = shapes.get(element.getId());
+        if (shape == null) {
+            return;
+        }
+        applying = true;
+        try {
+            switch (property) {
+                case BOUNDS:
+                    if (shape.getWidth() != element.getWidth() || shape.getHeight() != element.getHeight()) {
+                        shape.setShapeSize(element.getWidth(), element.getHeight());
+                    }
+                    shape.setPosition(element.getX(), element.getY());
+                    break;
+                case ENDPOINTS:
+                    if (shape instanceof LineShape) {
+                        LineShape line = (LineShape) shape;
+                        line.setLinePoints(line.parentToLocal(element.getStartX(), element.getStartY()),
+                                line.parentToLocal(element.getEndX(), element.getEndY()));
+                    }
+                    break;
+                case TEXT:
+                    if (element.getText() != null || shape.getText() != null) {
+                        shape.setText(element.getText());
+                    }
+                    break;
+                case STYLE:
+                    applyStyle(shape, element.getStyle());
+                    break;
+                case CONNECTION:
+                    if (shape instanceof LineShape) {
+                        ((LineShape) shape).setConnectedShapes(blockOf(element.getSourceId()),
+                                blockOf(element.getTargetId()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            applying = false;
+        }
+    }
+
+    private void applyStyle(Shape shape, ShapeStyle style) {
+        if (shape instanceof BlockShape) {
+            BlockShape block = (BlockShape) shape;
+            block.setFillColor(toColor(style.getFillColor()));
+            block.setStrokeColor(toColor(style.getStrokeColor()));
+        } else if (shape instanceof LineShape) {
+            LineShape line = (LineShape) shape;
+            line.setLineColor(toColor(style.getLineColor()));
+            line.setLineWidth(style.getLineWidth());
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 转换
+    // ---------------------------------------------------------------
+
+    /**
+     * 图形对应的图元ID
+     * 连线的一端没有图形时，如果原来连接的图元只是尚未创建图形，保留原来的连接
+     */
+    private int idOf(Shape shape, int currentId) {
+        if (shape == null) {
+            return currentId != DiagramElement.NO_ELEMENT && diagram.contains(currentId)
+                    && !shapes.containsKey(currentId) ? currentId : DiagramElement.NO_ELEMENT;
+        }
+        if (shapes.get(shape.getElementId()) != shape) {
+            return DiagramElement.NO_ELEMENT;
+        }
+        return shape.getElementId();
+    }
+
+    private BlockShape blockOf(int elementId) {
+        Shape shape = shapes.get(elementId);
+        return shape instanceof BlockShape ? (BlockShape) shape : null;
+    }
+
+    /**
+     * 线形两端的容器坐标：起始点X、起始点Y、结束点X、结束点Y
+     */
+    private static double[] endpointsOf(LineShape line) {
+        Point2D start = line.getStartPoint() != null ? line.getStartPoint() : Point2D.ZERO;
+        Point2D end = line.getEndPoint() != null ? line.getEndPoint() : Point2D.ZERO;
+        return new double[] {
+                line.getLayoutX() + start.getX(), line.getLayoutY() + start.getY(),
+                line.getLayoutX() + end.getX(), line.getLayoutY() + end.getY()
+        };
+    }
+
+    /**
+     * 读取图形当前的样式
+     */
+    static ShapeStyle styleOf(Shape shape) {
+        ShapeStyle style = ShapeStyle.DEFAULT;
+        if (shape instanceof BlockShape) {
+            BlockShape block = (BlockShape) shape;
+            style = style.withFillColor(toArgb(block.getFillColor()))
+                    .withStrokeColor(toArgb(block.getStrokeColor()));
+        } else if (shape instanceof LineShape) {
+            LineShape line = (LineShape) shape;
+            style = style.withLineColor(toArgb(line.getLineColor())).withLineWidth(line.getLineWidth());
+        }
+        return style;
+    }
+
+    /**
+     * 颜色转换为ARGB整数
+     *
+     * @param color 颜色
+     * @return ARGB整数，颜色为null时返回透明
+     */
+    public static int toArgb(Color color) {
+        if (color == null) {
+            return ShapeStyle.TRANSPARENT;
+        }
+        int a = (int) Math.round(color.getOpacity() * 255);
+        int r = (int) Math.round(color.getRed() * 255);
+        int g = (int) Math.round(color.getGreen() * 255);
+        int b = (int) Math.round(color.getBlue() * 255);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * ARGB整数转换为颜色
+     *
+     * @param argb ARGB整数
+     * @return 颜色
+     */
+    public static Color toColor(int argb) {
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, ((argb >>> 24) & 0xFF) / 255.0);
+    }
+}
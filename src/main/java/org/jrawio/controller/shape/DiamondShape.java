@@ -3,6 +3,7 @@ package org.jrawio.controller.shape;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.geometry.Point2D;
 import java.util.List;
+import org.jrawio.model.ShapeType;
 
 /**
  * 棱形图形实现类
@@ -25,31 +26,7 @@ public class DiamondShape extends BlockShape {
 
     @Override
     public void drawShape(GraphicsContext gc, double x, double y, double width, double height) {
-        // 设置线条宽度
-        gc.setLineWidth(1);
-
-        // 计算棱形的四个顶点
-        double centerX = x + width / 2;
-        double centerY = y + height / 2;
-
-        // 棱形的四个顶点坐标
-        double[] xPoints = {
-                centerX, // 上顶点
-                x + width, // 右顶点
-                centerX, // 下顶点
-                x // 左顶点
-        };
-
-        double[] yPoints = {
-                y, // 上顶点
-                centerY, // 右顶点
-                y + height, // 下顶点
-                centerY // 左顶点
-        };
-
-        // 绘制棱形（填充背景和边框）
-        gc.fillPolygon(xPoints, yPoints, 4);
-        gc.strokePolygon(xPoints, yPoints, 4);
+        ElementPainter.paintBody(gc, getShapeType(), x, y, width, height);
     }
 
     @Override
@@ -60,11 +37,8 @@ public class DiamondShape extends BlockShape {
         double shapeWidth = getWidth();
         double shapeHeight = getHeight();
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace;
+        // 图形绘制区域与canvas边缘的间距
+        double padding = CONTENT_PADDING;
 
         // 计算实际棱形区域（不包括padding）
         double actualShapeX = shapeLayoutX + padding;
@@ -113,11 +87,8 @@ public class DiamondShape extends BlockShape {
         double shapeWidth = getWidth();
         double shapeHeight = getHeight();
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace;
+        // 图形绘制区域与canvas边缘的间距
+        double padding = CONTENT_PADDING;
 
         // 计算实际棱形区域（相对于shape本地坐标）
         double actualShapeX = padding;
@@ -0,0 +1,150 @@
+package org.jrawio.controller.shape;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 脏区域累加器
+ * 收集一帧内所有失效的矩形区域，相交的矩形会合并为一个，
+ * 矩形数量超过上限时合并为整体包围盒，避免重绘时遍历过多区域。
+ */
+public class DirtyRegion {
+
+    /** 默认最多保留的独立矩形数量 */
+    private static final int DEFAULT_MAX_RECTS = 8;
+
+    /** 扩展边距，覆盖抗锯齿和描边超出边界的像素 */
+    private static final double MARGIN = 2;
+
+    /** 最多保留的独立矩形数量 */
+    private final int maxRects;
+
+    /** 当前累积的脏矩形 */
+    private final List<Bounds> rects = new ArrayList<>();
+
+    /**
+     * 使用默认矩形上限构造
+     */
+    public DirtyRegion() {
+        this(DEFAULT_MAX_RECTS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param maxRects 最多保留的独立矩形数量
+     */
+    public DirtyRegion(int maxRects) {
+        this.maxRects = Math.max(1, maxRects);
+    }
+
+    /**
+     * 添加一个失效区域
+     *
+     * @param bounds 失效区域，为null或为空时忽略
+     */
+    public void add(Bounds bounds) {
+        if (bounds == null || bounds.isEmpty()) {
+            return;
+        }
+        add(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    /**
+     * 添加一个失效区域
+     *
+     * @param x      左上角X坐标
+     * @param y      左上角Y坐标
+     * @param width  宽度
+     * @param height 高度
+     */
+    public void add(double x, double y, double width, double height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // 扩展到整像素，避免清除时留下半个像素的残影
+        double minX = Math.floor(x - MARGIN);
+        double minY = Math.floor(y - MARGIN);
+        double maxX = Math.ceil(x + width + MARGIN);
+        double maxY = Math.ceil(y + height + MARGIN);
+        Bounds merged = new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+
+        // 与已有矩形相交时不断合并，直到没有相交的矩形
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < rects.size(); i++) {
+                Bounds rect = rects.get(i);
+                if (rect.intersects(merged)) {
+                    merged = union(rect, merged);
+                    rects.remove(i);
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        rects.add(merged);
+
+        // 矩形过多时合并为一个整体包围盒
+        if (rects.size() > maxRects) {
+            Bounds all = rects.get(0);
+            for (int i = 1; i < rects.size(); i++) {
+                all = union(all, rects.get(i));
+            }
+            rects.clear();
+            rects.add(all);
+        }
+    }
+
+    /**
+     * 是否没有任何失效区域
+     *
+     * @return true如果为空
+     */
+    public boolean isEmpty() {
+        return rects.isEmpty();
+    }
+
+    /**
+     * 获取当前累积的脏矩形
+     *
+     * @return 只读的脏矩形列表
+     */
+    public List<Bounds> getRects() {
+        return Collections.unmodifiableList(rects);
+    }
+
+    /**
+     * 取出并清空当前累积的脏矩形
+     *
+     * @return 脏矩形列表
+     */
+    public List<Bounds> drain() {
+        List<Bounds> result = new ArrayList<>(rects);
+        rects.clear();
+        return result;
+    }
+
+    /**
+     * 清空所有失效区域
+     */
+    public void clear() {
+        rects.clear();
+    }
+
+    /**
+     * 计算两个矩形的并集包围盒
+     */
+    private static Bounds union(Bounds a, Bounds b) {
+        double minX = Math.min(a.getMinX(), b.getMinX());
+        double minY = Math.min(a.getMinY(), b.getMinY());
+        double maxX = Math.max(a.getMaxX(), b.getMaxX());
+        double maxY = Math.max(a.getMaxY(), b.getMaxY());
+        return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+    }
+}
@@ -0,0 +1,139 @@
+package org.jrawio.controller.shape;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import org.jrawio.model.DiagramElement;
+import org.jrawio.model.ShapeStyle;
+import org.jrawio.model.ShapeType;
+
+/**
+ * 图元绘制器
+ * 图形和导出共用的绘制例程：块状图形的主体、箭头和居中文本标签。
+ * 图形在自身画布上绘制时调用这些例程；导出图片等需要完整内容的操作直接按文档模型中的图元绘制，
+ * 不需要为图元创建图形节点（图元数量较多时可见区域之外的图元没有图形），两者的绘制结果一致。
+ */
+public final class ElementPainter {
+
+    /** 箭头头部的长度 */
+    private static final double ARROW_HEAD_LENGTH = 5.0;
+
+    /** 箭头头部的角度（弧度） */
+    private static final double ARROW_HEAD_ANGLE = Math.PI / 6; // 30度
+
+    private ElementPainter() {
+    }
+
+    /**
+     * 按文档模型绘制图元，不绘制选中装饰
+     *
+     * @param gc      图形上下文
+     * @param element 图元
+     * @param offsetX 图元坐标到绘制坐标的X偏移
+     * @param offsetY 图元坐标到绘制坐标的Y偏移
+     */
+    public static void paint(GraphicsContext gc, DiagramElement element, double offsetX, double offsetY) {
+        ShapeStyle style = element.getStyle();
+        if (element.isEdge()) {
+            Color lineColor = DiagramBinding.toColor(style.getLineColor());
+            gc.setStroke(lineColor);
+            gc.setFill(lineColor);
+            gc.setLineWidth(style.getLineWidth());
+            paintArrow(gc, element.getStartX() + offsetX, element.getStartY() + offsetY,
+                    element.getEndX() + offsetX, element.getEndY() + offsetY);
+        } else {
+            // 边框内缩与BlockShape相同
+            double padding = BlockShape.CONTENT_PADDING;
+            gc.setFill(DiagramBinding.toColor(style.getFillColor()));
+            gc.setStroke(DiagramBinding.toColor(style.getStrokeColor()));
+            paintBody(gc, element.getType(), element.getX() + offsetX + padding, element.getY() + offsetY + padding,
+                    element.getWidth() - 2 * padding, element.getHeight() - 2 * padding);
+        }
+        String text = element.getText();
+        if (text != null && !text.isEmpty()) {
+            paintLabel(gc, TextLayoutCache.getInstance().getLayout(text, Shape.LABEL_FONT),
+                    element.getX() + offsetX, element.getY() + offsetY, element.getWidth(), element.getHeight());
+        }
+    }
+
+    /**
+     * 绘制块状图形的主体（填充背景和边框），使用图形上下文当前的填充色和描边色
+     *
+     * @param gc     图形上下文
+     * @param type   图形类型
+     * @param x      绘制起始x坐标
+     * @param y      绘制起始y坐标
+     * @param width  绘制宽度
+     * @param height 绘制高度
+     */
+    public static void paintBody(GraphicsContext gc, ShapeType type, double x, double y, double width,
+            double height) {
+        gc.setLineWidth(1);
+        switch (type) {
+            case OVAL:
+                gc.fillOval(x, y, width, height);
+                gc.strokeOval(x, y, width, height);
+                break;
+            case DIAMOND:
+                // 棱形的四个顶点：上、右、下、左
+                double centerX = x + width / 2;
+                double centerY = y + height / 2;
+                double[] xPoints = { centerX, x + width, centerX, x };
+                double[] yPoints = { y, centerY, y + height, centerY };
+                gc.fillPolygon(xPoints, yPoints, 4);
+                gc.strokePolygon(xPoints, yPoints, 4);
+                break;
+            default:
+                gc.fillRect(x, y, width, height);
+                gc.strokeRect(x, y, width, height);
+                break;
+        }
+    }
+
+    /**
+     * 绘制箭头（主线和三角形头部），使用图形上下文当前的描边色、填充色和线宽
+     *
+     * @param gc     图形上下文
+     * @param startX 起始点X坐标
+     * @param startY 起始点Y坐标
+     * @param endX   结束点X坐标
+     * @param endY   结束点Y坐标
+     */
+    public static void paintArrow(GraphicsContext gc, double startX, double startY, double endX, double endY) {
+        gc.strokeLine(startX, startY, endX, endY);
+
+        // 计算箭头头部的两个端点
+        double angle = Math.atan2(endY - startY, endX - startX);
+        double arrowX1 = endX - ARROW_HEAD_LENGTH * Math.cos(angle - ARROW_HEAD_ANGLE);
+        double arrowY1 = endY - ARROW_HEAD_LENGTH * Math.sin(angle - ARROW_HEAD_ANGLE);
+        double arrowX2 = endX - ARROW_HEAD_LENGTH * Math.cos(angle + ARROW_HEAD_ANGLE);
+        double arrowY2 = endY - ARROW_HEAD_LENGTH * Math.sin(angle + ARROW_HEAD_ANGLE);
+
+        gc.strokeLine(endX, endY, arrowX1, arrowY1);
+        gc.strokeLine(endX, endY, arrowX2, arrowY2);
+        gc.fillPolygon(new double[] { endX, arrowX1, arrowX2 }, new double[] { endY, arrowY1, arrowY2 }, 3);
+    }
+
+    /**
+     * 在包围盒中居中绘制文本，多行文本整体垂直居中
+     *
+     * @param gc     图形上下文
+     * @param layout 文本布局
+     * @param x      包围盒左上角X坐标
+     * @param y      包围盒左上角Y坐标
+     * @param width  包围盒宽度
+     * @param height 包围盒高度
+     */
+    public static void paintLabel(GraphicsContext gc, TextLayoutCache.TextLayout layout, double x, double y,
+            double width, double height) {
+        gc.setFill(Color.BLACK);
+        gc.setFont(Shape.LABEL_FONT);
+        double[] textPosition = ShapeGeometryUtils.calculateCenteredTextPosition(
+                width, height, layout.getWidth(), Shape.LABEL_FONT.getSize());
+        double textX = x + textPosition[0];
+        double textY = y + textPosition[1] - (layout.getLines().size() - 1) * layout.getLineHeight() / 2;
+        for (String line : layout.getLines()) {
+            gc.fillText(line, textX, textY);
+            textY += layout.getLineHeight();
+        }
+    }
+}
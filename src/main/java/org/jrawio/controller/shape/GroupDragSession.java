@@ -0,0 +1,123 @@
+package org.jrawio.controller.shape;
+
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 选中图形的一次拖动
+ * 拖动期间所有被带动的节点共享同一个临时平移变换，每个鼠标事件只修改这个平移量，
+ * 不再逐个修改图形和文本框的布局位置，也不再逐个更新空间索引。
+ * 没有被选中、也不是两端都连接在选中图形上的连接线需要跟随重新计算端点，没有连接的一端保持不动。
+ * 鼠标释放时移除临时变换，把最终位移一次性写回各节点的布局位置。
+ */
+class GroupDragSession {
+
+    /** 所有被带动的节点共享的临时平移 */
+    private final Translate translate = new Translate();
+
+    /** 被带动的图形：选中的图形以及两端都连接在选中图形上的线形 */
+    private final List<Shape> movedShapes = new ArrayList<>();
+
+    /** 被带动的节点：图形以及正在编辑的文本框 */
+    private final List<Node> movedNodes = new ArrayList<>();
+
+    /** 只有一端连接在选中图形上的线形，拖动期间需要重新计算端点 */
+    private final List<LineShape> attachedLines = new ArrayList<>();
+
+    /** 图形所在容器的空间索引 */
+    private final ShapeSpatialIndex spatialIndex;
+
+    /**
+     * 构造函数，为选中的图形挂上临时平移
+     *
+     * @param container 图形所在的容器
+     * @param selection 选中的图形
+     */
+    GroupDragSession(Pane container, Collection<Shape> selection) {
+        Set<LineShape> connectedLines = new LinkedHashSet<>();
+        for (Shape shape : selection) {
+            if (shape.getParent() != container) {
+                continue;
+            }
+            movedShapes.add(shape);
+            if (shape instanceof BlockShape) {
+                BlockShape block = (BlockShape) shape;
+                connectedLines.addAll(block.getLineStart());
+                connectedLines.addAll(block.getLineEnd());
+            }
+        }
+        for (LineShape line : connectedLines) {
+            if (line.isSelected() && line.getParent() == container) {
+                continue;
+            }
+            BlockShape start = line.getStartShape();
+            BlockShape end = line.getEndShape();
+            // 没有连接的一端不随选中图形移动
+            boolean startMoved = start != null && start.isSelected();
+            boolean endMoved = end != null && end.isSelected();
+            if (startMoved && endMoved && line.getParent() == container) {
+                // 两端都连接在选中图形上，线形整体平移即可
+                movedShapes.add(line);
+            } else {
+                attachedLines.add(line);
+            }
+        }
+
+        for (Shape shape : movedShapes) {
+            movedNodes.add(shape);
+            if (shape.textField != null) {
+                movedNodes.add(shape.textField);
+            }
+        }
+        for (Node node : movedNodes) {
+            node.getTransforms().add(translate);
+        }
+
+        // 拖动期间被带动的图形不再逐次更新索引
+        this.spatialIndex = ShapeSpatialIndex.of(container);
+        spatialIndex.suspend(movedShapes);
+    }
+
+    /**
+     * 按父容器坐标中的位移移动所有被带动的节点
+     *
+     * @param offsetX X方向位移
+     * @param offsetY Y方向位移
+     */
+    void moveBy(double offsetX, double offsetY) {
+        translate.setX(translate.getX() + offsetX);
+        translate.setY(translate.getY() + offsetY);
+        ConnectorRouter router = ConnectorRouter.getInstance();
+        for (LineShape line : attachedLines) {
+            router.schedule(line);
+        }
+    }
+
+    /**
+     * 结束拖动，移除临时平移并把最终位移写回布局位置
+     */
+    void commit() {
+        double offsetX = translate.getX();
+        double offsetY = translate.getY();
+        for (Node node : movedNodes) {
+            node.getTransforms().remove(translate);
+            node.setLayoutX(node.getLayoutX() + offsetX);
+            node.setLayoutY(node.getLayoutY() + offsetY);
+        }
+        spatialIndex.resume();
+
+        if (offsetX != 0 || offsetY != 0) {
+            for (Shape shape : movedShapes) {
+                // Hook: 让子类处理形状移动后的额外逻辑（如更新连接线的端点）
+                shape.onPositionChanged(offsetX, offsetY);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.jrawio.controller.shape;
+
+/**
+ * 细节层次（LOD）设置
+ * 记录画布当前的缩放比例，缩放比例低于阈值时图形使用简化绘制：
+ * 不绘制文本、选中控制点和箭头头部，块状图形绘制为填充矩形。
+ */
+public class LevelOfDetail {
+
+    /** 默认简化绘制阈值 */
+    private static final double DEFAULT_THRESHOLD = 0.5;
+
+    /** 当前缩放比例 */
+    private static double zoom = 1.0;
+
+    /** 简化绘制阈值，缩放比例低于此值时简化绘制 */
+    private static double threshold = DEFAULT_THRESHOLD;
+
+    private LevelOfDetail() {
+    }
+
+    /**
+     * 获取当前缩放比例
+     *
+     * @return 缩放比例
+     */
+    public static double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * 设置当前缩放比例
+     *
+     * @param newZoom 新的缩放比例
+     * @return 是否跨越了简化绘制阈值（需要重绘所有图形）
+     */
+    public static boolean setZoom(double newZoom) {
+        boolean wasSimplified = isSimplified();
+        zoom = newZoom;
+        return wasSimplified != isSimplified();
+    }
+
+    /**
+     * 获取简化绘制阈值
+     *
+     * @return 阈值
+     */
+    public static double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 设置简化绘制阈值
+     *
+     * @param newThreshold 新的阈值
+     * @return 是否改变了简化绘制状态（需要重绘所有图形）
+     */
+    public static boolean setThreshold(double newThreshold) {
+        boolean wasSimplified = isSimplified();
+        threshold = newThreshold;
+        return wasSimplified != isSimplified();
+    }
+
+    /**
+     * 当前是否使用简化绘制
+     *
+     * @return true如果缩放比例低于阈值
+     */
+    public static boolean isSimplified() {
+        return zoom < threshold;
+    }
+}
@@ -0,0 +1,127 @@
+package org.jrawio.controller.shape;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * 块状图形的连接线列表
+ * 以数组保存连接的线形，按下标遍历不创建迭代器。
+ * 线形记录自己在起始图形和结束图形列表中的下标，查找和删除都是O(1)，
+ * 删除时把最后一个线形移到空出的位置，不保持其余线形的顺序。
+ */
+final class LineList extends AbstractList<LineShape> implements RandomAccess {
+
+    /** 初始容量 */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** 空数组，第一次添加时才分配 */
+    private static final LineShape[] EMPTY = new LineShape[0];
+
+    private LineShape[] lines = EMPTY;
+
+    private int size = 0;
+
+    /** 是否是起始连接列表，决定使用线形的哪个下标 */
+    private final boolean startList;
+
+    /**
+     * 构造函数
+     *
+     * @param startList true表示从图形开始的线形列表，false表示连接到图形的线形列表
+     */
+    LineList(boolean startList) {
+        this.startList = startList;
+    }
+
+    @Override
+    public LineShape get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("下标越界: " + index);
+        }
+        return lines[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 添加线形，已经存在时不重复添加
+     *
+     * @param line 线形
+     * @return true如果添加了
+     */
+    boolean addLine(LineShape line) {
+        if (indexOfLine(line) >= 0) {
+            return false;
+        }
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        setSlot(line, size);
+        lines[size++] = line;
+        return true;
+    }
+
+    /**
+     * 移除线形
+     *
+     * @param line 线形
+     * @return true如果移除了
+     */
+    boolean removeLine(LineShape line) {
+        int index = indexOfLine(line);
+        if (index < 0) {
+            return false;
+        }
+        LineShape last = lines[--size];
+        lines[index] = last;
+        setSlot(last, index);
+        lines[size] = null;
+        setSlot(line, -1);
+        return true;
+    }
+
+    /**
+     * 清空列表
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            setSlot(lines[i], -1);
+        }
+        Arrays.fill(lines, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * 查找线形的下标
+     * 线形同一时间只在一个起始列表和一个结束列表中，记录的下标为-1时不在任何列表中；
+     * 记录的下标指向别的列表时才线性查找
+     */
+    private int indexOfLine(LineShape line) {
+        int slot = startList ? line.startSlot : line.endSlot;
+        if (slot < 0) {
+            return -1;
+        }
+        if (slot < size && lines[slot] == line) {
+            return slot;
+        }
+        for (int i = 0; i < size; i++) {
+            if (lines[i] == line) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void setSlot(LineShape line, int slot) {
+        if (startList) {
+            line.startSlot = slot;
+        } else {
+            line.endSlot = slot;
+        }
+    }
+}
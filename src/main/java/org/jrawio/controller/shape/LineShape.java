@@ -9,6 +9,7 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.Spinner;
 import org.jrawio.controller.components.RightPanel;
+import org.jrawio.model.DiagramProperty;
 
 /**
  * 线形基类
@@ -24,8 +25,15 @@ public abstract class LineShape extends Shape {
 
     /** 控制点半径 */
     protected static final double CONTROL_POINT_SIZE = 6.0;
+
+    /** 命中测试时线条两侧的容差 */
+    private static final double HIT_TOLERANCE = 4.0;
     private BlockShape start, end;
 
+    /** 在起始图形和结束图形的连接线列表中的下标，由{@link LineList}维护，未加入时为-1 */
+    int startSlot = -1;
+    int endSlot = -1;
+
     /** 线条样式属性 */
     private Color lineColor = Color.BLACK; // 默认线条颜色为黑色
     private double lineWidth = 1.0; // 默认线条粗细为2
@@ -39,6 +47,9 @@ public abstract class LineShape extends Shape {
     /** 当前活动的线形控制点 */
     protected LineControlPoint activeLineControlPoint = null;
 
+    /** 是否正在按端点调整canvas，调整期间的中间状态不同步到文档模型 */
+    private boolean adjustingCanvas = false;
+
     /**
      * 构造函数
      * 
@@ -49,7 +60,7 @@ public abstract class LineShape extends Shape {
         super(width, height);
         // 默认线形从左边指向右边
         initializePoints(width, height);
-        draw(); // 重新绘制以应用初始点
+        requestRedraw(); // 重新绘制以应用初始点
     }
 
     /**
@@ -82,7 +93,7 @@ public abstract class LineShape extends Shape {
         setLayoutY(canvasPosition[1]);
 
         // 重新绘制以应用指定的点
-        draw();
+        requestRedraw();
     }
 
     /**
@@ -110,7 +121,7 @@ public abstract class LineShape extends Shape {
         this.activeLineControlPoint = null;
 
         // 重新绘制以应用复制的点
-        draw();
+        requestRedraw();
     }
 
     /**
@@ -277,7 +288,7 @@ public abstract class LineShape extends Shape {
             // 通知右侧面板更新
             RightPanel rightPanel = RightPanel.getInstance();
             if (rightPanel != null) {
-                rightPanel.onShapeSelectionChanged(selectedShapes);
+                rightPanel.onShapeSelectionChanged(getSelectedShapes());
             }
             return true; // 已处理线形控制点释放
         }
@@ -379,7 +390,7 @@ public abstract class LineShape extends Shape {
         adjustCanvasSizeToFitLine();
 
         // 重新绘制
-        draw();
+        requestRedraw();
 
         // 更新文本框位置
         if (textField != null) {
@@ -396,6 +407,20 @@ public abstract class LineShape extends Shape {
         if (startPoint == null || endPoint == null)
             return;
 
+        // 调整期间位置、尺寸和端点依次变化，调整完成后再同步一次端点
+        adjustingCanvas = true;
+        try {
+            fitCanvasToLine();
+        } finally {
+            adjustingCanvas = false;
+        }
+        modelChanged(DiagramProperty.ENDPOINTS);
+    }
+
+    /**
+     * 按两个端点重新计算canvas的位置和大小
+     */
+    private void fitCanvasToLine() {
         // 使用工具类计算边界框
         double[] boundingBox = ShapeGeometryUtils.calculateBoundingBox(startPoint, endPoint);
 
@@ -421,8 +446,7 @@ public abstract class LineShape extends Shape {
         // 更新canvas位置和大小
         setLayoutX(newLayoutX);
         setLayoutY(newLayoutY);
-        setShapeWidth(requiredWidth);
-        setShapeHeight(requiredHeight);
+        setShapeSize(requiredWidth, requiredHeight);
 
         // 更新起始点和结束点坐标（相对于新的canvas）
         startPoint = new Point2D(newStartX, newStartY);
@@ -430,6 +454,16 @@ public abstract class LineShape extends Shape {
 
     }
 
+    /**
+     * 调整canvas期间忽略位置和尺寸的中间变化
+     */
+    @Override
+    protected void modelChanged(DiagramProperty property) {
+        if (!adjustingCanvas) {
+            super.modelChanged(property);
+        }
+    }
+
     /**
      * 获取起始点
      * 
@@ -448,7 +482,7 @@ public abstract class LineShape extends Shape {
         this.startPoint = startPoint;
         // 调整canvas大小以适应新的线形范围
         adjustCanvasSizeToFitLine();
-        draw();
+        requestRedraw();
     }
 
     /**
@@ -469,7 +503,7 @@ public abstract class LineShape extends Shape {
         this.endPoint = endPoint;
         // 调整canvas大小以适应新的线形范围
         adjustCanvasSizeToFitLine();
-        draw();
+        requestRedraw();
     }
 
     /**
@@ -483,7 +517,23 @@ public abstract class LineShape extends Shape {
         this.endPoint = endPoint;
         // 调整canvas大小以适应新的线形范围
         adjustCanvasSizeToFitLine();
-        draw();
+        requestRedraw();
+    }
+
+    /**
+     * 按连接的形状重新计算两端的位置
+     * 两个端点一起计算后一次性应用，只调整一次canvas并重绘一次
+     */
+    void rerouteToConnectedShapes() {
+        Point2D newStart = start != null ? start.calculateConnectionPoint(this, true) : null;
+        Point2D newEnd = end != null ? end.calculateConnectionPoint(this, false) : null;
+        if (newStart == null && newEnd == null) {
+            return;
+        }
+
+        // 将绝对坐标转换为相对于线形画布的坐标
+        setLinePoints(newStart != null ? parentToLocal(newStart) : startPoint,
+                newEnd != null ? parentToLocal(newEnd) : endPoint);
     }
 
     /**
@@ -511,6 +561,7 @@ public abstract class LineShape extends Shape {
         if (start != null) {
             start.addLineStart(this);
         }
+        modelChanged(DiagramProperty.CONNECTION);
     }
 
     /**
@@ -538,6 +589,7 @@ public abstract class LineShape extends Shape {
         if (end != null) {
             end.addLineEnd(this);
         }
+        modelChanged(DiagramProperty.CONNECTION);
     }
 
     /**
@@ -579,6 +631,7 @@ public abstract class LineShape extends Shape {
             }
             end = null;
         }
+        modelChanged(DiagramProperty.CONNECTION);
     }
 
     /**
@@ -594,6 +647,7 @@ public abstract class LineShape extends Shape {
             end.removeLineEnd(this);
             end = null;
         }
+        modelChanged(DiagramProperty.CONNECTION);
         System.out.println("LineShape.disconnectAll() completed - start: " + start + ", end: " + end);
     }
 
@@ -601,10 +655,7 @@ public abstract class LineShape extends Shape {
      * 绘制线形到画布
      */
     @Override
-    public void draw() {
-        GraphicsContext gc = getGraphicsContext2D();
-        gc.clearRect(0, 0, getWidth(), getHeight());
-
+    public void paint(GraphicsContext gc) {
         // 使用工具类计算绘制区域
         double padding = 4;
         double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), padding);
@@ -617,36 +668,103 @@ public abstract class LineShape extends Shape {
         gc.setStroke(lineColor != null ? lineColor : Color.BLACK);
         gc.setLineWidth(lineWidth);
 
+        // 缩放比例较小时只绘制直线，不绘制箭头头部和文本
+        if (LevelOfDetail.isSimplified()) {
+            strokeSimplifiedLine(gc, x, y, shapeWidth, shapeHeight);
+            if (selected && !isSelectionOnOverlay()) {
+                paintSelection(gc);
+            }
+            return;
+        }
+
         // 调用子类实现的图形绘制方法
         drawShape(gc, x, y, shapeWidth, shapeHeight);
 
-        // 如果选中，绘制线形控制点
-        if (selected) {
-            drawLineControlPoints(gc, x, y, shapeWidth, shapeHeight);
+        // 没有选中覆盖层时（例如不在画布中），由线形自己绘制控制点
+        if (selected && !isSelectionOnOverlay()) {
+            paintSelection(gc);
         }
 
         // 绘制文本
-        if (text != null && !text.isEmpty() && textField == null) {
-            gc.setFill(Color.BLACK);
-            javafx.scene.text.Font font = javafx.scene.text.Font.font(14);
-            gc.setFont(font);
+        drawLabel(gc);
+
+        // 绘制调试信息（canvas边界和中心点）
+        // drawDebugInfo(gc);
+    }
+
+    /**
+     * 重写选中装饰的绘制，线形只绘制两端的控制点
+     */
+    @Override
+    protected void paintSelection(GraphicsContext gc) {
+        double padding = 4;
+        double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), padding);
+        double x = drawingArea[0];
+        double y = drawingArea[1];
+        double shapeWidth = drawingArea[2];
+        double shapeHeight = drawingArea[3];
 
-            // 用Text类测量文本宽度
-            javafx.scene.text.Text tempText = new javafx.scene.text.Text(text);
-            tempText.setFont(font);
-            double textWidth = tempText.getLayoutBounds().getWidth();
+        // 缩放比例较小时用颜色标出选中的线形
+        if (LevelOfDetail.isSimplified()) {
+            gc.setStroke(Color.CORNFLOWERBLUE);
+            gc.setLineWidth(lineWidth);
+            strokeSimplifiedLine(gc, x, y, shapeWidth, shapeHeight);
+            return;
+        }
+
+        drawLineControlPoints(gc, x, y, shapeWidth, shapeHeight);
+    }
 
-            // 使用工具类计算文本居中位置
-            double[] textPosition = ShapeGeometryUtils.calculateCenteredTextPosition(
-                    getWidth(), getHeight(), textWidth, 14);
-            double textX = textPosition[0];
-            double textY = textPosition[1];
+    /**
+     * 检测鼠标位置是否在线形控制点上
+     */
+    @Override
+    protected boolean isOnSelectionHandle(double x, double y) {
+        return getLineControlPointAt(x, y) != null;
+    }
 
-            gc.fillText(text, textX, textY);
+    /**
+     * 几何命中测试，只有靠近线条或控制点时才命中
+     * 线形的canvas覆盖两端点的整个包围盒，不能把包围盒内的空白区域也算作命中
+     */
+    @Override
+    public boolean hitTest(double x, double y) {
+        if (startPoint == null || endPoint == null) {
+            return false;
+        }
+        if (isOnSelectionHandle(x, y)) {
+            return true;
         }
 
-        // 绘制调试信息（canvas边界和中心点）
-        // drawDebugInfo(gc);
+        double padding = 4;
+        double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), padding);
+        double startX = drawingArea[0] + startPoint.getX() / getWidth() * drawingArea[2];
+        double startY = drawingArea[1] + startPoint.getY() / getHeight() * drawingArea[3];
+        double endX = drawingArea[0] + endPoint.getX() / getWidth() * drawingArea[2];
+        double endY = drawingArea[1] + endPoint.getY() / getHeight() * drawingArea[3];
+
+        // 计算点到线段的距离
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? ((x - startX) * dx + (y - startY) * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        double distance = Math.hypot(x - (startX + t * dx), y - (startY + t * dy));
+        return distance <= lineWidth / 2 + HIT_TOLERANCE;
+    }
+
+    /**
+     * 简化绘制时只绘制起点到终点的直线
+     */
+    private void strokeSimplifiedLine(GraphicsContext gc, double x, double y, double shapeWidth,
+            double shapeHeight) {
+        if (startPoint == null || endPoint == null) {
+            return;
+        }
+        gc.strokeLine(x + startPoint.getX() / getWidth() * shapeWidth,
+                y + startPoint.getY() / getHeight() * shapeHeight,
+                x + endPoint.getX() / getWidth() * shapeWidth,
+                y + endPoint.getY() / getHeight() * shapeHeight);
     }
 
     /**
@@ -656,6 +774,7 @@ public abstract class LineShape extends Shape {
      */
     protected void setStartShapeInternal(BlockShape start) {
         this.start = start;
+        modelChanged(DiagramProperty.CONNECTION);
     }
 
     /**
@@ -665,6 +784,7 @@ public abstract class LineShape extends Shape {
      */
     protected void setEndShapeInternal(BlockShape end) {
         this.end = end;
+        modelChanged(DiagramProperty.CONNECTION);
     }
 
     /**
@@ -685,7 +805,8 @@ public abstract class LineShape extends Shape {
         if (lineColor != null) {
             this.lineColor = lineColor;
             // 重新绘制线条以应用新颜色
-            draw();
+            requestRedraw();
+            modelChanged(DiagramProperty.STYLE);
         }
     }
 
@@ -707,7 +828,8 @@ public abstract class LineShape extends Shape {
         if (lineWidth > 0) {
             this.lineWidth = lineWidth;
             // 重新绘制线条以应用新粗细
-            draw();
+            requestRedraw();
+            modelChanged(DiagramProperty.STYLE);
         }
     }
 
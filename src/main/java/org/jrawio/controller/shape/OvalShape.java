@@ -3,6 +3,7 @@ package org.jrawio.controller.shape;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.geometry.Point2D;
 import java.util.List;
+import org.jrawio.model.ShapeType;
 
 /**
  * 椭圆/圆形图形实现类
@@ -25,12 +26,7 @@ public class OvalShape extends BlockShape {
 
     @Override
     public void drawShape(GraphicsContext gc, double x, double y, double width, double height) {
-        // 设置线条宽度
-        gc.setLineWidth(1);
-
-        // 绘制椭圆/圆形（填充背景和边框）
-        gc.fillOval(x, y, width, height);
-        gc.strokeOval(x, y, width, height);
+        ElementPainter.paintBody(gc, getShapeType(), x, y, width, height);
     }
 
     @Override
@@ -41,11 +37,8 @@ public class OvalShape extends BlockShape {
         double shapeWidth = getWidth();
         double shapeHeight = getHeight();
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace;
+        // 图形绘制区域与canvas边缘的间距
+        double padding = CONTENT_PADDING;
 
         // 计算实际椭圆区域（不包括padding）
         double actualShapeX = shapeLayoutX + padding;
@@ -93,11 +86,8 @@ public class OvalShape extends BlockShape {
         double shapeWidth = getWidth();
         double shapeHeight = getHeight();
 
-        // 计算额外空间（用于箭头控制点）
-        double arrowHandleOffset = ArrowHandleManager.getArrowHandleOffset();
-        double arrowHandleSize = ArrowHandleManager.getArrowHandleSize();
-        double extraSpace = arrowHandleOffset + arrowHandleSize;
-        double padding = 4 + extraSpace;
+        // 图形绘制区域与canvas边缘的间距
+        double padding = CONTENT_PADDING;
 
         // 计算实际椭圆区域（相对于shape本地坐标）
         double actualShapeX = padding;
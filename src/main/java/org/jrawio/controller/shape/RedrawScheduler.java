@@ -0,0 +1,120 @@
+package org.jrawio.controller.shape;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 重绘调度器（单例）
+ * 图形的属性变化只把图形标记为待重绘，由调度器在下一帧统一调用draw()，
+ * 同一帧内无论调用了多少次setter，每个图形最多只绘制一次。
+ * 每帧绘制之前先执行连接线路由，使线形端点的更新在同一帧内生效。
+ */
+public class RedrawScheduler {
+
+    private static RedrawScheduler instance;
+
+    /** 待重绘的图形，保持标记顺序 */
+    private final Set<Shape> dirtyShapes = new LinkedHashSet<>();
+
+    /** 是否正在执行重绘，用于防止重入 */
+    private boolean flushing = false;
+
+    /** 计时器是否在运行，没有待重绘图形时停止以避免空转 */
+    private boolean running = false;
+
+    /** 每帧执行一次重绘 */
+    private final AnimationTimer frameTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+
+    private RedrawScheduler() {
+    }
+
+    /**
+     * 获取重绘调度器实例
+     *
+     * @return 重绘调度器实例
+     */
+    public static RedrawScheduler getInstance() {
+        if (instance == null) {
+            instance = new RedrawScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * 标记图形需要在下一帧重绘
+     *
+     * @param shape 需要重绘的图形
+     */
+    public void schedule(Shape shape) {
+        dirtyShapes.add(shape);
+        requestFrame();
+    }
+
+    /**
+     * 确保下一帧执行一次flush
+     */
+    void requestFrame() {
+        if (!running) {
+            running = true;
+            frameTimer.start();
+        }
+    }
+
+    /**
+     * 取消图形的待重绘标记
+     *
+     * @param shape 图形
+     */
+    public void cancel(Shape shape) {
+        dirtyShapes.remove(shape);
+    }
+
+    /**
+     * 图形是否在等待重绘
+     *
+     * @param shape 图形
+     * @return true如果图形已被标记
+     */
+    public boolean isScheduled(Shape shape) {
+        return dirtyShapes.contains(shape);
+    }
+
+    /**
+     * 立即绘制所有待重绘的图形
+     * 在需要同步得到绘制结果时（如导出、快照）可以直接调用
+     */
+    public void flush() {
+        if (flushing) {
+            return;
+        }
+        flushing = true;
+        try {
+            // 先重新计算连接线端点，再绘制；绘制过程中可能再次标记图形，循环直到全部完成
+            ConnectorRouter router = ConnectorRouter.getInstance();
+            while (router.hasPending() || !dirtyShapes.isEmpty()) {
+                router.flush();
+                List<Shape> shapes = new ArrayList<>(dirtyShapes);
+                dirtyShapes.clear();
+                for (Shape shape : shapes) {
+                    shape.draw();
+                }
+            }
+        } finally {
+            flushing = false;
+        }
+
+        if (running) {
+            running = false;
+            frameTimer.stop();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.jrawio.controller.shape;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Transform;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 单画布渲染器（保留模式）
+ * 启用后，容器中的所有Shape不再各自持有纹理进行绘制，
+ * 而是按照它们在容器中的顺序（即Z序）统一绘制到一个共享的Canvas上。
+ * Shape节点仍保留在容器中作为图形模型，负责布局、连接线和事件逻辑，
+ * 因此内存和每帧开销只与可见像素有关，而与图形数量无关。
+ * 重绘时只清除并重绘脏区域累加器中失效的矩形，拖动一个图形只会重绘它经过的区域。
+ * 可以通过图形过滤器只接管一部分图形，例如连接线层只接管线形。
+ */
+public class SceneRenderer {
+
+    /** 图形所在的容器，其子节点顺序即为绘制顺序 */
+    private final Pane container;
+
+    /** 用于统一绘制所有图形的画布 */
+    private final Canvas sceneCanvas;
+
+    /** 共享画布的像素密度（像素/容器单位），与画布缩放比例一致，缩小时不会浪费像素 */
+    private double renderScale = 1.0;
+
+    /** 把共享画布的像素映射回容器坐标的变换 */
+    private final Scale canvasScale = new Scale(1, 1);
+
+    /** 是否启用单画布渲染 */
+    private boolean enabled = false;
+
+    /** 容器的图形空间索引 */
+    private final ShapeSpatialIndex spatialIndex;
+
+    /** 图形过滤器，只有被接受的图形由此渲染器绘制 */
+    private final Predicate<Shape> shapeFilter;
+
+    /** 脏区域累加器，记录下一帧需要重绘的区域 */
+    private final DirtyRegion dirtyRegion;
+
+    /** 监听图形位置和尺寸变化，旧位置和新位置都需要重绘 */
+    private final ChangeListener<Bounds> boundsListener = this::onBoundsChanged;
+
+    /** 监听容器子节点变化，接管新加入的图形并释放被移除的图形 */
+    private final ListChangeListener<Node> childrenListener = this::onChildrenChanged;
+
+    /** 每帧最多执行一次重绘 */
+    private final AnimationTimer repaintTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            // 先执行本帧待处理的图形重绘，使其失效区域在同一帧内生效
+            RedrawScheduler.getInstance().flush();
+            if (!dirtyRegion.isEmpty()) {
+                repaint();
+            }
+        }
+    };
+
+    /**
+     * 构造函数
+     *
+     * @param container   图形所在的容器
+     * @param sceneCanvas 用于统一绘制的画布
+     * @param dirtyRegion 脏区域累加器
+     */
+    public SceneRenderer(Pane container, Canvas sceneCanvas, DirtyRegion dirtyRegion) {
+        this(container, sceneCanvas, dirtyRegion, shape -> true);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param container   图形所在的容器
+     * @param sceneCanvas 用于统一绘制的画布
+     * @param dirtyRegion 脏区域累加器
+     * @param shapeFilter 图形过滤器，只有被接受的图形由此渲染器绘制
+     */
+    public SceneRenderer(Pane container, Canvas sceneCanvas, DirtyRegion dirtyRegion,
+            Predicate<Shape> shapeFilter) {
+        this.container = container;
+        this.sceneCanvas = sceneCanvas;
+        this.dirtyRegion = dirtyRegion;
+        this.shapeFilter = shapeFilter;
+        this.spatialIndex = ShapeSpatialIndex.of(container);
+        // 共享画布只负责显示，事件由图形节点处理
+        sceneCanvas.setMouseTransparent(true);
+        sceneCanvas.getTransforms().add(canvasScale);
+    }
+
+    /**
+     * 启用或关闭单画布渲染
+     *
+     * @param enabled 是否启用
+     */
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+
+        if (enabled) {
+            for (Node node : container.getChildren()) {
+                if (accepts(node)) {
+                    attach((Shape) node);
+                }
+            }
+            container.getChildren().addListener(childrenListener);
+            repaintTimer.start();
+            requestRepaint();
+        } else {
+            repaintTimer.stop();
+            container.getChildren().removeListener(childrenListener);
+            for (Node node : container.getChildren()) {
+                if (accepts(node)) {
+                    detach((Shape) node);
+                }
+            }
+            GraphicsContext gc = sceneCanvas.getGraphicsContext2D();
+            gc.clearRect(0, 0, sceneCanvas.getWidth(), sceneCanvas.getHeight());
+            dirtyRegion.clear();
+        }
+    }
+
+    /**
+     * 是否启用了单画布渲染
+     *
+     * @return true如果启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 图形内容发生变化，需要重绘其所在区域
+     *
+     * @param shape 发生变化的图形
+     */
+    void invalidate(Shape shape) {
+        dirtyRegion.add(shape.getBoundsInParent());
+    }
+
+    /**
+     * 请求在下一帧重绘指定区域
+     *
+     * @param bounds 需要重绘的区域（容器坐标）
+     */
+    public void invalidate(Bounds bounds) {
+        dirtyRegion.add(bounds);
+    }
+
+    /**
+     * 请求在下一帧重绘整个共享画布
+     */
+    public void requestRepaint() {
+        dirtyRegion.add(sceneCanvas.getLayoutX(), sceneCanvas.getLayoutY(),
+                sceneCanvas.getWidth() / renderScale, sceneCanvas.getHeight() / renderScale);
+    }
+
+    /**
+     * 设置共享画布覆盖的视口区域
+     * 共享画布只需要和可见区域一样大，视口移动时跟随移动并整体重绘。
+     * 画布按缩放比例分配像素，因此缩小查看大图时像素数量仍与屏幕上的视口相当
+     *
+     * @param viewport 可见区域（容器坐标）
+     * @param scale    画布缩放比例
+     */
+    public void setViewport(Bounds viewport, double scale) {
+        if (viewport == null || viewport.isEmpty() || scale <= 0) {
+            return;
+        }
+        double x = Math.floor(viewport.getMinX());
+        double y = Math.floor(viewport.getMinY());
+        double width = Math.ceil(viewport.getWidth() * scale);
+        double height = Math.ceil(viewport.getHeight() * scale);
+        if (x == sceneCanvas.getLayoutX() && y == sceneCanvas.getLayoutY()
+                && width == sceneCanvas.getWidth() && height == sceneCanvas.getHeight()
+                && scale == renderScale) {
+            return;
+        }
+
+        renderScale = scale;
+        canvasScale.setX(1 / scale);
+        canvasScale.setY(1 / scale);
+        sceneCanvas.setLayoutX(x);
+        sceneCanvas.setLayoutY(y);
+        sceneCanvas.setWidth(width);
+        sceneCanvas.setHeight(height);
+        if (enabled) {
+            requestRepaint();
+        }
+    }
+
+    /**
+     * 立即重绘共享画布的脏区域
+     * 每个脏矩形只清除一次，并按容器中的顺序重绘与其相交的图形，
+     * 视口之外的脏区域和图形直接跳过
+     */
+    public void repaint() {
+        List<Bounds> rects = dirtyRegion.drain();
+        if (rects.isEmpty()) {
+            return;
+        }
+
+        // 共享画布左上角在容器中的位置
+        double originX = sceneCanvas.getLayoutX();
+        double originY = sceneCanvas.getLayoutY();
+        double viewMaxX = originX + sceneCanvas.getWidth() / renderScale;
+        double viewMaxY = originY + sceneCanvas.getHeight() / renderScale;
+        GraphicsContext gc = sceneCanvas.getGraphicsContext2D();
+
+        for (Bounds rect : rects) {
+            // 裁剪到视口范围内（容器坐标）
+            double minX = Math.max(originX, rect.getMinX());
+            double minY = Math.max(originY, rect.getMinY());
+            double maxX = Math.min(viewMaxX, rect.getMaxX());
+            double maxY = Math.min(viewMaxY, rect.getMaxY());
+            if (maxX <= minX || maxY <= minY) {
+                continue;
+            }
+            double width = maxX - minX;
+            double height = maxY - minY;
+
+            gc.save();
+            gc.scale(renderScale, renderScale);
+            gc.beginPath();
+            gc.rect(minX - originX, minY - originY, width, height);
+            gc.clip();
+            gc.clearRect(minX - originX, minY - originY, width, height);
+
+            // 通过空间索引只查询与脏矩形相交的图形，结果已按Z序排列
+            for (Shape shape : spatialIndex.query(minX, minY, width, height)) {
+                if (shapeFilter.test(shape)) {
+                    paintShape(gc, shape, originX, originY);
+                }
+            }
+
+            gc.restore();
+        }
+    }
+
+    /**
+     * 查找指定位置上最上层的、由此渲染器绘制的图形
+     * 使用图形自身的几何命中测试，例如线形只在线条附近命中
+     *
+     * @param x 容器坐标X
+     * @param y 容器坐标Y
+     * @return 命中的图形，没有则返回null
+     */
+    public Shape pick(double x, double y) {
+        List<Shape> candidates = spatialIndex.query(x, y, 0, 0);
+        // 查询结果按Z序排列，从最上层开始检测
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Shape shape = candidates.get(i);
+            if (shapeFilter.test(shape) && !shape.isCulled()) {
+                Point2D local = shape.parentToLocal(x, y);
+                if (shape.hitTest(local.getX(), local.getY())) {
+                    return shape;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在共享画布上绘制单个图形
+     *
+     * @param gc      共享画布的图形上下文
+     * @param shape   要绘制的图形
+     * @param originX 共享画布左上角的容器坐标X
+     * @param originY 共享画布左上角的容器坐标Y
+     */
+    private void paintShape(GraphicsContext gc, Shape shape, double originX, double originY) {
+        gc.save();
+        // 使用完整的局部到父容器变换，拖动期间图形带有临时平移
+        Transform toParent = shape.getLocalToParentTransform();
+        gc.translate(toParent.getTx() - originX, toParent.getTy() - originY);
+        gc.setGlobalAlpha(shape.getOpacity());
+        shape.paint(gc);
+        gc.restore();
+    }
+
+    /**
+     * 处理容器子节点变化
+     *
+     * @param change 子节点变化
+     */
+    private void onChildrenChanged(ListChangeListener.Change<? extends Node> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                // 调整Z序，重排涉及的图形都需要重绘
+                for (int i = change.getFrom(); i < change.getTo(); i++) {
+                    if (accepts(change.getList().get(i))) {
+                        dirtyRegion.add(change.getList().get(i).getBoundsInParent());
+                    }
+                }
+            }
+            if (change.wasRemoved()) {
+                for (Node node : change.getRemoved()) {
+                    if (accepts(node)) {
+                        dirtyRegion.add(node.getBoundsInParent());
+                        if (node.getParent() != container) {
+                            detach((Shape) node);
+                        }
+                    }
+                }
+            }
+            if (change.wasAdded()) {
+                for (Node node : change.getAddedSubList()) {
+                    if (accepts(node)) {
+                        if (!((Shape) node).isRenderedByScene()) {
+                            attach((Shape) node);
+                        }
+                        dirtyRegion.add(node.getBoundsInParent());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理图形边界变化
+     *
+     * @param observable 边界属性
+     * @param oldBounds  旧边界
+     * @param newBounds  新边界
+     */
+    private void onBoundsChanged(ObservableValue<? extends Bounds> observable,
+            Bounds oldBounds, Bounds newBounds) {
+        dirtyRegion.add(oldBounds);
+        dirtyRegion.add(newBounds);
+    }
+
+    /**
+     * 节点是否是由此渲染器绘制的图形
+     *
+     * @param node 节点
+     * @return true如果是被过滤器接受的图形
+     */
+    private boolean accepts(Node node) {
+        return node instanceof Shape && shapeFilter.test((Shape) node);
+    }
+
+    /**
+     * 接管图形的绘制
+     *
+     * @param shape 图形
+     */
+    private void attach(Shape shape) {
+        shape.attachRenderer(this);
+        shape.boundsInParentProperty().addListener(boundsListener);
+    }
+
+    /**
+     * 释放图形的绘制，恢复自身绘制
+     *
+     * @param shape 图形
+     */
+    private void detach(Shape shape) {
+        shape.boundsInParentProperty().removeListener(boundsListener);
+        shape.detachRenderer();
+    }
+}
@@ -0,0 +1,270 @@
+package org.jrawio.controller.shape;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Transform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 选中覆盖层
+ * 所有选中图形的虚线方框、缩放控制点和箭头控制点统一绘制到一个共享的Canvas上，
+ * 选中状态变化时只重绘覆盖层，不需要清除和重绘图形自身的内容。
+ * 覆盖层只覆盖可见区域，并显示在所有图形之上；它本身不接收鼠标事件，
+ * 落在图形canvas之外的控制点通过{@link #pickHandleOwner(double, double)}命中测试。
+ */
+public class SelectionOverlay {
+
+    /** 在容器属性中保存覆盖层的键 */
+    private static final String PROPERTY_KEY = SelectionOverlay.class.getName();
+
+    /** 控制点超出图形canvas的最大距离 */
+    private static final double HANDLE_REACH = ArrowHandleManager.getArrowHandleOffset()
+            + ArrowHandleManager.getArrowHandleSize();
+
+    /** 选中图形不超过此数量时直接遍历选中集合，否则通过空间索引查询可见区域 */
+    private static final int DIRECT_ITERATION_LIMIT = 256;
+
+    /** 图形所在的容器 */
+    private final Pane container;
+
+    /** 用于绘制选中装饰的画布 */
+    private final Canvas overlayCanvas;
+
+    /** 把覆盖层画布的像素映射回容器坐标的变换 */
+    private final Scale canvasScale = new Scale(1, 1);
+
+    /** 覆盖层画布的像素密度，与画布缩放比例一致 */
+    private double renderScale = 1.0;
+
+    /** 容器的图形空间索引 */
+    private final ShapeSpatialIndex spatialIndex;
+
+    /** 选中图形的位置或尺寸变化时重绘覆盖层 */
+    private final InvalidationListener boundsListener = observable -> requestRepaint();
+
+    /** 监听容器子节点变化，跟踪加入和移除的选中图形 */
+    private final ListChangeListener<Node> childrenListener = this::onChildrenChanged;
+
+    /** 同一帧内的多次重绘请求合并为一次 */
+    private final AnimationTimer repaintTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            repaint();
+        }
+    };
+
+    /**
+     * 构造函数
+     *
+     * @param container     图形所在的容器
+     * @param overlayCanvas 用于绘制选中装饰的画布
+     */
+    public SelectionOverlay(Pane container, Canvas overlayCanvas) {
+        this.container = container;
+        this.overlayCanvas = overlayCanvas;
+        this.spatialIndex = ShapeSpatialIndex.of(container);
+
+        // 覆盖层只负责显示，并始终显示在图形之上（图形被点击时会调用toFront）
+        overlayCanvas.setMouseTransparent(true);
+        overlayCanvas.setViewOrder(-1);
+        overlayCanvas.getTransforms().add(canvasScale);
+
+        container.getProperties().put(PROPERTY_KEY, this);
+        container.getChildren().addListener(childrenListener);
+        for (Shape shape : Shape.getSelectedShapes()) {
+            if (shape.getParent() == container) {
+                shape.boundsInParentProperty().addListener(boundsListener);
+            }
+        }
+        requestRepaint();
+    }
+
+    /**
+     * 查找容器的选中覆盖层
+     *
+     * @param container 图形所在的容器
+     * @return 选中覆盖层，容器没有覆盖层时返回null
+     */
+    static SelectionOverlay find(Node container) {
+        if (container == null) {
+            return null;
+        }
+        Object overlay = container.getProperties().get(PROPERTY_KEY);
+        return overlay instanceof SelectionOverlay ? (SelectionOverlay) overlay : null;
+    }
+
+    /**
+     * 图形的选中状态发生变化
+     * 选中的图形移动或缩放时需要跟随重绘，因此只监听选中图形的边界
+     *
+     * @param shape 图形
+     */
+    void selectionChanged(Shape shape) {
+        if (shape.isSelected()) {
+            shape.boundsInParentProperty().addListener(boundsListener);
+        } else {
+            shape.boundsInParentProperty().removeListener(boundsListener);
+        }
+        requestRepaint();
+    }
+
+    /**
+     * 请求在下一帧重绘覆盖层
+     */
+    public void requestRepaint() {
+        repaintTimer.start();
+    }
+
+    /**
+     * 设置覆盖层画布覆盖的视口区域
+     *
+     * @param viewport 可见区域（容器坐标）
+     * @param scale    画布缩放比例
+     */
+    public void setViewport(Bounds viewport, double scale) {
+        if (viewport == null || viewport.isEmpty() || scale <= 0) {
+            return;
+        }
+        renderScale = scale;
+        canvasScale.setX(1 / scale);
+        canvasScale.setY(1 / scale);
+        overlayCanvas.setLayoutX(Math.floor(viewport.getMinX()));
+        overlayCanvas.setLayoutY(Math.floor(viewport.getMinY()));
+        overlayCanvas.setWidth(Math.ceil(viewport.getWidth() * scale));
+        overlayCanvas.setHeight(Math.ceil(viewport.getHeight() * scale));
+        requestRepaint();
+    }
+
+    /**
+     * 立即重绘覆盖层
+     * 只绘制位于可见区域内的选中图形
+     */
+    public void repaint() {
+        GraphicsContext gc = overlayCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, overlayCanvas.getWidth(), overlayCanvas.getHeight());
+        if (Shape.getSelectedShapes().isEmpty()) {
+            return;
+        }
+
+        // 覆盖层画布左上角在容器中的位置
+        double originX = overlayCanvas.getLayoutX();
+        double originY = overlayCanvas.getLayoutY();
+        double viewWidth = overlayCanvas.getWidth() / renderScale;
+        double viewHeight = overlayCanvas.getHeight() / renderScale;
+
+        gc.save();
+        gc.scale(renderScale, renderScale);
+        for (Shape shape : visibleSelectedShapes(originX, originY, viewWidth, viewHeight)) {
+            gc.save();
+            Transform toParent = shape.getLocalToParentTransform();
+            gc.translate(toParent.getTx() - originX, toParent.getTy() - originY);
+            shape.paintSelection(gc);
+            gc.restore();
+        }
+        gc.restore();
+    }
+
+    /**
+     * 查找指定位置上的选中控制点所属的图形
+     * 控制点可能位于图形canvas之外，无法由图形节点自己拾取
+     *
+     * @param x 容器坐标X
+     * @param y 容器坐标Y
+     * @return 控制点所属的图形，没有则返回null
+     */
+    public Shape pickHandleOwner(double x, double y) {
+        if (Shape.getSelectedShapes().isEmpty()) {
+            return null;
+        }
+        List<Shape> candidates = spatialIndex.query(x - HANDLE_REACH, y - HANDLE_REACH,
+                2 * HANDLE_REACH, 2 * HANDLE_REACH);
+        // 查询结果按Z序排列，从最上层开始检测
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Shape shape = candidates.get(i);
+            if (!shape.isSelected()) {
+                continue;
+            }
+            Point2D local = shape.parentToLocal(x, y);
+            if (shape.isOnSelectionHandle(local.getX(), local.getY())) {
+                return shape;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取与可见区域相交的选中图形
+     * 选中图形较少时直接遍历选中集合，否则通过空间索引只查询可见区域内的图形
+     */
+    private List<Shape> visibleSelectedShapes(double x, double y, double width, double height) {
+        // 控制点超出图形边界，查询范围需要向外扩展
+        double minX = x - HANDLE_REACH;
+        double minY = y - HANDLE_REACH;
+        double maxX = x + width + HANDLE_REACH;
+        double maxY = y + height + HANDLE_REACH;
+
+        List<Shape> result = new ArrayList<>();
+        if (Shape.getSelectedShapes().size() <= DIRECT_ITERATION_LIMIT) {
+            for (Shape shape : Shape.getSelectedShapes()) {
+                if (shape.getParent() == container
+                        && intersects(shape.getBoundsInParent(), minX, minY, maxX, maxY)) {
+                    result.add(shape);
+                }
+            }
+            return result;
+        }
+        for (Shape shape : spatialIndex.query(minX, minY, maxX - minX, maxY - minY)) {
+            if (shape.isSelected()) {
+                result.add(shape);
+            }
+        }
+        return result;
+    }
+
+    private static boolean intersects(Bounds bounds, double minX, double minY, double maxX, double maxY) {
+        return bounds.getMaxX() >= minX && bounds.getMinX() <= maxX
+                && bounds.getMaxY() >= minY && bounds.getMinY() <= maxY;
+    }
+
+    /**
+     * 处理容器子节点变化
+     *
+     * @param change 子节点变化
+     */
+    private void onChildrenChanged(ListChangeListener.Change<? extends Node> change) {
+        boolean selectionAffected = false;
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            for (Node node : change.getRemoved()) {
+                if (node instanceof Shape && node.getParent() != container) {
+                    node.boundsInParentProperty().removeListener(boundsListener);
+                    selectionAffected |= ((Shape) node).isSelected();
+                }
+            }
+            for (Node node : change.getAddedSubList()) {
+                if (node instanceof Shape && ((Shape) node).isSelected()) {
+                    // 先移除再添加，避免同一图形重复监听
+                    node.boundsInParentProperty().removeListener(boundsListener);
+                    node.boundsInParentProperty().addListener(boundsListener);
+                    selectionAffected = true;
+                }
+            }
+        }
+        if (selectionAffected) {
+            requestRepaint();
+        }
+    }
+}
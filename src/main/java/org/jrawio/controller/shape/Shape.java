@@ -1,5 +1,6 @@
 package org.jrawio.controller.shape;
 
+import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.MouseEvent;
@@ -14,25 +15,33 @@ import javafx.scene.control.SeparatorMenuItem;
 import org.jrawio.controller.components.RightPanel;
 import org.jrawio.controller.components.ShapeClipboard;
 import org.jrawio.controller.shape.Shape.ShapeStateMachine.InteractionState;
+import org.jrawio.model.DiagramElement;
+import org.jrawio.model.DiagramProperty;
+import org.jrawio.model.ShapeType;
+import org.jrawio.model.command.CommandStack;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import lombok.Data;
-import lombok.Getter;
 
 public abstract class Shape extends Canvas {
     /** 是否被选中 */
     protected boolean selected = false;
 
-    /** 被选中的所有图形 */
-    @Getter
-    protected static final Set<Shape> selectedShapes = new HashSet<>();
-
     /** 文本内容 */
     protected String text;
 
+    /** 文本标签字体 */
+    protected static final javafx.scene.text.Font LABEL_FONT = javafx.scene.text.Font.font(14);
+
+    /** 文本标签布局，文本变化时失效 */
+    private TextLayoutCache.TextLayout labelLayout;
+
     /** 文本框控件 */
     protected TextField textField;
     /** 操作状态机 */
@@ -41,6 +50,27 @@ public abstract class Shape extends Canvas {
     /** 右键菜单 */
     protected ContextMenu shapeContextMenu;
 
+    /** 单画布渲染器，非空时图形由渲染器统一绘制，自身Canvas不再绘制 */
+    private SceneRenderer sceneRenderer;
+
+    /** 是否因位于视口之外而被剔除，剔除后不显示、不参与拾取、不绘制自身Canvas */
+    private boolean culled = false;
+
+    /** 剔除期间是否有被跳过的绘制，恢复显示时需要补绘 */
+    private boolean drawSkipped = false;
+
+    /** 当前进行中的拖动，拖动期间选中图形共享一个临时平移 */
+    private GroupDragSession dragSession;
+
+    /** 图形所投影的文档模型绑定，未绑定时为null */
+    private DiagramBinding diagramBinding;
+
+    /** 对应的图元ID，未绑定时为{@link DiagramElement#NO_ELEMENT} */
+    private int elementId = DiagramElement.NO_ELEMENT;
+
+    /** 鼠标按下时开始合并撤销的绑定，图形可能在操作期间被解除绑定，结束时使用它 */
+    private DiagramBinding gestureBinding;
+
     /**
      * 内部状态机类 - 管理Shape的交互状态
      */
@@ -175,7 +205,7 @@ public abstract class Shape extends Canvas {
      */
     public Shape(double width, double height) {
         super(width, height);
-        draw();
+        requestRedraw();
 
         this.setOnMousePressed(this::handlePressed);
         this.setOnMouseDragged(this::handleDragged);
@@ -184,9 +214,13 @@ public abstract class Shape extends Canvas {
         this.setOnMouseClicked(this::handleClick);
         this.setOnMouseEntered(this::handleMouseEntered);
         this.setOnMouseExited(this::handleMouseExited);
+        this.addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, this::handleGestureExited);
 
         // 初始化右键菜单
         initializeContextMenu();
+
+        // 位置和尺寸变化时同步到文档模型
+        observeGeometry();
     }
 
     /**
@@ -212,12 +246,59 @@ public abstract class Shape extends Canvas {
         this.setOnMouseClicked(this::handleClick);
         this.setOnMouseEntered(this::handleMouseEntered);
         this.setOnMouseExited(this::handleMouseExited);
+        this.addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, this::handleGestureExited);
 
         // 初始化右键菜单
         initializeContextMenu();
 
+        // 位置和尺寸变化时同步到文档模型
+        observeGeometry();
+
         // 绘制图形
-        draw();
+        requestRedraw();
+    }
+
+    /**
+     * 监听位置和尺寸的变化，绑定到文档模型后同步到对应的图元
+     */
+    private void observeGeometry() {
+        javafx.beans.InvalidationListener geometryListener = observable -> modelChanged(DiagramProperty.BOUNDS);
+        layoutXProperty().addListener(geometryListener);
+        layoutYProperty().addListener(geometryListener);
+        widthProperty().addListener(geometryListener);
+        heightProperty().addListener(geometryListener);
+    }
+
+    /**
+     * 获取对应的图元ID
+     * 
+     * @return 图元ID，未绑定到文档模型时返回{@link DiagramElement#NO_ELEMENT}
+     */
+    public int getElementId() {
+        return elementId;
+    }
+
+    /**
+     * 由文档模型绑定调用，关联或解除关联对应的图元
+     * 
+     * @param binding   文档模型绑定，解除关联时为null
+     * @param elementId 图元ID
+     */
+    void attachDiagram(DiagramBinding binding, int elementId) {
+        this.diagramBinding = binding;
+        this.elementId = elementId;
+    }
+
+    /**
+     * 图形的状态发生变化，绑定到文档模型时同步到对应的图元
+     * 子类修改文本、样式、端点或连接后调用
+     * 
+     * @param property 变化的属性
+     */
+    protected void modelChanged(DiagramProperty property) {
+        if (diagramBinding != null) {
+            diagramBinding.shapeChanged(this, property);
+        }
     }
 
     /**
@@ -235,6 +316,12 @@ public abstract class Shape extends Canvas {
         this.toFront();
         stateMachine.prepareForInteraction(event.getSceneX(), event.getSceneY());
 
+        // 按下到释放之间的所有修改（移动、缩放、创建连线等）合并为一步撤销
+        if (diagramBinding != null) {
+            gestureBinding = diagramBinding;
+            gestureBinding.beginGesture();
+        }
+
         // Hook: 让子类处理特定的控制点检测和交互
         if (selected && handleControlPointInteraction(event)) {
             event.consume();
@@ -253,17 +340,11 @@ public abstract class Shape extends Canvas {
         // 按住图形时确保选中状态
         if (multiSelect) {
             // 多选模式：切换选中状态
-            setSelected(!selected);
+            ShapeSelectionModel.getInstance().toggle(this);
         } else {
-            // 单选模式：如果未选中则选中，如果已选中则保持选中
+            // 单选模式：如果未选中则只选中当前图形，如果已选中则保持选中
             if (!selected) {
-                // 取消其他图形的选中状态
-                for (Shape shape : selectedShapes.toArray(new Shape[0])) {
-                    if (shape != this) {
-                        shape.setSelected(false);
-                    }
-                }
-                setSelected(true);
+                ShapeSelectionModel.getInstance().selectOnly(this);
             }
             // 如果已经选中，保持选中状态不变
         }
@@ -355,6 +436,43 @@ public abstract class Shape extends Canvas {
      * @param event 鼠标事件
      */
     protected final void handleMouseReleased(MouseEvent event) {
+        try {
+            releaseInteraction(event);
+        } finally {
+            // 释放时结束合并撤销的操作，使用按下时记下的绑定
+            endGesture();
+        }
+    }
+
+    /**
+     * 鼠标离开图形时按键已经松开，说明释放事件没有送达（例如在窗口之外松开），结束合并撤销的操作
+     * 拖动期间离开图形时按键仍然按下，不结束
+     *
+     * @param event 鼠标事件
+     */
+    private void handleGestureExited(MouseEvent event) {
+        if (gestureBinding != null && !event.isPrimaryButtonDown()) {
+            endGesture();
+        }
+    }
+
+    /**
+     * 结束鼠标按下时开始的合并撤销的操作
+     */
+    private void endGesture() {
+        if (gestureBinding != null) {
+            DiagramBinding binding = gestureBinding;
+            gestureBinding = null;
+            binding.endGesture();
+        }
+    }
+
+    /**
+     * 鼠标释放时的处理
+     * 
+     * @param event 鼠标事件
+     */
+    private void releaseInteraction(MouseEvent event) {
         // Hook: 让子类处理特定的释放逻辑
         if (handleSpecificRelease(event)) {
             event.consume();
@@ -363,11 +481,13 @@ public abstract class Shape extends Canvas {
 
         // 标准的释放逻辑
         if (stateMachine.getCurrentState() == ShapeStateMachine.InteractionState.DRAGGING) {
+            // 拖动结束，把临时平移一次性写回图形和连接线
+            finishDrag();
             setCursor(Cursor.HAND);
             // 拖动结束后，通知右侧面板更新位置信息
             RightPanel rightPanel = RightPanel.getInstance();
             if (rightPanel != null) {
-                rightPanel.onShapeSelectionChanged(selectedShapes);
+                rightPanel.onShapeSelectionChanged(getSelectedShapes());
             }
         }
 
@@ -403,25 +523,47 @@ public abstract class Shape extends Canvas {
      * 处理移动操作 - 共通的拖动移动逻辑
      */
     protected void handleMove(MouseEvent event) {
-        double offsetX = event.getSceneX() - stateMachine.getOrgSceneX();
-        double offsetY = event.getSceneY() - stateMachine.getOrgSceneY();
-        // 同步移动所有被选中的Shape
-        for (Shape shape : selectedShapes) {
-            shape.setLayoutX(shape.getLayoutX() + offsetX);
-            shape.setLayoutY(shape.getLayoutY() + offsetY);
-
-            // 同步移动文本框
-            if (shape.textField != null) {
-                shape.textField.setLayoutX(shape.getLayoutX() + 4);
-                shape.textField.setLayoutY(shape.getLayoutY() + shape.getHeight() / 2 - 12);
-            }
-
-            // Hook: 让子类处理形状移动后的额外逻辑（如更新连接线的端点）
-            shape.onPositionChanged(offsetX, offsetY);
+        // 将场景坐标中的位移换算到父容器坐标（考虑画布缩放）
+        Point2D offset = sceneDeltaToParent(event.getSceneX() - stateMachine.getOrgSceneX(),
+                event.getSceneY() - stateMachine.getOrgSceneY());
+        // 所有被选中的Shape共享一个临时平移，每次拖动只更新平移量
+        if (dragSession == null && getParent() instanceof Pane) {
+            dragSession = new GroupDragSession((Pane) getParent(), getSelectedShapes());
+        }
+        if (dragSession != null) {
+            dragSession.moveBy(offset.getX(), offset.getY());
         }
         stateMachine.updateOrgScene(event.getSceneX(), event.getSceneY());
     }
 
+    /**
+     * 结束当前的拖动，把拖动期间的位移写回所有被带动的图形
+     */
+    private void finishDrag() {
+        if (dragSession != null) {
+            GroupDragSession session = dragSession;
+            dragSession = null;
+            session.commit();
+        }
+    }
+
+    /**
+     * 将场景坐标中的位移换算为父容器坐标中的位移
+     * 画布缩放后，场景中的位移需要按缩放比例换算
+     * 
+     * @param sceneDeltaX 场景坐标X方向位移
+     * @param sceneDeltaY 场景坐标Y方向位移
+     * @return 父容器坐标中的位移
+     */
+    protected Point2D sceneDeltaToParent(double sceneDeltaX, double sceneDeltaY) {
+        if (getParent() == null) {
+            return new Point2D(sceneDeltaX, sceneDeltaY);
+        }
+        Point2D origin = getParent().sceneToLocal(0, 0);
+        Point2D moved = getParent().sceneToLocal(sceneDeltaX, sceneDeltaY);
+        return moved.subtract(origin);
+    }
+
     /**
      * 开始编辑文本
      */
@@ -449,11 +591,16 @@ public abstract class Shape extends Canvas {
     protected void finishEdit() {
         if (textField == null)
             return;
-        text = textField.getText();
-        Pane parent = (Pane) getParent();
-        parent.getChildren().remove(textField);
+        // 先清空引用，移除文本框引起的失去焦点不会再次完成编辑
+        TextField editor = textField;
         textField = null;
-        draw();
+        Pane parent = (Pane) getParent();
+        if (parent != null) {
+            parent.getChildren().remove(editor);
+        }
+        String editedText = editor.getText();
+        // 通过setText写入，文本修改同步到文档模型并记录为一步撤销
+        setText(editedText);
     }
 
     /**
@@ -469,14 +616,8 @@ public abstract class Shape extends Canvas {
             stateMachine.toIdle();
         } // 处理右键点击选中逻辑
         if (event.getButton() == MouseButton.SECONDARY) {
-            // 取消其他所有图形的选中状态
-            for (Shape shape : selectedShapes.toArray(new Shape[0])) {
-                if (shape != this) {
-                    shape.setSelected(false);
-                }
-            }
-            // 选中当前图形
-            setSelected(true);
+            // 只选中当前图形，取消其他所有图形的选中状态
+            ShapeSelectionModel.getInstance().selectOnly(this);
             event.consume();
             return;
         }
@@ -493,24 +634,40 @@ public abstract class Shape extends Canvas {
 
     /**
      * 设置图形选中状态
+     * 通过选择模型修改，选择模型负责通知右侧面板
      * 
      * @param selected 是否选中
      */
     public void setSelected(boolean selected) {
-        if (this.selected == selected) {
-            return;
-        }
-        this.selected = selected;
         if (selected) {
-            selectedShapes.add(this);
+            ShapeSelectionModel.getInstance().select(this);
         } else {
-            selectedShapes.remove(this);
+            ShapeSelectionModel.getInstance().deselect(this);
         }
-        draw();
-        // 通知右侧面板
-        RightPanel rightPanel = RightPanel.getInstance();
-        if (rightPanel != null) {
-            rightPanel.onShapeSelectionChanged(selectedShapes);
+    }
+
+    /**
+     * 获取所有被选中的图形
+     * 
+     * @return 被选中图形的只读视图
+     */
+    public static Set<Shape> getSelectedShapes() {
+        return ShapeSelectionModel.getInstance().getSelectedShapes();
+    }
+
+    /**
+     * 由选择模型调用，更新图形自身的选中状态和选中装饰
+     * 
+     * @param selected 是否选中
+     */
+    void applySelected(boolean selected) {
+        this.selected = selected;
+        // 选中装饰由共享的选中覆盖层绘制，不需要重绘图形内容
+        SelectionOverlay overlay = SelectionOverlay.find(getParent());
+        if (overlay != null) {
+            overlay.selectionChanged(this);
+        } else {
+            requestRedraw();
         }
     }
 
@@ -539,7 +696,9 @@ public abstract class Shape extends Canvas {
      */
     public void setText(String text) {
         this.text = text;
-        draw();
+        labelLayout = null;
+        requestRedraw();
+        modelChanged(DiagramProperty.TEXT);
     }
 
     /**
@@ -549,7 +708,7 @@ public abstract class Shape extends Canvas {
      */
     public void setShapeWidth(double width) {
         super.setWidth(width);
-        draw();
+        requestRedraw();
         // Hook: 让子类处理尺寸变化后的额外逻辑
         onSizeChanged();
     }
@@ -561,11 +720,45 @@ public abstract class Shape extends Canvas {
      */
     public void setShapeHeight(double height) {
         super.setHeight(height);
-        draw();
+        requestRedraw();
         // Hook: 让子类处理尺寸变化后的额外逻辑
         onSizeChanged();
     }
 
+    /**
+     * 同时设置图形宽度和高度
+     * 只触发一次重绘和一次尺寸变化回调
+     * 
+     * @param width  宽度
+     * @param height 高度
+     */
+    public void setShapeSize(double width, double height) {
+        super.setWidth(width);
+        super.setHeight(height);
+        requestRedraw();
+        // Hook: 让子类处理尺寸变化后的额外逻辑
+        onSizeChanged();
+    }
+
+    /**
+     * 设置图形位置
+     * 触发一次位置变化回调，连接线随之更新
+     * 
+     * @param x 父容器坐标X
+     * @param y 父容器坐标Y
+     */
+    public void setPosition(double x, double y) {
+        double offsetX = x - getLayoutX();
+        double offsetY = y - getLayoutY();
+        if (offsetX == 0 && offsetY == 0) {
+            return;
+        }
+        setLayoutX(x);
+        setLayoutY(y);
+        // Hook: 让子类处理形状移动后的额外逻辑（如更新连接线的端点）
+        onPositionChanged(offsetX, offsetY);
+    }
+
     /**
      * 抽象方法：由子类实现具体的图形绘制逻辑
      * 
@@ -595,11 +788,40 @@ public abstract class Shape extends Canvas {
 
     /**
      * 绘制图形到画布
+     * 如果图形已交给单画布渲染器管理，则只通知渲染器重绘，不再绘制自身Canvas；
+     * 如果图形被视口剔除，则跳过绘制，等恢复显示时再补绘
      */
     public void draw() {
+        if (sceneRenderer != null) {
+            sceneRenderer.invalidate(this);
+            return;
+        }
+        if (culled) {
+            drawSkipped = true;
+            return;
+        }
+
         GraphicsContext gc = getGraphicsContext2D();
         gc.clearRect(0, 0, getWidth(), getHeight());
+        paint(gc);
+    }
 
+    /**
+     * 请求在下一帧重绘图形
+     * 同一帧内的多次请求只会绘制一次
+     */
+    public void requestRedraw() {
+        RedrawScheduler.getInstance().schedule(this);
+    }
+
+    /**
+     * 将图形绘制到指定的图形上下文
+     * 使用图形本地坐标系（左上角为原点），不清除背景，
+     * 可以复用于自身Canvas、单画布渲染器和导出
+     *
+     * @param gc 图形上下文
+     */
+    public void paint(GraphicsContext gc) {
         // 使用工具类计算绘制区域
         double padding = 4;
         double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), padding);
@@ -608,48 +830,184 @@ public abstract class Shape extends Canvas {
         double shapeWidth = drawingArea[2];
         double shapeHeight = drawingArea[3];
 
+        // 缩放比例较小时简化为填充矩形，不绘制文本
+        if (LevelOfDetail.isSimplified()) {
+            gc.setFill(Color.LIGHTGRAY);
+            gc.fillRect(x, y, shapeWidth, shapeHeight);
+            if (selected && !isSelectionOnOverlay()) {
+                paintSelection(gc);
+            }
+            return;
+        }
+
         // 调用子类实现的图形绘制方法
         drawShape(gc, x, y, shapeWidth, shapeHeight);
 
-        // 如果选中，画蓝色虚线方框和控制点
-        if (selected) {
-            gc.setStroke(Color.BLUE);
-            gc.setLineWidth(2); // 使用较粗的线条
+        // 没有选中覆盖层时（例如不在画布中），由图形自己绘制选中装饰
+        if (selected && !isSelectionOnOverlay()) {
+            paintSelection(gc);
+        }
 
-            // 设置虚线样式
-            gc.setLineDashes(5, 5); // 虚线长度为5，间隔为5
-            gc.strokeRect(x, y, shapeWidth, shapeHeight);
+        // 绘制文本
+        drawLabel(gc);
 
-            // 重置为实线，用于绘制控制点
-            gc.setLineDashes(null);
-            gc.setLineWidth(1);
+        // 绘制调试信息（canvas边界和中心点）
+        // drawDebugInfo(gc); // 调试绘制已禁用
+    }
+
+    /**
+     * 绘制选中装饰：蓝色虚线方框和缩放控制点
+     * 使用图形本地坐标系，控制点可以超出canvas范围，
+     * 通常由选中覆盖层调用，选中状态变化时不需要重绘图形内容
+     *
+     * @param gc 图形上下文
+     */
+    protected void paintSelection(GraphicsContext gc) {
+        double padding = 4;
+        double[] drawingArea = ShapeGeometryUtils.calculateDrawingArea(getWidth(), getHeight(), padding);
+        double x = drawingArea[0];
+        double y = drawingArea[1];
+        double shapeWidth = drawingArea[2];
+        double shapeHeight = drawingArea[3];
 
-            // 绘制八个控制点
-            ResizeHandleManager.drawResizeHandles(gc, x, y, shapeWidth, shapeHeight);
+        // 缩放比例较小时只用颜色标出选中的图形
+        if (LevelOfDetail.isSimplified()) {
+            gc.setFill(Color.CORNFLOWERBLUE);
+            gc.fillRect(x, y, shapeWidth, shapeHeight);
+            return;
         }
 
-        // 绘制文本
-        if (text != null && !text.isEmpty() && textField == null) {
-            gc.setFill(Color.BLACK);
-            javafx.scene.text.Font font = javafx.scene.text.Font.font(14);
-            gc.setFont(font);
-
-            // 用Text类测量文本宽度
-            javafx.scene.text.Text tempText = new javafx.scene.text.Text(text);
-            tempText.setFont(font);
-            double textWidth = tempText.getLayoutBounds().getWidth();
-
-            // 使用工具类计算文本居中位置
-            double[] textPosition = ShapeGeometryUtils.calculateCenteredTextPosition(
-                    getWidth(), getHeight(), textWidth, 14);
-            double textX = textPosition[0];
-            double textY = textPosition[1];
-
-            gc.fillText(text, textX, textY);
+        gc.setStroke(Color.BLUE);
+        gc.setLineWidth(2); // 使用较粗的线条
+
+        // 设置虚线样式
+        gc.setLineDashes(5, 5); // 虚线长度为5，间隔为5
+        gc.strokeRect(x, y, shapeWidth, shapeHeight);
+
+        // 重置为实线，用于绘制控制点
+        gc.setLineDashes(null);
+        gc.setLineWidth(1);
+
+        // 绘制八个控制点
+        ResizeHandleManager.drawResizeHandles(gc, x, y, shapeWidth, shapeHeight);
+    }
+
+    /**
+     * 选中装饰是否由所在容器的选中覆盖层绘制
+     *
+     * @return true如果由选中覆盖层绘制
+     */
+    protected boolean isSelectionOnOverlay() {
+        return SelectionOverlay.find(getParent()) != null;
+    }
+
+    /**
+     * 几何命中测试
+     * 图形节点不直接参与拾取时（例如由共享画布绘制），用于判断鼠标是否落在图形上
+     *
+     * @param x 图形本地坐标X
+     * @param y 图形本地坐标Y
+     * @return true如果命中图形
+     */
+    public boolean hitTest(double x, double y) {
+        // 默认实现：整个canvas范围都算命中
+        return x >= 0 && y >= 0 && x <= getWidth() && y <= getHeight();
+    }
+
+    /**
+     * 检测指定位置是否在选中装饰的控制点上
+     * 选中覆盖层用它把落在图形canvas之外的控制点上的事件转发给图形
+     *
+     * @param x 图形本地坐标X
+     * @param y 图形本地坐标Y
+     * @return true如果在控制点上
+     */
+    protected boolean isOnSelectionHandle(double x, double y) {
+        // 默认实现：没有可以交互的控制点
+        return false;
+    }
+
+    /**
+     * 绘制居中的文本标签
+     * 文本的测量结果来自文本布局缓存，只在文本变化后重新获取
+     *
+     * @param gc 图形上下文
+     */
+    protected void drawLabel(GraphicsContext gc) {
+        if (text == null || text.isEmpty() || textField != null) {
+            return;
+        }
+        if (labelLayout == null) {
+            labelLayout = TextLayoutCache.getInstance().getLayout(text, LABEL_FONT);
         }
 
-        // 绘制调试信息（canvas边界和中心点）
-        // drawDebugInfo(gc); // 调试绘制已禁用
+        ElementPainter.paintLabel(gc, labelLayout, 0, 0, getWidth(), getHeight());
+    }
+
+    /**
+     * 将图形交给单画布渲染器管理
+     * 图形节点保留在画布中用于事件和布局，但自身不再绘制和显示
+     *
+     * @param renderer 单画布渲染器
+     */
+    void attachRenderer(SceneRenderer renderer) {
+        this.sceneRenderer = renderer;
+        // 清空自身Canvas的绘制命令，隐藏后不会再占用纹理
+        getGraphicsContext2D().clearRect(0, 0, getWidth(), getHeight());
+        updateVisibility();
+    }
+
+    /**
+     * 解除单画布渲染器管理，恢复自身Canvas绘制
+     */
+    void detachRenderer() {
+        this.sceneRenderer = null;
+        updateVisibility();
+        requestRedraw();
+    }
+
+    /**
+     * 设置图形是否被视口剔除
+     * 被剔除的图形隐藏且不参与拾取，重新进入视口时恢复显示并补绘
+     *
+     * @param culled 是否剔除
+     */
+    public void setCulled(boolean culled) {
+        if (this.culled == culled) {
+            return;
+        }
+        this.culled = culled;
+        updateVisibility();
+        if (!culled && drawSkipped) {
+            drawSkipped = false;
+            requestRedraw();
+        }
+    }
+
+    /**
+     * 图形是否被视口剔除
+     *
+     * @return true如果被剔除
+     */
+    public boolean isCulled() {
+        return culled;
+    }
+
+    /**
+     * 根据剔除状态和渲染模式更新节点可见性
+     * 只有未被剔除且自行绘制的图形才需要显示
+     */
+    private void updateVisibility() {
+        setVisible(!culled && sceneRenderer == null);
+    }
+
+    /**
+     * 图形是否由单画布渲染器绘制
+     *
+     * @return true如果由单画布渲染器绘制
+     */
+    public boolean isRenderedByScene() {
+        return sceneRenderer != null;
     }
 
     /**
@@ -786,39 +1144,143 @@ public abstract class Shape extends Canvas {
 
     /**
      * 删除Shape功能
-     * 从画布移除并清理相关引用
+     * 从画布移除并清理相关引用，连接到此图形的箭头一起删除，整个删除作为一步撤销
      */
     public void deleteShape() {
-        try {
-            // 1. 清理连接关系（子类实现具体逻辑）
-            removeConnectedArrows();
+        deleteShapes(List.of(this));
+    }
+
+    /**
+     * 批量删除图形
+     * 与逐个调用{@link #deleteShape()}的效果相同：连接到被删除块状图形的箭头一起删除，
+     * 保留下来的图形断开与被删除图形的连接。
+     * 连接关系一次遍历完成，每个容器的子节点列表只修改一次，选择变化只通知一次。
+     *
+     * @param shapes 要删除的图形
+     * @return 实际删除的图形数量，包括一起删除的箭头
+     */
+    public static int deleteShapes(Collection<? extends Shape> shapes) {
+        int[] deleted = new int[1];
+        batchEdit(shapes, () -> deleted[0] = deleteShapesNow(shapes));
+        return deleted[0];
+    }
 
-            // 2. 从选中图形集合中移除
-            selectedShapes.remove(this);
+    /**
+     * 把对一组图形的修改合并为一步撤销
+     * 图形没有绑定到文档模型时直接执行
+     *
+     * @param shapes 被修改的图形
+     * @param edit   修改操作
+     */
+    public static void batchEdit(Collection<? extends Shape> shapes, Runnable edit) {
+        CommandStack commandStack = null;
+        for (Shape shape : shapes) {
+            if (shape.diagramBinding != null) {
+                commandStack = shape.diagramBinding.getDiagram().getCommandStack();
+                break;
+            }
+        }
+        if (commandStack == null) {
+            edit.run();
+            return;
+        }
+        commandStack.beginCompound();
+        try {
+            edit.run();
+        } finally {
+            commandStack.endCompound();
+        }
+    }
 
-            // 3. 从画布中移除
-            Pane parent = (Pane) getParent();
-            if (parent != null) {
-                parent.getChildren().remove(this);
+    private static int deleteShapesNow(Collection<? extends Shape> shapes) {
+        // 1. 收集要删除的图形以及连接到被删除块状图形的箭头
+        Set<Shape> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Shape shape : shapes) {
+            if (shape.getParent() instanceof Pane && removed.add(shape) && shape instanceof BlockShape) {
+                BlockShape block = (BlockShape) shape;
+                collectArrows(block.getLineStart(), removed);
+                collectArrows(block.getLineEnd(), removed);
             }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
 
-            // 4. 清理文本框（如果存在）
-            if (textField != null) {
-                if (parent != null) {
-                    parent.getChildren().remove(textField);
+        // 2. 断开连接关系，只维护保留下来的图形的连接列表，被删除图形的列表直接清空
+        for (Shape shape : removed) {
+            if (shape instanceof LineShape) {
+                LineShape line = (LineShape) shape;
+                BlockShape start = line.getStartShape();
+                BlockShape end = line.getEndShape();
+                if (start != null && !removed.contains(start)) {
+                    start.removeLineStart(line);
                 }
-                textField = null;
+                if (end != null && !removed.contains(end)) {
+                    end.removeLineEnd(line);
+                }
+                line.setStartShapeInternal(null);
+                line.setEndShapeInternal(null);
             }
+        }
+        for (Shape shape : removed) {
+            if (shape instanceof BlockShape) {
+                BlockShape block = (BlockShape) shape;
+                disconnectRemaining(block, block.getLineStart(), removed);
+                disconnectRemaining(block, block.getLineEnd(), removed);
+                block.clearConnections();
+            }
+        }
 
-            // 5. 通知右侧面板更新
-            RightPanel rightPanel = RightPanel.getInstance();
-            if (rightPanel != null) {
-                rightPanel.onShapeSelectionChanged(selectedShapes);
+        // 3. 从选择中移除，合并为一次通知
+        ShapeSelectionModel selectionModel = ShapeSelectionModel.getInstance();
+        selectionModel.beginUpdate();
+        try {
+            for (Shape shape : removed) {
+                selectionModel.deselect(shape);
             }
+        } finally {
+            selectionModel.endUpdate();
+        }
 
-            System.out.println("Shape deleted successfully");
-        } catch (Exception e) {
-            System.err.println("Failed to delete shape: " + e.getMessage());
+        // 4. 按容器分组，每个容器的子节点列表只修改一次，文本框一起移除
+        Map<Pane, Set<javafx.scene.Node>> nodesByParent = new IdentityHashMap<>();
+        for (Shape shape : removed) {
+            Pane parent = (Pane) shape.getParent();
+            Set<javafx.scene.Node> nodes = nodesByParent.computeIfAbsent(parent,
+                    key -> Collections.newSetFromMap(new IdentityHashMap<>()));
+            nodes.add(shape);
+            if (shape.textField != null) {
+                nodes.add(shape.textField);
+                shape.textField = null;
+            }
+        }
+        for (Map.Entry<Pane, Set<javafx.scene.Node>> entry : nodesByParent.entrySet()) {
+            entry.getKey().getChildren().removeAll(entry.getValue());
+        }
+        return removed.size();
+    }
+
+    /**
+     * 保留下来的线形断开与被删除块状图形的连接
+     */
+    private static void disconnectRemaining(BlockShape block, List<LineShape> lines, Set<Shape> removed) {
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            LineShape line = lines.get(i);
+            if (!removed.contains(line)) {
+                line.disconnectFrom(block);
+            }
+        }
+    }
+
+    /**
+     * 收集连接到被删除块状图形的箭头
+     */
+    private static void collectArrows(List<LineShape> lines, Set<Shape> removed) {
+        for (int i = 0; i < lines.size(); i++) {
+            LineShape line = lines.get(i);
+            if (line instanceof ArrowShape && line.getParent() instanceof Pane) {
+                removed.add(line);
+            }
         }
     }
 
@@ -1021,7 +1483,7 @@ public abstract class Shape extends Canvas {
             // 通知右侧面板更新
             RightPanel rightPanel = RightPanel.getInstance();
             if (rightPanel != null) {
-                rightPanel.onShapeSelectionChanged(selectedShapes);
+                rightPanel.onShapeSelectionChanged(getSelectedShapes());
             }
         } catch (NumberFormatException ex) {
             // 输入无效时恢复原值
@@ -1041,7 +1503,7 @@ public abstract class Shape extends Canvas {
             // 通知右侧面板更新
             RightPanel rightPanel = RightPanel.getInstance();
             if (rightPanel != null) {
-                rightPanel.onShapeSelectionChanged(selectedShapes);
+                rightPanel.onShapeSelectionChanged(getSelectedShapes());
             }
         } catch (NumberFormatException ex) {
             // 输入无效时恢复原值
@@ -1,5 +1,7 @@
 package org.jrawio.controller.shape;
 
+import org.jrawio.model.ShapeType;
+
 /**
  * 形状工厂类
  * 负责创建不同类型的形状实例，支持通过枚举类型或字符串标识符创建形状。
@@ -0,0 +1,232 @@
+package org.jrawio.controller.shape;
+
+import org.jrawio.controller.components.RightPanel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 图形选择模型（单例）
+ * 统一保存所有被选中的图形。单个图形的选中、取消选中以及全选、框选等批量操作
+ * 都只在操作结束时发出一次选择变化通知，右侧面板不会因为批量选择而被重复重建。
+ * 多个操作可以通过{@link #beginUpdate()}和{@link #endUpdate()}合并为一次通知。
+ */
+public class ShapeSelectionModel {
+
+    private static ShapeSelectionModel instance;
+
+    /** 被选中的图形，保持选中顺序 */
+    private final Set<Shape> selection = new LinkedHashSet<>();
+
+    /** 对外提供的只读视图 */
+    private final Set<Shape> selectionView = Collections.unmodifiableSet(selection);
+
+    /** 选择变化监听器 */
+    private final List<Consumer<Set<Shape>>> listeners = new ArrayList<>();
+
+    /** 批量更新的嵌套层数，大于0时暂不发出通知 */
+    private int updateDepth = 0;
+
+    /** 批量更新期间选择是否发生过变化 */
+    private boolean changed = false;
+
+    private ShapeSelectionModel() {
+    }
+
+    /**
+     * 获取图形选择模型实例
+     *
+     * @return 图形选择模型实例
+     */
+    public static ShapeSelectionModel getInstance() {
+        if (instance == null) {
+            instance = new ShapeSelectionModel();
+        }
+        return instance;
+    }
+
+    /**
+     * 获取所有被选中的图形
+     *
+     * @return 被选中图形的只读视图
+     */
+    public Set<Shape> getSelectedShapes() {
+        return selectionView;
+    }
+
+    /**
+     * 是否没有选中任何图形
+     *
+     * @return true如果没有选中的图形
+     */
+    public boolean isEmpty() {
+        return selection.isEmpty();
+    }
+
+    /**
+     * 添加选择变化监听器，每次用户操作最多收到一次通知
+     *
+     * @param listener 监听器，参数为当前选中图形的只读视图
+     */
+    public void addListener(Consumer<Set<Shape>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 移除选择变化监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeListener(Consumer<Set<Shape>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 开始批量更新，在对应的{@link #endUpdate()}之前不发出选择变化通知
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * 结束批量更新，期间选择发生过变化时发出一次通知
+     */
+    public void endUpdate() {
+        if (updateDepth == 0) {
+            return;
+        }
+        updateDepth--;
+        if (updateDepth == 0 && changed) {
+            changed = false;
+            fireSelectionChanged();
+        }
+    }
+
+    /**
+     * 选中图形
+     *
+     * @param shape 图形
+     */
+    public void select(Shape shape) {
+        beginUpdate();
+        try {
+            apply(shape, true);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 取消选中图形
+     *
+     * @param shape 图形
+     */
+    public void deselect(Shape shape) {
+        beginUpdate();
+        try {
+            apply(shape, false);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 切换图形的选中状态
+     *
+     * @param shape 图形
+     */
+    public void toggle(Shape shape) {
+        beginUpdate();
+        try {
+            apply(shape, !selection.contains(shape));
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 只选中指定图形，取消其他所有图形的选中状态
+     *
+     * @param shape 图形
+     */
+    public void selectOnly(Shape shape) {
+        setSelection(Collections.singletonList(shape));
+    }
+
+    /**
+     * 把一组图形加入选择，已选中的图形保持不变
+     *
+     * @param shapes 要选中的图形
+     */
+    public void selectAll(Collection<? extends Shape> shapes) {
+        beginUpdate();
+        try {
+            for (Shape shape : shapes) {
+                apply(shape, true);
+            }
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 用一组图形替换当前选择
+     *
+     * @param shapes 新的选择
+     */
+    public void setSelection(Collection<? extends Shape> shapes) {
+        beginUpdate();
+        try {
+            Set<Shape> target = new LinkedHashSet<>(shapes);
+            for (Shape shape : new ArrayList<>(selection)) {
+                if (!target.contains(shape)) {
+                    apply(shape, false);
+                }
+            }
+            for (Shape shape : target) {
+                apply(shape, true);
+            }
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 取消所有图形的选中状态
+     */
+    public void clearSelection() {
+        setSelection(Collections.emptyList());
+    }
+
+    /**
+     * 修改单个图形的选中状态，并记录选择发生了变化
+     */
+    private void apply(Shape shape, boolean selected) {
+        if (shape == null) {
+            return;
+        }
+        boolean modified = selected ? selection.add(shape) : selection.remove(shape);
+        if (modified) {
+            shape.applySelected(selected);
+            changed = true;
+        }
+    }
+
+    /**
+     * 通知右侧面板和所有监听器
+     */
+    private void fireSelectionChanged() {
+        RightPanel rightPanel = RightPanel.getInstance();
+        if (rightPanel != null) {
+            rightPanel.onShapeSelectionChanged(selectionView);
+        }
+        for (Consumer<Set<Shape>> listener : new ArrayList<>(listeners)) {
+            listener.accept(selectionView);
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package org.jrawio.controller.shape;
+
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图形空间索引（四叉树）
+ * 每个容器对应一个索引，跟踪容器中所有Shape的边界（容器坐标）。
+ * 图形移动、缩放、添加、删除时自动更新，
+ * 框选、命中测试和范围查询的复杂度为O(log n + k)，不再需要遍历全部子节点。
+ *
+ * 图形存放在能完整包含其边界的最深节点中，根节点会随图形超出范围自动扩展。
+ */
+public class ShapeSpatialIndex {
+
+    /** 索引在容器属性中的键 */
+    private static final String PROPERTY_KEY = ShapeSpatialIndex.class.getName();
+
+    /** 单个节点最多存放的图形数量，超过后分裂 */
+    private static final int MAX_ITEMS_PER_NODE = 8;
+
+    /** 最大树深度 */
+    private static final int MAX_DEPTH = 16;
+
+    /** 初始根节点边长 */
+    private static final double INITIAL_ROOT_SIZE = 1024;
+
+    /** 按Z序排序的比较器 */
+    private static final Comparator<Entry> Z_ORDER = Comparator.comparingLong(entry -> entry.order);
+
+    /**
+     * 索引中的一个图形
+     */
+    private static final class Entry {
+        final Shape shape;
+        final ChangeListener<Bounds> listener;
+        Bounds bounds;
+        QuadNode node;
+        /** Z序，数值越大越靠上 */
+        long order;
+
+        Entry(Shape shape, ChangeListener<Bounds> listener) {
+            this.shape = shape;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * 四叉树节点，覆盖一个正方形区域
+     */
+    private static final class QuadNode {
+        final double x;
+        final double y;
+        final double size;
+        int depth;
+        QuadNode parent;
+        QuadNode[] children;
+        final List<Entry> items = new ArrayList<>();
+        /** 子树中的图形数量 */
+        int count;
+
+        QuadNode(double x, double y, double size, int depth) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.depth = depth;
+        }
+
+        boolean contains(Bounds b) {
+            return b.getMinX() >= x && b.getMinY() >= y
+                    && b.getMaxX() <= x + size && b.getMaxY() <= y + size;
+        }
+
+        boolean intersects(double qx, double qy, double qMaxX, double qMaxY) {
+            return qx <= x + size && qMaxX >= x && qy <= y + size && qMaxY >= y;
+        }
+
+        /**
+         * 查找能完整包含边界的子节点
+         */
+        QuadNode childFor(Bounds b) {
+            if (children == null) {
+                return null;
+            }
+            for (QuadNode child : children) {
+                if (child.contains(b)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** 被索引的容器 */
+    private final Pane container;
+
+    /** 图形到索引项的映射 */
+    private final Map<Shape, Entry> entries = new IdentityHashMap<>();
+
+    /** 暂时移出四叉树的浮动图形，查询时按当前边界直接检测 */
+    private final List<Entry> floating = new ArrayList<>();
+
+    /** 四叉树根节点 */
+    private QuadNode root = new QuadNode(0, 0, INITIAL_ROOT_SIZE, 0);
+
+    /** 下一个分配的Z序 */
+    private long nextOrder = 0;
+
+    /** 修改计数，图形增删或边界变化时递增 */
+    private long modCount = 0;
+
+    /**
+     * 获取容器对应的空间索引，不存在时创建
+     *
+     * @param container 图形所在的容器
+     * @return 空间索引
+     */
+    public static ShapeSpatialIndex of(Pane container) {
+        Object index = container.getProperties().get(PROPERTY_KEY);
+        if (index instanceof ShapeSpatialIndex) {
+            return (ShapeSpatialIndex) index;
+        }
+        ShapeSpatialIndex created = new ShapeSpatialIndex(container);
+        container.getProperties().put(PROPERTY_KEY, created);
+        return created;
+    }
+
+    /**
+     * 构造函数，索引容器中已有的图形并开始跟踪子节点变化
+     *
+     * @param container 图形所在的容器
+     */
+    private ShapeSpatialIndex(Pane container) {
+        this.container = container;
+        for (Node node : container.getChildren()) {
+            if (node instanceof Shape) {
+                add((Shape) node);
+            }
+        }
+        container.getChildren().addListener(this::onChildrenChanged);
+    }
+
+    /**
+     * 索引中的图形数量
+     *
+     * @return 图形数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 查询与矩形区域相交的所有图形
+     *
+     * @param x      左上角X坐标
+     * @param y      左上角Y坐标
+     * @param width  宽度
+     * @param height 高度
+     * @return 相交的图形，按Z序从下到上排列
+     */
+    public List<Shape> query(double x, double y, double width, double height) {
+        List<Entry> found = new ArrayList<>();
+        collect(root, x, y, x + width, y + height, found);
+        collectFloating(x, y, x + width, y + height, found);
+        return toShapes(found);
+    }
+
+    /**
+     * 查询与区域相交的所有图形
+     *
+     * @param bounds 查询区域
+     * @return 相交的图形，按Z序从下到上排列
+     */
+    public List<Shape> query(Bounds bounds) {
+        return query(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    /**
+     * 查找包含指定点的最上层图形
+     *
+     * @param x 容器坐标X
+     * @param y 容器坐标Y
+     * @return 最上层的图形，没有则返回null
+     */
+    public Shape pick(double x, double y) {
+        List<Entry> found = new ArrayList<>();
+        collect(root, x, y, x, y, found);
+        collectFloating(x, y, x, y, found);
+        Entry top = null;
+        for (Entry entry : found) {
+            if (entry.bounds.contains(x, y) && (top == null || entry.order > top.order)) {
+                top = entry;
+            }
+        }
+        return top != null ? top.shape : null;
+    }
+
+    /**
+     * 获取所有图形
+     *
+     * @return 所有图形，按Z序从下到上排列
+     */
+    public List<Shape> getShapes() {
+        return toShapes(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * 获取修改计数
+     * 调用方可以比较前后两次的值来判断索引内容是否发生变化
+     *
+     * @return 修改计数
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * 获取索引中记录的图形边界
+     *
+     * @param shape 图形
+     * @return 边界，未被索引时返回null
+     */
+    public Bounds getBounds(Shape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            return null;
+        }
+        return entry.node != null ? entry.bounds : shape.getBoundsInParent();
+    }
+
+    /**
+     * 将图形暂时移出四叉树，成为浮动图形
+     * 拖动期间图形的边界每个事件都在变化，浮动图形不再逐次更新树结构，
+     * 查询时直接按当前边界检测；拖动结束后通过{@link #resume()}一次性重新插入
+     *
+     * @param shapes 要暂停更新的图形
+     */
+    public void suspend(Collection<? extends Shape> shapes) {
+        for (Shape shape : shapes) {
+            Entry entry = entries.get(shape);
+            if (entry == null || entry.node == null) {
+                continue;
+            }
+            shape.boundsInParentProperty().removeListener(entry.listener);
+            detachEntry(entry);
+            floating.add(entry);
+        }
+        modCount++;
+    }
+
+    /**
+     * 按当前边界把所有浮动图形重新插入四叉树，并恢复对边界变化的跟踪
+     */
+    public void resume() {
+        if (floating.isEmpty()) {
+            return;
+        }
+        for (Entry entry : floating) {
+            entry.bounds = entry.shape.getBoundsInParent();
+            insert(entry);
+            entry.shape.boundsInParentProperty().addListener(entry.listener);
+        }
+        floating.clear();
+        modCount++;
+    }
+
+    /**
+     * 将图形加入索引
+     *
+     * @param shape 图形
+     */
+    private void add(Shape shape) {
+        if (entries.containsKey(shape)) {
+            return;
+        }
+        Entry entry = new Entry(shape, (observable, oldBounds, newBounds) -> update(shape, newBounds));
+        entry.bounds = shape.getBoundsInParent();
+        entry.order = nextOrder++;
+        entries.put(shape, entry);
+        modCount++;
+        insert(entry);
+        shape.boundsInParentProperty().addListener(entry.listener);
+    }
+
+    /**
+     * 将图形移出索引
+     *
+     * @param shape 图形
+     */
+    private void remove(Shape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null) {
+            return;
+        }
+        shape.boundsInParentProperty().removeListener(entry.listener);
+        modCount++;
+        if (entry.node != null) {
+            detachEntry(entry);
+        } else {
+            floating.remove(entry);
+        }
+    }
+
+    /**
+     * 图形边界变化时更新索引
+     *
+     * @param shape     图形
+     * @param newBounds 新的边界
+     */
+    private void update(Shape shape, Bounds newBounds) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            return;
+        }
+        QuadNode node = entry.node;
+        entry.bounds = newBounds;
+        modCount++;
+
+        // 仍在原节点内且不能下沉到子节点时只需更新边界
+        if (node.contains(newBounds) && node.childFor(newBounds) == null) {
+            return;
+        }
+        detachEntry(entry);
+        insert(entry);
+    }
+
+    /**
+     * 插入索引项，必要时扩展根节点
+     */
+    private void insert(Entry entry) {
+        Bounds b = entry.bounds;
+        while (!root.contains(b)) {
+            growRoot(b);
+        }
+
+        QuadNode node = root;
+        while (true) {
+            node.count++;
+            QuadNode child = node.childFor(b);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        node.items.add(entry);
+        entry.node = node;
+
+        if (node.children == null && node.items.size() > MAX_ITEMS_PER_NODE && node.depth < MAX_DEPTH) {
+            split(node);
+        }
+    }
+
+    /**
+     * 从所在节点中移除索引项
+     */
+    private void detachEntry(Entry entry) {
+        QuadNode node = entry.node;
+        node.items.remove(entry);
+        entry.node = null;
+        for (QuadNode n = node; n != null; n = n.parent) {
+            n.count--;
+            // 子树已空时合并子节点
+            if (n.count == 0) {
+                n.children = null;
+            }
+        }
+    }
+
+    /**
+     * 分裂节点，把能放入子节点的图形下沉
+     */
+    private void split(QuadNode node) {
+        double half = node.size / 2;
+        node.children = new QuadNode[] {
+                new QuadNode(node.x, node.y, half, node.depth + 1),
+                new QuadNode(node.x + half, node.y, half, node.depth + 1),
+                new QuadNode(node.x, node.y + half, half, node.depth + 1),
+                new QuadNode(node.x + half, node.y + half, half, node.depth + 1)
+        };
+        for (QuadNode child : node.children) {
+            child.parent = node;
+        }
+
+        List<Entry> remaining = new ArrayList<>();
+        for (Entry entry : node.items) {
+            QuadNode child = node.childFor(entry.bounds);
+            if (child != null) {
+                child.items.add(entry);
+                child.count++;
+                entry.node = child;
+            } else {
+                remaining.add(entry);
+            }
+        }
+        node.items.clear();
+        node.items.addAll(remaining);
+    }
+
+    /**
+     * 扩展根节点，使其向目标边界的方向扩大一倍
+     */
+    private void growRoot(Bounds target) {
+        QuadNode old = root;
+        double size = old.size;
+        boolean growLeft = target.getMinX() < old.x;
+        boolean growUp = target.getMinY() < old.y;
+        double newX = growLeft ? old.x - size : old.x;
+        double newY = growUp ? old.y - size : old.y;
+
+        QuadNode newRoot = new QuadNode(newX, newY, size * 2, 0);
+        newRoot.count = old.count;
+        if (old.count > 0) {
+            // 旧根成为新根的一个象限，其余象限为空
+            newRoot.children = new QuadNode[4];
+            int oldIndex = (growLeft ? 1 : 0) + (growUp ? 2 : 0);
+            for (int i = 0; i < 4; i++) {
+                if (i == oldIndex) {
+                    newRoot.children[i] = old;
+                } else {
+                    newRoot.children[i] = new QuadNode(newX + (i % 2) * size, newY + (i / 2) * size, size, 1);
+                }
+                newRoot.children[i].parent = newRoot;
+            }
+            shiftDepth(old, 1);
+        }
+        root = newRoot;
+    }
+
+    /**
+     * 调整子树中所有节点的深度
+     */
+    private void shiftDepth(QuadNode node, int delta) {
+        node.depth += delta;
+        if (node.children != null) {
+            for (QuadNode child : node.children) {
+                shiftDepth(child, delta);
+            }
+        }
+    }
+
+    /**
+     * 递归收集与查询区域相交的索引项
+     */
+    private void collect(QuadNode node, double minX, double minY, double maxX, double maxY, List<Entry> out) {
+        if (node.count == 0 || !node.intersects(minX, minY, maxX, maxY)) {
+            return;
+        }
+        for (Entry entry : node.items) {
+            Bounds b = entry.bounds;
+            if (b.getMinX() <= maxX && b.getMaxX() >= minX && b.getMinY() <= maxY && b.getMaxY() >= minY) {
+                out.add(entry);
+            }
+        }
+        if (node.children != null) {
+            for (QuadNode child : node.children) {
+                collect(child, minX, minY, maxX, maxY, out);
+            }
+        }
+    }
+
+    /**
+     * 按当前边界收集与查询区域相交的浮动图形
+     */
+    private void collectFloating(double minX, double minY, double maxX, double maxY, List<Entry> out) {
+        for (Entry entry : floating) {
+            Bounds b = entry.shape.getBoundsInParent();
+            entry.bounds = b;
+            if (b.getMinX() <= maxX && b.getMaxX() >= minX && b.getMinY() <= maxY && b.getMaxY() >= minY) {
+                out.add(entry);
+            }
+        }
+    }
+
+    /**
+     * 按Z序排序并转换为图形列表
+     */
+    private List<Shape> toShapes(List<Entry> found) {
+        found.sort(Z_ORDER);
+        List<Shape> shapes = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            shapes.add(entry.shape);
+        }
+        return shapes;
+    }
+
+    /**
+     * 处理容器子节点变化，保持索引和Z序与容器一致
+     *
+     * @param change 子节点变化
+     */
+    private void onChildrenChanged(ListChangeListener.Change<? extends Node> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                reorderRange(change.getList(), change.getFrom(), change.getTo());
+            }
+            if (change.wasRemoved()) {
+                for (Node node : change.getRemoved()) {
+                    if (node instanceof Shape) {
+                        remove((Shape) node);
+                    }
+                }
+            }
+            if (change.wasAdded()) {
+                boolean appended = change.getTo() == change.getList().size();
+                for (Node node : change.getAddedSubList()) {
+                    if (node instanceof Shape) {
+                        add((Shape) node);
+                    }
+                }
+                // 插入到中间时重新分配全部Z序
+                if (!appended) {
+                    reorderAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 重新分配指定范围内图形的Z序，复用该范围原有的Z序值
+     */
+    private void reorderRange(List<? extends Node> children, int from, int to) {
+        List<Entry> range = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Entry entry = entries.get(children.get(i));
+            if (entry != null) {
+                range.add(entry);
+            }
+        }
+        long[] orders = new long[range.size()];
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = range.get(i).order;
+        }
+        Arrays.sort(orders);
+        for (int i = 0; i < orders.length; i++) {
+            range.get(i).order = orders[i];
+        }
+    }
+
+    /**
+     * 按容器子节点顺序重新分配全部Z序
+     */
+    private void reorderAll() {
+        nextOrder = 0;
+        for (Node node : container.getChildren()) {
+            Entry entry = entries.get(node);
+            if (entry != null) {
+                entry.order = nextOrder++;
+            }
+        }
+    }
+}
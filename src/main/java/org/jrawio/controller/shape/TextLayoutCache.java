@@ -0,0 +1,166 @@
+package org.jrawio.controller.shape;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 文本布局缓存（单例，LRU）
+ * 以文本和字体为键缓存测量结果（宽度、高度和分行），文本只在换行符处分行，
+ * 所有测量共用一个Text节点，避免每次绘制都创建Font和Text对象。
+ */
+public class TextLayoutCache {
+
+    /** 缓存的最大条目数 */
+    private static final int MAX_ENTRIES = 1024;
+
+    private static TextLayoutCache instance;
+
+    /**
+     * 文本布局结果
+     */
+    public static class TextLayout {
+        private final double width;
+        private final double height;
+        private final double lineHeight;
+        private final List<String> lines;
+
+        TextLayout(double width, double height, double lineHeight, List<String> lines) {
+            this.width = width;
+            this.height = height;
+            this.lineHeight = lineHeight;
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        /** @return 文本整体宽度 */
+        public double getWidth() {
+            return width;
+        }
+
+        /** @return 文本整体高度 */
+        public double getHeight() {
+            return height;
+        }
+
+        /** @return 单行高度 */
+        public double getLineHeight() {
+            return lineHeight;
+        }
+
+        /** @return 按换行符分开的各行文本 */
+        public List<String> getLines() {
+            return lines;
+        }
+    }
+
+    /**
+     * 缓存键
+     */
+    private static final class Key {
+        private final String text;
+        private final Font font;
+
+        Key(String text, Font font) {
+            this.text = text;
+            this.font = font;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return text.equals(other.text) && Objects.equals(font, other.font);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, font);
+        }
+    }
+
+    /** 按访问顺序排列的缓存，超过上限时淘汰最久未使用的条目 */
+    private final Map<Key, TextLayout> cache = new LinkedHashMap<Key, TextLayout>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, TextLayout> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** 复用的测量节点 */
+    private final Text measureText = new Text();
+
+    private TextLayoutCache() {
+    }
+
+    /**
+     * 获取文本布局缓存实例
+     *
+     * @return 文本布局缓存实例
+     */
+    public static TextLayoutCache getInstance() {
+        if (instance == null) {
+            instance = new TextLayoutCache();
+        }
+        return instance;
+    }
+
+    /**
+     * 获取文本布局，未缓存时测量并缓存
+     *
+     * @param text 文本
+     * @param font 字体
+     * @return 文本布局
+     */
+    public TextLayout getLayout(String text, Font font) {
+        Key key = new Key(text != null ? text : "", font);
+        TextLayout layout = cache.get(key);
+        if (layout == null) {
+            layout = measure(key.text, font);
+            cache.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 测量文本并按换行符分行
+     */
+    private TextLayout measure(String text, Font font) {
+        measureText.setFont(font);
+
+        // 单行高度
+        measureText.setText("Ag");
+        double lineHeight = measureText.getLayoutBounds().getHeight();
+
+        List<String> lines = new ArrayList<>();
+        double maxWidth = 0;
+        for (String paragraph : text.split("\n", -1)) {
+            lines.add(paragraph);
+            maxWidth = Math.max(maxWidth, measureWidth(paragraph));
+        }
+
+        return new TextLayout(maxWidth, lineHeight * lines.size(), lineHeight, lines);
+    }
+
+    private double measureWidth(String text) {
+        measureText.setText(text);
+        return measureText.getLayoutBounds().getWidth();
+    }
+}
@@ -0,0 +1,222 @@
+package org.jrawio.model;
+
+import java.util.Arrays;
+
+/**
+ * 连线邻接索引
+ * 按块状图元ID保存从它出发的连线ID和到达它的连线ID，全部使用基本类型数组：
+ * 度数查询是O(1)，按下标遍历不创建任何对象，删除连线只移动同一图元的少量元素。
+ * 图元ID连续分配，索引表的大小与最大ID成正比。
+ */
+public class AdjacencyIndex {
+
+    /** 初始容量 */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** 每个图元的连线数组的初始长度 */
+    private static final int INITIAL_DEGREE = 4;
+
+    /** 空数组 */
+    private static final int[] EMPTY = new int[0];
+
+    /** 从图元出发的连线ID，按图元ID索引 */
+    private int[][] outgoing = new int[INITIAL_CAPACITY][];
+
+    /** 从图元出发的连线数量 */
+    private int[] outDegrees = new int[INITIAL_CAPACITY];
+
+    /** 到达图元的连线ID，按图元ID索引 */
+    private int[][] incoming = new int[INITIAL_CAPACITY][];
+
+    /** 到达图元的连线数量 */
+    private int[] inDegrees = new int[INITIAL_CAPACITY];
+
+    /**
+     * 登记连线
+     *
+     * @param edgeId   连线ID
+     * @param sourceId 起始端连接的图元ID，没有连接时为{@link DiagramElement#NO_ELEMENT}
+     * @param targetId 结束端连接的图元ID，没有连接时为{@link DiagramElement#NO_ELEMENT}
+     */
+    public void addEdge(int edgeId, int sourceId, int targetId) {
+        if (sourceId >= 0) {
+            ensureCapacity(sourceId);
+            outgoing[sourceId] = append(outgoing[sourceId], outDegrees[sourceId], edgeId);
+            outDegrees[sourceId]++;
+        }
+        if (targetId >= 0) {
+            ensureCapacity(targetId);
+            incoming[targetId] = append(incoming[targetId], inDegrees[targetId], edgeId);
+            inDegrees[targetId]++;
+        }
+    }
+
+    /**
+     * 注销连线
+     *
+     * @param edgeId   连线ID
+     * @param sourceId 登记时的起始端图元ID
+     * @param targetId 登记时的结束端图元ID
+     */
+    public void removeEdge(int edgeId, int sourceId, int targetId) {
+        if (sourceId >= 0 && sourceId < outDegrees.length) {
+            outDegrees[sourceId] = delete(outgoing[sourceId], outDegrees[sourceId], edgeId);
+        }
+        if (targetId >= 0 && targetId < inDegrees.length) {
+            inDegrees[targetId] = delete(incoming[targetId], inDegrees[targetId], edgeId);
+        }
+    }
+
+    /**
+     * 释放图元的连线数组，调用前应已注销连接到它的所有连线
+     *
+     * @param nodeId 图元ID
+     */
+    public void removeNode(int nodeId) {
+        if (nodeId >= 0 && nodeId < outDegrees.length) {
+            outgoing[nodeId] = null;
+            outDegrees[nodeId] = 0;
+            incoming[nodeId] = null;
+            inDegrees[nodeId] = 0;
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        Arrays.fill(outgoing, null);
+        Arrays.fill(outDegrees, 0);
+        Arrays.fill(incoming, null);
+        Arrays.fill(inDegrees, 0);
+    }
+
+    /**
+     * 从图元出发的连线数量
+     *
+     * @param nodeId 图元ID
+     * @return 出度
+     */
+    public int getOutDegree(int nodeId) {
+        return nodeId >= 0 && nodeId < outDegrees.length ? outDegrees[nodeId] : 0;
+    }
+
+    /**
+     * 到达图元的连线数量
+     *
+     * @param nodeId 图元ID
+     * @return 入度
+     */
+    public int getInDegree(int nodeId) {
+        return nodeId >= 0 && nodeId < inDegrees.length ? inDegrees[nodeId] : 0;
+    }
+
+    /**
+     * 连接到图元的连线数量，两端都连接到同一图元的连线计两次
+     *
+     * @param nodeId 图元ID
+     * @return 度数
+     */
+    public int getDegree(int nodeId) {
+        return getOutDegree(nodeId) + getInDegree(nodeId);
+    }
+
+    /**
+     * 获取从图元出发的第index条连线
+     *
+     * @param nodeId 图元ID
+     * @param index  下标，小于{@link #getOutDegree(int)}
+     * @return 连线ID
+     */
+    public int getOutgoing(int nodeId, int index) {
+        if (index < 0 || index >= getOutDegree(nodeId)) {
+            throw new IndexOutOfBoundsException("出边下标越界: " + index);
+        }
+        return outgoing[nodeId][index];
+    }
+
+    /**
+     * 获取到达图元的第index条连线
+     *
+     * @param nodeId 图元ID
+     * @param index  下标，小于{@link #getInDegree(int)}
+     * @return 连线ID
+     */
+    public int getIncoming(int nodeId, int index) {
+        if (index < 0 || index >= getInDegree(nodeId)) {
+            throw new IndexOutOfBoundsException("入边下标越界: " + index);
+        }
+        return incoming[nodeId][index];
+    }
+
+    /**
+     * 复制连接到图元的所有连线ID，用于遍历期间需要修改连接关系的场合
+     *
+     * @param nodeId 图元ID
+     * @return 连线ID数组，先出边后入边，自环连线只出现一次
+     */
+    public int[] getConnectedEdges(int nodeId) {
+        int outDegree = getOutDegree(nodeId);
+        int inDegree = getInDegree(nodeId);
+        if (outDegree + inDegree == 0) {
+            return EMPTY;
+        }
+        int[] result = new int[outDegree + inDegree];
+        int count = 0;
+        for (int i = 0; i < outDegree; i++) {
+            result[count++] = outgoing[nodeId][i];
+        }
+        for (int i = 0; i < inDegree; i++) {
+            int edgeId = incoming[nodeId][i];
+            if (!contains(outgoing[nodeId], outDegree, edgeId)) {
+                result[count++] = edgeId;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private void ensureCapacity(int nodeId) {
+        if (nodeId < outDegrees.length) {
+            return;
+        }
+        int newCapacity = Math.max(nodeId + 1, outDegrees.length * 2);
+        outgoing = Arrays.copyOf(outgoing, newCapacity);
+        outDegrees = Arrays.copyOf(outDegrees, newCapacity);
+        incoming = Arrays.copyOf(incoming, newCapacity);
+        inDegrees = Arrays.copyOf(inDegrees, newCapacity);
+    }
+
+    private static int[] append(int[] edges, int degree, int edgeId) {
+        if (edges == null) {
+            edges = new int[INITIAL_DEGREE];
+        } else if (degree == edges.length) {
+            edges = Arrays.copyOf(edges, degree * 2);
+        }
+        edges[degree] = edgeId;
+        return edges;
+    }
+
+    /**
+     * 删除一条连线并保持其余连线的顺序
+     *
+     * @return 删除后的数量
+     */
+    private static int delete(int[] edges, int degree, int edgeId) {
+        for (int i = 0; i < degree; i++) {
+            if (edges[i] == edgeId) {
+                System.arraycopy(edges, i + 1, edges, i, degree - i - 1);
+                return degree - 1;
+            }
+        }
+        return degree;
+    }
+
+    private static boolean contains(int[] edges, int degree, int edgeId) {
+        for (int i = 0; i < degree; i++) {
+            if (edges[i] == edgeId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
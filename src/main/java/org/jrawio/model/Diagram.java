@@ -0,0 +1,590 @@
+package org.jrawio.model;
+
+import org.jrawio.model.command.BoundsCommand;
+import org.jrawio.model.command.Command;
+import org.jrawio.model.command.CommandStack;
+import org.jrawio.model.command.ConnectCommand;
+import org.jrawio.model.command.CreateCommand;
+import org.jrawio.model.command.DeleteCommand;
+import org.jrawio.model.command.EndpointsCommand;
+import org.jrawio.model.command.StyleCommand;
+import org.jrawio.model.command.TextCommand;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 文档模型
+ * 以纯Java对象保存图表的全部内容：图元的ID、几何、文本、样式以及连线关系，不依赖JavaFX节点。
+ * 加载、批量变换、布局和导出都可以直接在模型上进行，不需要在FX线程上创建场景图节点。
+ * 画布上的Shape节点是模型的投影，通过监听器与模型保持同步。
+ *
+ * 模型本身不做线程同步：未绑定到画布时可以在任意单个线程上使用，
+ * 绑定到画布之后只能在FX线程上修改。需要在其他线程上读取时使用{@link #snapshot()}拍摄不可变快照。
+ */
+public class Diagram {
+
+    /** 图元ID到图元的映射 */
+    private final Map<Integer, DiagramElement> elements = new HashMap<>();
+
+    /** 按叠放顺序排列的图元，撤销删除的图元按原来的叠放顺序放回 */
+    private final TreeMap<Integer, DiagramElement> stacking = new TreeMap<>();
+
+    /** 只读视图 */
+    private final Collection<DiagramElement> elementsView = Collections.unmodifiableCollection(stacking.values());
+
+    /** 列式几何存储，与图元同步维护，供命中测试、范围查询和包围盒计算使用 */
+    private final GeometryStore geometry = new GeometryStore();
+
+    /** 连线邻接索引，按块状图元ID查找连接的连线 */
+    private final AdjacencyIndex adjacency = new AdjacencyIndex();
+
+    /** 模型变化监听器 */
+    private final List<DiagramListener> listeners = new ArrayList<>();
+
+    /** 撤销/重做栈，没有时不记录修改 */
+    private CommandStack commandStack;
+
+    /** 最近一次拍摄快照时发布的图元拷贝，相邻的版本共享未修改的部分 */
+    private PersistentIntMap<DiagramElement> published = PersistentIntMap.empty();
+
+    /** 上次拍摄快照以来修改过的图元ID */
+    private final BitSet dirtyIds = new BitSet();
+
+    /** 最近一次拍摄快照时图元的叠放顺序 */
+    private int[] publishedOrder = new int[0];
+
+    /** 上次拍摄快照以来是否加入或移除过图元，只有此时才需要重新记录叠放顺序 */
+    private boolean orderDirty;
+
+    /** 修改版本号，每次修改加一 */
+    private long version = 0;
+
+    /** 最近一次拍摄的快照，没有修改时直接返回 */
+    private DiagramSnapshot lastSnapshot;
+
+    /** 下一个分配的图元ID */
+    private int nextId = 1;
+
+    /** 下一个分配的叠放顺序 */
+    private int nextZOrder = 0;
+
+    /**
+     * 添加块状图元
+     *
+     * @param type   图形类型
+     * @param x      左上角X坐标
+     * @param y      左上角Y坐标
+     * @param width  宽度
+     * @param height 高度
+     * @return 新图元
+     */
+    public DiagramElement addNode(ShapeType type, double x, double y, double width, double height) {
+        DiagramElement element = new DiagramElement(nextId++, type);
+        if (element.isEdge()) {
+            throw new IllegalArgumentException("连线类型不能作为块状图元添加: " + type);
+        }
+        element.x = x;
+        element.y = y;
+        element.width = width;
+        element.height = height;
+        insert(element);
+        return element;
+    }
+
+    /**
+     * 添加连线
+     *
+     * @param type   图形类型
+     * @param startX 起始点X坐标
+     * @param startY 起始点Y坐标
+     * @param endX   结束点X坐标
+     * @param endY   结束点Y坐标
+     * @return 新图元
+     */
+    public DiagramElement addEdge(ShapeType type, double startX, double startY, double endX, double endY) {
+        DiagramElement element = new DiagramElement(nextId++, type);
+        if (!element.isEdge()) {
+            throw new IllegalArgumentException("块状类型不能作为连线添加: " + type);
+        }
+        applyEndpoints(element, startX, startY, endX, endY);
+        insert(element);
+        return element;
+    }
+
+    /**
+     * 以原有ID重新加入图元，用于撤销删除或重做创建
+     * 图元带有的叠放顺序没有被其他图元占用时回到原来的位置，否则放在最上层；
+     * 传入的图元会被复制，调用方之后对它的修改不影响文档
+     *
+     * @param element 图元
+     * @return 文档中的图元
+     */
+    public DiagramElement add(DiagramElement element) {
+        if (elements.containsKey(element.getId())) {
+            throw new IllegalArgumentException("图元ID已存在: " + element.getId());
+        }
+        DiagramElement copy = element.copy();
+        nextId = Math.max(nextId, copy.getId() + 1);
+        insert(copy);
+        return copy;
+    }
+
+    /**
+     * 用一组图元替换文档的全部内容，用于打开文件
+     * 不逐个发出加入通知，完成后发出一次{@link DiagramListener#diagramReloaded()}；
+     * 加载不能撤销，撤销/重做栈被清空。连线连接的图元不存在时该端视为没有连接。
+     *
+     * @param loaded 图元，按此顺序加入，传入的图元会被复制
+     */
+    public void load(Collection<DiagramElement> loaded) {
+        List<DiagramElement> copies = new ArrayList<>(loaded.size());
+        for (DiagramElement element : loaded) {
+            copies.add(element.copy());
+        }
+        loadOwned(copies);
+    }
+
+    /**
+     * 用一组新创建的图元替换文档的全部内容，图元直接归文档所有，不再复制
+     *
+     * @param loaded 图元，按此顺序加入
+     */
+    void loadOwned(Collection<DiagramElement> loaded) {
+        Map<Integer, DiagramElement> byId = new LinkedHashMap<>();
+        for (DiagramElement element : loaded) {
+            if (byId.put(element.getId(), element) != null) {
+                throw new IllegalArgumentException("图元ID重复: " + element.getId());
+            }
+        }
+
+        elements.clear();
+        stacking.clear();
+        geometry.clear();
+        adjacency.clear();
+        published = PersistentIntMap.empty();
+        lastSnapshot = null;
+        dirtyIds.clear();
+        orderDirty = true;
+        nextId = 1;
+        nextZOrder = 0;
+        for (DiagramElement element : byId.values()) {
+            int id = element.getId();
+            if (element.isEdge()) {
+                element.sourceId = isNode(byId, element.sourceId) ? element.sourceId : DiagramElement.NO_ELEMENT;
+                element.targetId = isNode(byId, element.targetId) ? element.targetId : DiagramElement.NO_ELEMENT;
+                adjacency.addEdge(id, element.sourceId, element.targetId);
+            }
+            element.zOrder = nextZOrder++;
+            elements.put(id, element);
+            stacking.put(element.zOrder, element);
+            geometry.put(id, element.zOrder, element.getType(), element.x, element.y, element.width, element.height,
+                    element.style);
+            dirtyIds.set(id);
+            nextId = Math.max(nextId, id + 1);
+        }
+        version++;
+
+        if (commandStack != null) {
+            commandStack.clear();
+        }
+        for (DiagramListener listener : new ArrayList<>(listeners)) {
+            listener.diagramReloaded();
+        }
+    }
+
+    /**
+     * 移除图元
+     * 移除块状图元时，连接到它的连线在该端断开连接
+     *
+     * @param id 图元ID
+     * @return 被移除的图元，不存在时返回null
+     */
+    public DiagramElement remove(int id) {
+        DiagramElement element = elements.get(id);
+        if (element == null) {
+            return null;
+        }
+        if (element.isEdge()) {
+            adjacency.removeEdge(id, element.sourceId, element.targetId);
+        } else {
+            for (int edgeId : adjacency.getConnectedEdges(id)) {
+                DiagramElement edge = elements.get(edgeId);
+                connect(edgeId,
+                        edge.sourceId == id ? DiagramElement.NO_ELEMENT : edge.sourceId,
+                        edge.targetId == id ? DiagramElement.NO_ELEMENT : edge.targetId);
+            }
+            adjacency.removeNode(id);
+        }
+        elements.remove(id);
+        stacking.remove(element.zOrder);
+        geometry.remove(id);
+        markDirty(id);
+        orderDirty = true;
+        if (isRecording()) {
+            record(new DeleteCommand(element));
+        }
+        for (DiagramListener listener : new ArrayList<>(listeners)) {
+            listener.elementRemoved(element);
+        }
+        return element;
+    }
+
+    /**
+     * 获取图元
+     *
+     * @param id 图元ID
+     * @return 图元，不存在时返回null
+     */
+    public DiagramElement get(int id) {
+        return elements.get(id);
+    }
+
+    /**
+     * 是否包含图元
+     *
+     * @param id 图元ID
+     * @return true如果包含
+     */
+    public boolean contains(int id) {
+        return elements.containsKey(id);
+    }
+
+    /**
+     * 获取所有图元
+     *
+     * @return 图元的只读视图，按叠放顺序从下到上排列
+     */
+    public Collection<DiagramElement> getElements() {
+        return elementsView;
+    }
+
+    /**
+     * 图元数量
+     *
+     * @return 图元数量
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * 获取列式几何存储
+     * 存储由文档维护，调用方只能读取
+     *
+     * @return 几何存储
+     */
+    public GeometryStore getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * 获取连线邻接索引
+     * 索引由文档维护，调用方只能读取，图算法可以直接按下标遍历
+     *
+     * @return 邻接索引
+     */
+    public AdjacencyIndex getAdjacency() {
+        return adjacency;
+    }
+
+    /**
+     * 获取连接到块状图元的所有连线
+     *
+     * @param nodeId 块状图元ID
+     * @return 连线列表
+     */
+    public List<DiagramElement> getConnectedEdges(int nodeId) {
+        int[] edgeIds = adjacency.getConnectedEdges(nodeId);
+        List<DiagramElement> result = new ArrayList<>(edgeIds.length);
+        for (int edgeId : edgeIds) {
+            result.add(elements.get(edgeId));
+        }
+        return result;
+    }
+
+    /**
+     * 设置块状图元的位置和尺寸
+     *
+     * @param id     图元ID
+     * @param x      左上角X坐标
+     * @param y      左上角Y坐标
+     * @param width  宽度
+     * @param height 高度
+     */
+    public void setBounds(int id, double x, double y, double width, double height) {
+        DiagramElement element = require(id);
+        if (element.isEdge()) {
+            throw new IllegalArgumentException("连线的范围由端点决定: " + id);
+        }
+        if (element.x == x && element.y == y && element.width == width && element.height == height) {
+            return;
+        }
+        if (isRecording()) {
+            record(new BoundsCommand(id, element.x, element.y, element.width, element.height, x, y, width, height));
+        }
+        element.x = x;
+        element.y = y;
+        element.width = width;
+        element.height = height;
+        geometry.setBounds(id, x, y, width, height);
+        fireChanged(element, DiagramProperty.BOUNDS);
+    }
+
+    /**
+     * 平移图元，连线平移两个端点
+     *
+     * @param id      图元ID
+     * @param offsetX X方向位移
+     * @param offsetY Y方向位移
+     */
+    public void moveBy(int id, double offsetX, double offsetY) {
+        DiagramElement element = require(id);
+        if (element.isEdge()) {
+            setEndpoints(id, element.startX + offsetX, element.startY + offsetY,
+                    element.endX + offsetX, element.endY + offsetY);
+        } else {
+            setBounds(id, element.x + offsetX, element.y + offsetY, element.width, element.height);
+        }
+    }
+
+    /**
+     * 设置连线两端的坐标
+     *
+     * @param id     连线ID
+     * @param startX 起始点X坐标
+     * @param startY 起始点Y坐标
+     * @param endX   结束点X坐标
+     * @param endY   结束点Y坐标
+     */
+    public void setEndpoints(int id, double startX, double startY, double endX, double endY) {
+        DiagramElement element = require(id);
+        if (!element.isEdge()) {
+            throw new IllegalArgumentException("块状图元没有端点: " + id);
+        }
+        if (element.startX == startX && element.startY == startY
+                && element.endX == endX && element.endY == endY) {
+            return;
+        }
+        if (isRecording()) {
+            record(new EndpointsCommand(id, element.startX, element.startY, element.endX, element.endY,
+                    startX, startY, endX, endY));
+        }
+        applyEndpoints(element, startX, startY, endX, endY);
+        geometry.setBounds(id, element.x, element.y, element.width, element.height);
+        fireChanged(element, DiagramProperty.ENDPOINTS);
+    }
+
+    /**
+     * 设置图元文本
+     *
+     * @param id   图元ID
+     * @param text 文本
+     */
+    public void setText(int id, String text) {
+        DiagramElement element = require(id);
+        if (Objects.equals(element.text, text)) {
+            return;
+        }
+        if (isRecording()) {
+            record(new TextCommand(id, element.text, text));
+        }
+        element.text = text;
+        fireChanged(element, DiagramProperty.TEXT);
+    }
+
+    /**
+     * 设置图元样式
+     *
+     * @param id    图元ID
+     * @param style 样式
+     */
+    public void setStyle(int id, ShapeStyle style) {
+        DiagramElement element = require(id);
+        if (style == null || style.equals(element.style)) {
+            return;
+        }
+        if (isRecording()) {
+            record(new StyleCommand(id, element.style, style));
+        }
+        element.style = style;
+        geometry.setStyle(id, style);
+        fireChanged(element, DiagramProperty.STYLE);
+    }
+
+    /**
+     * 设置连线连接的图元
+     *
+     * @param edgeId   连线ID
+     * @param sourceId 起始端连接的图元ID，没有连接时为{@link DiagramElement#NO_ELEMENT}
+     * @param targetId 结束端连接的图元ID，没有连接时为{@link DiagramElement#NO_ELEMENT}
+     */
+    public void connect(int edgeId, int sourceId, int targetId) {
+        DiagramElement edge = require(edgeId);
+        if (!edge.isEdge()) {
+            throw new IllegalArgumentException("只有连线可以连接图元: " + edgeId);
+        }
+        if (edge.sourceId == sourceId && edge.targetId == targetId) {
+            return;
+        }
+        if (isRecording()) {
+            record(new ConnectCommand(edgeId, edge.sourceId, edge.targetId, sourceId, targetId));
+        }
+        adjacency.removeEdge(edgeId, edge.sourceId, edge.targetId);
+        edge.sourceId = sourceId;
+        edge.targetId = targetId;
+        adjacency.addEdge(edgeId, sourceId, targetId);
+        fireChanged(edge, DiagramProperty.CONNECTION);
+    }
+
+    /**
+     * 拍摄文档的不可变快照
+     * 只复制上次拍摄以来修改过的图元，其余部分与上一个快照共享，没有修改时返回上一个快照；
+     * 叠放顺序只在加入或移除过图元后重新记录，拖动、编辑文本等修改不需要遍历全部图元
+     *
+     * @return 快照
+     */
+    public DiagramSnapshot snapshot() {
+        if (lastSnapshot != null && dirtyIds.isEmpty()) {
+            return lastSnapshot;
+        }
+        for (int id = dirtyIds.nextSetBit(0); id >= 0; id = dirtyIds.nextSetBit(id + 1)) {
+            DiagramElement element = elements.get(id);
+            published = element != null ? published.put(id, element.copy()) : published.remove(id);
+        }
+        dirtyIds.clear();
+        if (orderDirty) {
+            int[] order = new int[elements.size()];
+            int i = 0;
+            for (DiagramElement element : stacking.values()) {
+                order[i++] = element.getId();
+            }
+            publishedOrder = order;
+            orderDirty = false;
+        }
+        lastSnapshot = new DiagramSnapshot(published, publishedOrder, version);
+        return lastSnapshot;
+    }
+
+    /**
+     * 获取修改版本号，每次修改加一
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 设置撤销/重做栈，之后的修改记录到此栈
+     * 由{@link CommandStack}的构造函数调用
+     *
+     * @param commandStack 撤销/重做栈，为null时不再记录
+     */
+    public void setCommandStack(CommandStack commandStack) {
+        this.commandStack = commandStack;
+    }
+
+    /**
+     * 获取撤销/重做栈
+     *
+     * @return 撤销/重做栈，没有时返回null
+     */
+    public CommandStack getCommandStack() {
+        return commandStack;
+    }
+
+    /**
+     * 添加模型变化监听器
+     *
+     * @param listener 监听器
+     */
+    public void addListener(DiagramListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 移除模型变化监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeListener(DiagramListener listener) {
+        listeners.remove(listener);
+    }
+
+    private DiagramElement require(int id) {
+        DiagramElement element = elements.get(id);
+        if (element == null) {
+            throw new IllegalArgumentException("图元不存在: " + id);
+        }
+        return element;
+    }
+
+    private static boolean isNode(Map<Integer, DiagramElement> elements, int id) {
+        DiagramElement element = elements.get(id);
+        return element != null && !element.isEdge();
+    }
+
+    private boolean isRecording() {
+        return commandStack != null && commandStack.isRecording();
+    }
+
+    private void record(Command command) {
+        commandStack.record(command);
+    }
+
+    private void markDirty(int id) {
+        dirtyIds.set(id);
+        version++;
+    }
+
+    private void insert(DiagramElement element) {
+        if (element.zOrder < 0 || stacking.containsKey(element.zOrder)) {
+            element.zOrder = nextZOrder++;
+        } else {
+            nextZOrder = Math.max(nextZOrder, element.zOrder + 1);
+        }
+        elements.put(element.getId(), element);
+        stacking.put(element.zOrder, element);
+        markDirty(element.getId());
+        orderDirty = true;
+        if (isRecording()) {
+            record(new CreateCommand(element));
+        }
+        geometry.put(element.getId(), element.zOrder, element.getType(), element.x, element.y,
+                element.width, element.height, element.style);
+        if (element.isEdge()) {
+            adjacency.addEdge(element.getId(), element.sourceId, element.targetId);
+        }
+        for (DiagramListener listener : new ArrayList<>(listeners)) {
+            listener.elementAdded(element);
+        }
+    }
+
+    private static void applyEndpoints(DiagramElement element, double startX, double startY,
+            double endX, double endY) {
+        element.startX = startX;
+        element.startY = startY;
+        element.endX = endX;
+        element.endY = endY;
+        element.x = Math.min(startX, endX);
+        element.y = Math.min(startY, endY);
+        element.width = Math.abs(endX - startX);
+        element.height = Math.abs(endY - startY);
+    }
+
+    private void fireChanged(DiagramElement element, DiagramProperty property) {
+        markDirty(element.getId());
+        for (DiagramListener listener : new ArrayList<>(listeners)) {
+            listener.elementChanged(element, property);
+        }
+    }
+}
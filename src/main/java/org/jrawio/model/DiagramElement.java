@@ -0,0 +1,268 @@
+package org.jrawio.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 文档中的一个图元
+ * 图元分为块状图元（矩形、椭圆、菱形等）和连线（箭头），
+ * 连线记录两端的坐标以及连接的块状图元ID。
+ * 所有坐标都是画布容器坐标。图元只能通过{@link Diagram}修改，修改时发出变化通知。
+ */
+public final class DiagramElement {
+
+    /** 表示连线的一端没有连接图元 */
+    public static final int NO_ELEMENT = -1;
+
+    /** 文档内唯一且不变的ID */
+    private final int id;
+
+    /** 图形类型 */
+    private final ShapeType type;
+
+    /** 是否是连线 */
+    private final boolean edge;
+
+    /** 位置和尺寸，连线为两端点的包围盒 */
+    double x;
+    double y;
+    double width;
+    double height;
+
+    /** 文本 */
+    String text;
+
+    /** 样式 */
+    ShapeStyle style = ShapeStyle.DEFAULT;
+
+    /** 连线两端的坐标 */
+    double startX;
+    double startY;
+    double endX;
+    double endY;
+
+    /** 连线连接的图元ID */
+    int sourceId = NO_ELEMENT;
+    int targetId = NO_ELEMENT;
+
+    /**
+     * 在文档中的叠放顺序，数值越大越靠上，加入文档时分配，没有分配时为{@link #NO_ELEMENT}
+     * 被删除的图元保留此值，撤销删除时回到原来的位置
+     */
+    int zOrder = NO_ELEMENT;
+
+    /**
+     * 构造函数
+     *
+     * @param id   图元ID
+     * @param type 图形类型
+     */
+    DiagramElement(int id, ShapeType type) {
+        this.id = id;
+        this.type = type;
+        this.edge = isEdgeType(type);
+    }
+
+    /**
+     * 图形类型是否表示连线
+     *
+     * @param type 图形类型
+     * @return true如果是连线类型
+     */
+    public static boolean isEdgeType(ShapeType type) {
+        return type == ShapeType.ARROW;
+    }
+
+    /**
+     * 复制图元，ID保持不变
+     *
+     * @return 图元的拷贝
+     */
+    public DiagramElement copy() {
+        DiagramElement copy = new DiagramElement(id, type);
+        copy.x = x;
+        copy.y = y;
+        copy.width = width;
+        copy.height = height;
+        copy.text = text;
+        copy.style = style;
+        copy.startX = startX;
+        copy.startY = startY;
+        copy.endX = endX;
+        copy.endY = endY;
+        copy.sourceId = sourceId;
+        copy.targetId = targetId;
+        copy.zOrder = zOrder;
+        return copy;
+    }
+
+    /**
+     * 把图元写入二进制流
+     *
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(id);
+        out.writeByte(type.ordinal());
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(width);
+        out.writeDouble(height);
+        writeText(text, out);
+        ShapeStyle.write(style, out);
+        out.writeDouble(startX);
+        out.writeDouble(startY);
+        out.writeDouble(endX);
+        out.writeDouble(endY);
+        out.writeInt(sourceId);
+        out.writeInt(targetId);
+        out.writeInt(zOrder);
+    }
+
+    /**
+     * 从二进制流读取{@link #writeTo(DataOutput)}写入的图元
+     *
+     * @param in 输入流
+     * @return 图元
+     * @throws IOException 读取失败或数据无效
+     */
+    public static DiagramElement readFrom(DataInput in) throws IOException {
+        int id = in.readInt();
+        int typeIndex = in.readUnsignedByte();
+        ShapeType[] types = ShapeType.values();
+        if (typeIndex >= types.length) {
+            throw new IOException("无效的图形类型: " + typeIndex);
+        }
+        DiagramElement element = new DiagramElement(id, types[typeIndex]);
+        element.x = in.readDouble();
+        element.y = in.readDouble();
+        element.width = in.readDouble();
+        element.height = in.readDouble();
+        element.text = readText(in);
+        element.style = ShapeStyle.read(in);
+        element.startX = in.readDouble();
+        element.startY = in.readDouble();
+        element.endX = in.readDouble();
+        element.endY = in.readDouble();
+        element.sourceId = in.readInt();
+        element.targetId = in.readInt();
+        element.zOrder = in.readInt();
+        return element;
+    }
+
+    /**
+     * 把文本写入二进制流
+     * 写入UTF-8字节数和字节，不受{@link DataOutput#writeUTF(String)}的65535字节限制
+     *
+     * @param text 文本，可以为null
+     * @param out  输出流
+     * @throws IOException 写入失败
+     */
+    public static void writeText(String text, DataOutput out) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 从二进制流读取{@link #writeText(String, DataOutput)}写入的文本
+     *
+     * @param in 输入流
+     * @return 文本，写入时为null则返回null
+     * @throws IOException 读取失败或数据无效
+     */
+    public static String readText(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            if (length != -1) {
+                throw new IOException("无效的文本长度: " + length);
+            }
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public ShapeType getType() {
+        return type;
+    }
+
+    public boolean isEdge() {
+        return edge;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public ShapeStyle getStyle() {
+        return style;
+    }
+
+    public double getStartX() {
+        return startX;
+    }
+
+    public double getStartY() {
+        return startY;
+    }
+
+    public double getEndX() {
+        return endX;
+    }
+
+    public double getEndY() {
+        return endY;
+    }
+
+    public int getSourceId() {
+        return sourceId;
+    }
+
+    public int getTargetId() {
+        return targetId;
+    }
+
+    /**
+     * 在文档中的叠放顺序，数值越大越靠上
+     *
+     * @return 叠放顺序，没有加入过文档时为{@link #NO_ELEMENT}
+     */
+    public int getZOrder() {
+        return zOrder;
+    }
+
+    @Override
+    public String toString() {
+        return "DiagramElement[id=" + id + ", type=" + type + ", x=" + x + ", y=" + y
+                + ", width=" + width + ", height=" + height + "]";
+    }
+}
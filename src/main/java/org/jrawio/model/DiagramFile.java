@@ -0,0 +1,477 @@
+package org.jrawio.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jrawio二进制文件
+ * 文件由以下几段组成，所有整数按大端序保存：
+ * <pre>
+ * 文件头     魔数、格式版本、各段的数量和偏移
+ * 样式表     去重后的样式，每条固定20字节
+ * 图元表     每条固定28字节：ID、类型、样式索引、文本索引、坐标偏移、两端连接的图元ID
+ * 字符串表   去重后的文本，先是偏移数组，后是UTF-8字节
+ * 坐标流     变长编码的坐标
+ * </pre>
+ * 图元表按文档的叠放顺序保存块状图元和连线，读取后的顺序与保存时相同。
+ * 块状图元的坐标是左上角和大小，连线的坐标是起始点和结束点。
+ * 坐标按0.01精度转为整数后与上一条记录的对应坐标相减，差值以zigzag变长整数保存，
+ * 连线的结束点相对于自身的起始点；不能精确表示为0.01倍数的坐标原样保存8字节。
+ *
+ * 文档模型在内存中保存全部图元，{@link #load(Path, Diagram)}把文件一次读入堆内存后解码，读取完成后不再占用文件。
+ * 读取不是线程安全的，一个实例只能在单个线程上使用。
+ */
+public final class DiagramFile {
+
+    /** 文件扩展名 */
+    public static final String EXTENSION = ".jrawio";
+
+    /** 魔数 "JRAW" */
+    private static final int MAGIC = 0x4A524157;
+
+    /** 格式版本 */
+    private static final int FORMAT_VERSION = 1;
+
+    /** 文件头长度 */
+    private static final int HEADER_SIZE = 40;
+
+    /** 样式记录长度：填充、边框、线条颜色和线宽 */
+    private static final int STYLE_RECORD_SIZE = 20;
+
+    /** 图元记录长度 */
+    private static final int ELEMENT_RECORD_SIZE = 28;
+
+    /** 文件中的ID不超过图元数量的此倍数时原样保留，否则重新编号 */
+    private static final int MAX_ID_RATIO = 2;
+
+    /** 图元较少时允许的最大ID，保存前删除过图元的小文档不必重新编号 */
+    private static final int MIN_ID_LIMIT = 1024;
+
+    /** 坐标转为整数时的倍数 */
+    private static final double SCALE = 100;
+
+    /** 超过此绝对值的坐标原样保存 */
+    private static final double MAX_SCALED = 1e12;
+
+    /** 表示图元没有文本 */
+    private static final int NO_TEXT = -1;
+
+    /** 坐标原样保存的标记 */
+    private static final int RAW_COORDINATE = 1;
+
+    private static final ShapeType[] TYPES = ShapeType.values();
+
+    /** 文件内容 */
+    private final ByteBuffer buffer;
+
+    private final int elementCount;
+    private final int elementsOffset;
+    private final int coordsOffset;
+
+    /** 样式表 */
+    private final ShapeStyle[] styles;
+
+    /** 字符串表 */
+    private final String[] strings;
+
+    /** 坐标流的读取位置 */
+    private int position;
+
+    private DiagramFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是jrawio文件");
+        }
+        int version = buffer.getShort(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的文件版本: " + version);
+        }
+        elementCount = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        int styleCount = buffer.getInt(16);
+        int stylesOffset = buffer.getInt(20);
+        elementsOffset = buffer.getInt(24);
+        int stringsOffset = buffer.getInt(28);
+        coordsOffset = buffer.getInt(32);
+        if (buffer.getInt(36) != buffer.capacity()) {
+            throw new IOException("文件长度不正确，文件可能不完整");
+        }
+        checkSection(stylesOffset, styleCount, STYLE_RECORD_SIZE);
+        checkSection(elementsOffset, elementCount, ELEMENT_RECORD_SIZE);
+        checkSection(stringsOffset, stringCount + 1, Integer.BYTES);
+        checkSection(coordsOffset, 0, 0);
+
+        styles = new ShapeStyle[styleCount];
+        for (int i = 0; i < styleCount; i++) {
+            int offset = stylesOffset + i * STYLE_RECORD_SIZE;
+            ShapeStyle style = new ShapeStyle(buffer.getInt(offset), buffer.getInt(offset + 4),
+                    buffer.getInt(offset + 8), buffer.getDouble(offset + 12));
+            styles[i] = ShapeStyle.DEFAULT.equals(style) ? ShapeStyle.DEFAULT : style;
+        }
+
+        strings = new String[stringCount];
+        int dataOffset = stringsOffset + (stringCount + 1) * Integer.BYTES;
+        for (int i = 0; i < stringCount; i++) {
+            int start = buffer.getInt(stringsOffset + i * Integer.BYTES);
+            int end = buffer.getInt(stringsOffset + (i + 1) * Integer.BYTES);
+            if (start < 0 || end < start || (long) dataOffset + end > coordsOffset) {
+                throw new IOException("文件格式错误: 无效的文本 " + i);
+            }
+            byte[] bytes = new byte[end - start];
+            buffer.get(dataOffset + start, bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 从内存中的文件内容读取
+     *
+     * @param data 文件内容
+     * @return 文件
+     * @throws IOException 文件格式错误
+     */
+    public static DiagramFile wrap(byte[] data) throws IOException {
+        return new DiagramFile(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * 图元总数
+     *
+     * @return 图元总数
+     */
+    public int size() {
+        return elementCount;
+    }
+
+    /**
+     * 按保存时的顺序读取所有图元
+     * 图元保留文件中的ID。文档按ID分配数组，而文件中的ID可能被改成任意大的值，
+     * 因此有ID超过图元数量的{@link #MAX_ID_RATIO}倍和{@link #MIN_ID_LIMIT}时按读取顺序重新编号为1到{@link #size()}，
+     * 连线两端连接的ID随之转换
+     *
+     * @return 图元列表
+     * @throws IOException 文件格式错误
+     */
+    public List<DiagramElement> readAll() throws IOException {
+        long idLimit = Math.max((long) elementCount * MAX_ID_RATIO, MIN_ID_LIMIT);
+        boolean renumber = false;
+        Map<Integer, Integer> ids = new HashMap<>();
+        for (int i = 0; i < elementCount; i++) {
+            int fileId = buffer.getInt(elementsOffset + i * ELEMENT_RECORD_SIZE);
+            if (fileId < 0 || ids.putIfAbsent(fileId, ids.size() + 1) != null) {
+                throw new IOException("文件格式错误: 无效或重复的图元ID " + fileId);
+            }
+            renumber |= fileId > idLimit;
+        }
+
+        List<DiagramElement> elements = new ArrayList<>(elementCount);
+        long[] bases = new long[4];
+        for (int i = 0; i < elementCount; i++) {
+            elements.add(readRecord(i, bases, ids, renumber));
+        }
+        return elements;
+    }
+
+    /**
+     * 把文件中的ID转换为文档中的ID，连线连接的图元不存在时视为没有连接
+     *
+     * @param ids      文件ID到按读取顺序重新编号的ID的映射
+     * @param renumber 是否重新编号
+     */
+    private static int mapId(Map<Integer, Integer> ids, boolean renumber, int fileId) {
+        Integer id = ids.get(fileId);
+        if (id == null) {
+            return DiagramElement.NO_ELEMENT;
+        }
+        return renumber ? id : fileId;
+    }
+
+    /**
+     * 把文件内容加载到文档，替换文档原有的内容
+     * 需要读取全部内容，因此把文件读入堆内存而不是映射，加载完成后文件不再被占用，可以立即保存回同一个文件
+     *
+     * @param path    文件路径
+     * @param diagram 文档
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public static void load(Path path, Diagram diagram) throws IOException {
+        diagram.loadOwned(wrap(Files.readAllBytes(path)).readAll());
+    }
+
+    // ---------------------------------------------------------------
+    // 读取
+    // ---------------------------------------------------------------
+
+    private DiagramElement readRecord(int index, long[] bases, Map<Integer, Integer> ids, boolean renumber)
+            throws IOException {
+        int offset = elementsOffset + index * ELEMENT_RECORD_SIZE;
+        int typeIndex = buffer.get(offset + 4) & 0xFF;
+        if (typeIndex >= TYPES.length) {
+            throw new IOException("文件格式错误: 无效的图元记录 " + buffer.getInt(offset));
+        }
+        DiagramElement element = new DiagramElement(mapId(ids, renumber, buffer.getInt(offset)), TYPES[typeIndex]);
+        int styleIndex = buffer.getInt(offset + 8);
+        if (styleIndex < 0 || styleIndex >= styles.length) {
+            throw new IOException("文件格式错误: 无效的样式索引 " + styleIndex);
+        }
+        element.style = styles[styleIndex];
+        int textIndex = buffer.getInt(offset + 12);
+        if (textIndex != NO_TEXT && (textIndex < 0 || textIndex >= strings.length)) {
+            throw new IOException("文件格式错误: 无效的文本索引 " + textIndex);
+        }
+        element.text = textIndex != NO_TEXT ? strings[textIndex] : null;
+
+        position = coordsOffset + buffer.getInt(offset + 16);
+        if (element.isEdge()) {
+            element.startX = readCoordinate(bases, 0);
+            element.startY = readCoordinate(bases, 1);
+            long[] startBases = { bases[0], bases[1] };
+            element.endX = readCoordinate(startBases, 0);
+            element.endY = readCoordinate(startBases, 1);
+            element.x = Math.min(element.startX, element.endX);
+            element.y = Math.min(element.startY, element.endY);
+            element.width = Math.abs(element.endX - element.startX);
+            element.height = Math.abs(element.endY - element.startY);
+            element.sourceId = mapId(ids, renumber, buffer.getInt(offset + 20));
+            element.targetId = mapId(ids, renumber, buffer.getInt(offset + 24));
+        } else {
+            element.x = readCoordinate(bases, 0);
+            element.y = readCoordinate(bases, 1);
+            element.width = readCoordinate(bases, 2);
+            element.height = readCoordinate(bases, 3);
+        }
+        return element;
+    }
+
+    /**
+     * 从坐标流读取一个坐标
+     *
+     * @param bases 差值的基准，读取后更新
+     * @param slot  基准下标
+     */
+    private double readCoordinate(long[] bases, int slot) throws IOException {
+        long code = readVarint();
+        if (code == RAW_COORDINATE) {
+            if (position + Long.BYTES > buffer.capacity()) {
+                throw new IOException("文件格式错误: 坐标数据不完整");
+            }
+            double value = buffer.getDouble(position);
+            position += Long.BYTES;
+            return value;
+        }
+        long delta = code >>> 1;
+        bases[slot] += (delta >>> 1) ^ -(delta & 1);
+        return bases[slot] / SCALE;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (position >= buffer.capacity()) {
+                throw new IOException("文件格式错误: 坐标数据不完整");
+            }
+            byte b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("文件格式错误: 无效的变长整数");
+    }
+
+    private void checkSection(int offset, int count, int recordSize) throws IOException {
+        if (count < 0 || offset < HEADER_SIZE || (long) offset + (long) count * recordSize > buffer.capacity()) {
+            throw new IOException("文件格式错误: 数据段越界");
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 写入
+    // ---------------------------------------------------------------
+
+    /**
+     * 把图元保存到文件
+     * 先写入同目录下的临时文件，完成后替换目标文件，保存失败时原文件不受影响
+     *
+     * @param elements 图元，按此顺序保存
+     * @param path     文件路径
+     * @throws IOException 写入失败
+     */
+    public static void save(Collection<DiagramElement> elements, Path path) throws IOException {
+        byte[] data = encode(elements);
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer source = ByteBuffer.wrap(data);
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                channel.force(false);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 把图元编码为文件内容
+     *
+     * @param elements 图元，按此顺序保存
+     * @return 文件内容
+     */
+    public static byte[] encode(Collection<DiagramElement> elements) {
+        Map<ShapeStyle, Integer> styleIndex = new HashMap<>();
+        List<ShapeStyle> styleTable = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<byte[]> stringTable = new ArrayList<>();
+        int stringBytes = 0;
+        for (DiagramElement element : elements) {
+            ShapeStyle style = element.style != null ? element.style : ShapeStyle.DEFAULT;
+            if (!styleIndex.containsKey(style)) {
+                styleIndex.put(style, styleTable.size());
+                styleTable.add(style);
+            }
+            if (element.text != null && !stringIndex.containsKey(element.text)) {
+                byte[] bytes = element.text.getBytes(StandardCharsets.UTF_8);
+                stringIndex.put(element.text, stringTable.size());
+                stringTable.add(bytes);
+                stringBytes += bytes.length;
+            }
+        }
+
+        // 坐标流
+        CoordinateWriter coords = new CoordinateWriter();
+        int[] coordOffsets = new int[elements.size()];
+        long[] bases = new long[4];
+        int index = 0;
+        for (DiagramElement element : elements) {
+            coordOffsets[index++] = coords.size();
+            if (element.isEdge()) {
+                coords.write(element.startX, bases, 0);
+                coords.write(element.startY, bases, 1);
+                long[] startBases = { bases[0], bases[1] };
+                coords.write(element.endX, startBases, 0);
+                coords.write(element.endY, startBases, 1);
+            } else {
+                coords.write(element.x, bases, 0);
+                coords.write(element.y, bases, 1);
+                coords.write(element.width, bases, 2);
+                coords.write(element.height, bases, 3);
+            }
+        }
+
+        int stylesOffset = HEADER_SIZE;
+        int elementsOffset = stylesOffset + styleTable.size() * STYLE_RECORD_SIZE;
+        int stringsOffset = elementsOffset + elements.size() * ELEMENT_RECORD_SIZE;
+        int coordsOffset = stringsOffset + (stringTable.size() + 1) * Integer.BYTES + stringBytes;
+        int length = coordsOffset + coords.size();
+        ByteBuffer out = ByteBuffer.allocate(length);
+
+        out.putInt(MAGIC);
+        out.putShort((short) FORMAT_VERSION);
+        out.putShort((short) 0);
+        out.putInt(elements.size());
+        out.putInt(stringTable.size());
+        out.putInt(styleTable.size());
+        out.putInt(stylesOffset);
+        out.putInt(elementsOffset);
+        out.putInt(stringsOffset);
+        out.putInt(coordsOffset);
+        out.putInt(length);
+
+        for (ShapeStyle style : styleTable) {
+            out.putInt(style.getFillColor());
+            out.putInt(style.getStrokeColor());
+            out.putInt(style.getLineColor());
+            out.putDouble(style.getLineWidth());
+        }
+        index = 0;
+        for (DiagramElement element : elements) {
+            out.putInt(element.getId());
+            out.put((byte) element.getType().ordinal());
+            out.put((byte) 0);
+            out.putShort((short) 0);
+            out.putInt(styleIndex.get(element.style != null ? element.style : ShapeStyle.DEFAULT));
+            out.putInt(element.text != null ? stringIndex.get(element.text) : NO_TEXT);
+            out.putInt(coordOffsets[index++]);
+            out.putInt(element.isEdge() ? element.sourceId : DiagramElement.NO_ELEMENT);
+            out.putInt(element.isEdge() ? element.targetId : DiagramElement.NO_ELEMENT);
+        }
+        int stringOffset = 0;
+        for (byte[] bytes : stringTable) {
+            out.putInt(stringOffset);
+            stringOffset += bytes.length;
+        }
+        out.putInt(stringOffset);
+        for (byte[] bytes : stringTable) {
+            out.put(bytes);
+        }
+        coords.writeTo(out);
+        return out.array();
+    }
+
+    /**
+     * 坐标流的编码
+     */
+    private static final class CoordinateWriter extends ByteArrayOutputStream {
+
+        CoordinateWriter() {
+            super(1024);
+        }
+
+        /**
+         * 写入一个坐标
+         *
+         * @param value 坐标
+         * @param bases 差值的基准，写入后更新
+         * @param slot  基准下标
+         */
+        void write(double value, long[] bases, int slot) {
+            long scaled = Math.round(value * SCALE);
+            // 按位比较，-0.0和NaN原样保存
+            if (Math.abs(value * SCALE) < MAX_SCALED
+                    && Double.doubleToLongBits(scaled / SCALE) == Double.doubleToLongBits(value)) {
+                long delta = scaled - bases[slot];
+                bases[slot] = scaled;
+                writeVarint(((delta << 1) ^ (delta >> 63)) << 1);
+            } else {
+                writeVarint(RAW_COORDINATE);
+                long bits = Double.doubleToRawLongBits(value);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    write((int) (bits >>> shift));
+                }
+            }
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeTo(ByteBuffer out) {
+            out.put(buf, 0, count);
+        }
+    }
+}
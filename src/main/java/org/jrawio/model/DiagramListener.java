@@ -0,0 +1,37 @@
+package org.jrawio.model;
+
+/**
+ * 文档模型变化监听器
+ * 通知在修改模型的线程上同步发出
+ */
+public interface DiagramListener {
+
+    /**
+     * 图元被加入文档
+     *
+     * @param element 图元
+     */
+    void elementAdded(DiagramElement element);
+
+    /**
+     * 图元被移出文档
+     *
+     * @param element 图元
+     */
+    void elementRemoved(DiagramElement element);
+
+    /**
+     * 图元的属性发生变化
+     *
+     * @param element  图元
+     * @param property 变化的属性
+     */
+    void elementChanged(DiagramElement element, DiagramProperty property);
+
+    /**
+     * 文档的全部内容被替换，例如打开文件
+     * 替换期间不发出逐个图元的通知，监听器应当重新读取整个文档
+     */
+    default void diagramReloaded() {
+    }
+}
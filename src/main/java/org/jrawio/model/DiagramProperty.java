@@ -0,0 +1,17 @@
+package org.jrawio.model;
+
+/**
+ * 图元的可变属性，用于在变化通知中说明哪一部分发生了变化
+ */
+public enum DiagramProperty {
+    /** 位置和尺寸 */
+    BOUNDS,
+    /** 连线两端的坐标 */
+    ENDPOINTS,
+    /** 文本 */
+    TEXT,
+    /** 样式（颜色、线宽） */
+    STYLE,
+    /** 连线连接的图元 */
+    CONNECTION
+}
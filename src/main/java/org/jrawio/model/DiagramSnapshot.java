@@ -0,0 +1,99 @@
+package org.jrawio.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * 文档的不可变快照
+ * 快照中的图元是文档中图元在拍摄时的拷贝，之后不会再被修改，可以在任意线程上读取，
+ * 例如在后台线程保存或导出，同时FX线程继续编辑文档。
+ * 相邻的快照通过{@link PersistentIntMap}共享未修改的部分，拍摄快照的开销与上次拍摄以来修改的图元数量成正比。
+ */
+public final class DiagramSnapshot {
+
+    /** 图元ID到图元拷贝的映射 */
+    private final PersistentIntMap<DiagramElement> elements;
+
+    /** 图元ID按叠放顺序排列，没有加入或移除图元的快照之间共享，不能修改 */
+    private final int[] order;
+
+    /** 拍摄时文档的修改版本号 */
+    private final long version;
+
+    DiagramSnapshot(PersistentIntMap<DiagramElement> elements, int[] order, long version) {
+        this.elements = elements;
+        this.order = order;
+        this.version = version;
+    }
+
+    /**
+     * 获取图元
+     *
+     * @param id 图元ID
+     * @return 图元，不存在时返回null；返回的图元不能再加入文档，需要时通过{@link Diagram#add(DiagramElement)}复制
+     */
+    public DiagramElement get(int id) {
+        return elements.get(id);
+    }
+
+    public boolean contains(int id) {
+        return elements.containsKey(id);
+    }
+
+    /**
+     * 图元数量
+     *
+     * @return 图元数量
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * 拍摄时文档的修改版本号，版本号相同的快照内容相同
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 按叠放顺序遍历所有图元
+     *
+     * @param action 对每个图元执行的操作
+     */
+    public void forEach(Consumer<DiagramElement> action) {
+        for (int id : order) {
+            action.accept(elements.get(id));
+        }
+    }
+
+    /**
+     * 获取所有图元，与拍摄时{@link Diagram#getElements()}的顺序相同
+     * 列表不复制图元，按下标访问时查找对应的图元，可以直接交给保存和导出
+     *
+     * @return 图元的只读列表
+     */
+    public List<DiagramElement> getElementList() {
+        return new ElementList();
+    }
+
+    /**
+     * 按叠放顺序排列的图元只读列表
+     */
+    private final class ElementList extends AbstractList<DiagramElement> implements RandomAccess {
+
+        @Override
+        public DiagramElement get(int index) {
+            return elements.get(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+}
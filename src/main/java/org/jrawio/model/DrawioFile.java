@@ -0,0 +1,1079 @@
+package org.jrawio.model;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * draw.io（mxGraph XML）文件的导入和导出
+ * 导入使用StAX流式解析，不构建DOM，内存占用与图元数量成正比，与文件大小无关。
+ * {@code <diagram>}中压缩的内容（base64编码的raw deflate数据，解压后是URL编码的XML）
+ * 边读取边解码，交给嵌套的流式解析器，不会把整段内容读入内存。
+ *
+ * 块状图元按样式映射为矩形、椭圆或菱形，连线映射为箭头并保留两端连接的图元。
+ * 多页文件只导入第一页；分组按偏移展开为绝对坐标；HTML标签转换为纯文本。
+ */
+public final class DrawioFile {
+
+    /** 文件扩展名 */
+    public static final String EXTENSION = ".drawio";
+
+    /** 导出时图元ID的前缀，避免与根节点和图层的ID冲突 */
+    private static final String CELL_ID_PREFIX = "jr-";
+
+    /** 根节点ID */
+    private static final String ROOT_ID = "0";
+
+    /** 默认图层ID */
+    private static final String LAYER_ID = "1";
+
+    /** 进度回调的最小间隔 */
+    private static final double PROGRESS_STEP = 0.01;
+
+    /** 白色，draw.io块状图形的默认填充颜色 */
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private DrawioFile() {
+    }
+
+    // ---------------------------------------------------------------
+    // 导入
+    // ---------------------------------------------------------------
+
+    /**
+     * 读取draw.io文件
+     * 可以在任意线程上调用，返回的图元通过{@link Diagram#load(Collection)}加载到文档
+     *
+     * @param path     文件路径
+     * @param progress 进度回调，参数为0到1之间已读取的比例，可以为null
+     * @return 图元，先是块状图元，后是连线
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public static List<DiagramElement> read(Path path, DoubleConsumer progress) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, Files.size(path), progress);
+        }
+    }
+
+    /**
+     * 从输入流读取draw.io文件
+     *
+     * @param in         输入流
+     * @param totalBytes 输入流的总长度，未知时为0，此时不报告进度
+     * @param progress   进度回调，参数为0到1之间已读取的比例，可以为null
+     * @return 图元，先是块状图元，后是连线
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public static List<DiagramElement> read(InputStream in, long totalBytes, DoubleConsumer progress)
+            throws IOException {
+        ProgressInputStream counting = new ProgressInputStream(new BufferedInputStream(in), totalBytes, progress);
+        ModelReader modelReader = new ModelReader();
+        try {
+            XMLStreamReader reader = createInputFactory().createXMLStreamReader(counting);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String name = reader.getLocalName();
+                    if ("mxGraphModel".equals(name)) {
+                        modelReader.read(reader);
+                        break;
+                    }
+                    if ("diagram".equals(name)) {
+                        readPage(reader, modelReader);
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("draw.io文件格式错误: " + e.getMessage(), e);
+        }
+        counting.finish();
+        return modelReader.finish();
+    }
+
+    /**
+     * 读取一个{@code <diagram>}页，内容可以是{@code <mxGraphModel>}元素或者压缩的文本
+     */
+    private static void readPage(XMLStreamReader reader, ModelReader modelReader)
+            throws XMLStreamException, IOException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("mxGraphModel".equals(reader.getLocalName())) {
+                    modelReader.read(reader);
+                }
+                return;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                    && !reader.isWhiteSpace()) {
+                // 压缩的内容：base64解码、raw inflate、URL解码后交给嵌套的解析器
+                Inflater inflater = new Inflater(true);
+                try {
+                    InputStream decoded = new PercentDecodingInputStream(new InflaterInputStream(
+                            Base64.getMimeDecoder().wrap(new TextInputStream(reader)), inflater, 8192));
+                    XMLStreamReader inner = createInputFactory().createXMLStreamReader(decoded, "UTF-8");
+                    try {
+                        while (inner.hasNext()) {
+                            if (inner.next() == XMLStreamConstants.START_ELEMENT
+                                    && "mxGraphModel".equals(inner.getLocalName())) {
+                                modelReader.read(inner);
+                                break;
+                            }
+                        }
+                    } finally {
+                        inner.close();
+                    }
+                } finally {
+                    inflater.end();
+                }
+                return;
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // 不解析DTD和外部实体
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // 长文本分段报告，压缩内容不会整段读入内存
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * 解析{@code <mxGraphModel>}中的图元
+     * 块状图元在读到时创建；连线在全部读完后创建，连线引用的图元可能出现在它之后
+     */
+    private static final class ModelReader {
+
+        /** 块状图元，按单元ID索引 */
+        private final Map<String, DiagramElement> nodes = new HashMap<>();
+
+        /** 不导入的容器（分组）的绝对坐标，按单元ID索引 */
+        private final Map<String, double[]> groups = new HashMap<>();
+
+        /** 连线，按单元ID索引，用于设置连线上的标签 */
+        private final Map<String, PendingEdge> edgesById = new HashMap<>();
+
+        private final List<DiagramElement> elements = new ArrayList<>();
+        private final List<PendingEdge> edges = new ArrayList<>();
+
+        private int nextId = 1;
+
+        /** 包裹单元的{@code <UserObject>}或{@code <object>}的ID和标签 */
+        private String wrapperId;
+        private String wrapperLabel;
+
+        /**
+         * 读取模型，返回时读取器位于{@code </mxGraphModel>}
+         */
+        void read(XMLStreamReader reader) throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0 && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("mxCell".equals(name)) {
+                        readCell(reader);
+                    } else if ("UserObject".equals(name) || "object".equals(name)) {
+                        wrapperId = reader.getAttributeValue(null, "id");
+                        wrapperLabel = reader.getAttributeValue(null, "label");
+                        depth++;
+                    } else {
+                        depth++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("UserObject".equals(name) || "object".equals(name)) {
+                        wrapperId = null;
+                        wrapperLabel = null;
+                    }
+                    depth--;
+                }
+            }
+        }
+
+        /**
+         * 读取一个{@code <mxCell>}及其几何信息，返回时读取器位于{@code </mxCell>}
+         */
+        private void readCell(XMLStreamReader reader) throws XMLStreamException {
+            String id = reader.getAttributeValue(null, "id");
+            String value = reader.getAttributeValue(null, "value");
+            if (id == null) {
+                id = wrapperId;
+            }
+            if (value == null) {
+                value = wrapperLabel;
+            }
+            String style = reader.getAttributeValue(null, "style");
+            String parent = reader.getAttributeValue(null, "parent");
+            boolean vertex = "1".equals(reader.getAttributeValue(null, "vertex"));
+            boolean edge = "1".equals(reader.getAttributeValue(null, "edge"));
+            String source = reader.getAttributeValue(null, "source");
+            String target = reader.getAttributeValue(null, "target");
+
+            double[] geometry = new double[4];
+            double[] sourcePoint = null;
+            double[] targetPoint = null;
+            int depth = 1;
+            while (depth > 0 && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    String as = reader.getAttributeValue(null, "as");
+                    if ("mxGeometry".equals(name) && depth == 2) {
+                        geometry[0] = number(reader, "x");
+                        geometry[1] = number(reader, "y");
+                        geometry[2] = number(reader, "width");
+                        geometry[3] = number(reader, "height");
+                    } else if ("mxPoint".equals(name) && "sourcePoint".equals(as)) {
+                        sourcePoint = new double[] { number(reader, "x"), number(reader, "y") };
+                    } else if ("mxPoint".equals(name) && "targetPoint".equals(as)) {
+                        targetPoint = new double[] { number(reader, "x"), number(reader, "y") };
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+
+            Map<String, String> styles = parseStyle(style);
+            String text = toPlainText(value, "1".equals(styles.get("html")));
+            if (vertex) {
+                PendingEdge label = edgesById.get(parent);
+                if (label != null) {
+                    // 连线上的标签
+                    if (label.text == null) {
+                        label.text = text;
+                    }
+                    return;
+                }
+                double[] origin = originOf(parent);
+                double x = origin[0] + geometry[0];
+                double y = origin[1] + geometry[1];
+                if ("group".equals(styles.get(""))) {
+                    if (id != null) {
+                        groups.put(id, new double[] { x, y });
+                    }
+                    return;
+                }
+                DiagramElement element = new DiagramElement(nextId++, vertexType(styles));
+                element.x = x;
+                element.y = y;
+                element.width = geometry[2];
+                element.height = geometry[3];
+                element.text = text;
+                element.style = vertexStyle(styles);
+                elements.add(element);
+                if (id != null) {
+                    nodes.put(id, element);
+                }
+            } else if (edge) {
+                PendingEdge pending = new PendingEdge();
+                pending.source = source;
+                pending.target = target;
+                pending.origin = originOf(parent);
+                pending.sourcePoint = sourcePoint;
+                pending.targetPoint = targetPoint;
+                pending.text = text;
+                pending.style = edgeStyle(styles);
+                edges.add(pending);
+                if (id != null) {
+                    edgesById.put(id, pending);
+                }
+            }
+        }
+
+        /**
+         * 父单元的绝对坐标，图层和未知的父单元为原点
+         */
+        private double[] originOf(String parent) {
+            if (parent == null) {
+                return new double[2];
+            }
+            DiagramElement node = nodes.get(parent);
+            if (node != null) {
+                return new double[] { node.x, node.y };
+            }
+            double[] group = groups.get(parent);
+            return group != null ? group : new double[2];
+        }
+
+        /**
+         * 创建所有连线，连接的图元不存在时使用连线自身记录的端点
+         */
+        List<DiagramElement> finish() {
+            for (PendingEdge pending : edges) {
+                DiagramElement source = nodes.get(pending.source);
+                DiagramElement target = nodes.get(pending.target);
+                double[] start = endpoint(source, pending.sourcePoint, pending.origin);
+                double[] end = endpoint(target, pending.targetPoint, pending.origin);
+                DiagramElement element = new DiagramElement(nextId++, ShapeType.ARROW);
+                element.startX = start[0];
+                element.startY = start[1];
+                element.endX = end[0];
+                element.endY = end[1];
+                element.x = Math.min(start[0], end[0]);
+                element.y = Math.min(start[1], end[1]);
+                element.width = Math.abs(end[0] - start[0]);
+                element.height = Math.abs(end[1] - start[1]);
+                element.text = pending.text;
+                element.style = pending.style;
+                element.sourceId = source != null ? source.getId() : DiagramElement.NO_ELEMENT;
+                element.targetId = target != null ? target.getId() : DiagramElement.NO_ELEMENT;
+                elements.add(element);
+            }
+            return elements;
+        }
+
+        private static double[] endpoint(DiagramElement node, double[] point, double[] origin) {
+            if (node != null) {
+                return new double[] { node.x + node.width / 2, node.y + node.height / 2 };
+            }
+            if (point != null) {
+                return new double[] { origin[0] + point[0], origin[1] + point[1] };
+            }
+            return new double[] { origin[0], origin[1] };
+        }
+
+        private static double number(XMLStreamReader reader, String name) {
+            String value = reader.getAttributeValue(null, name);
+            if (value == null || value.isEmpty()) {
+                return 0;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 尚未创建的连线
+     */
+    private static final class PendingEdge {
+        String source;
+        String target;
+        double[] origin;
+        double[] sourcePoint;
+        double[] targetPoint;
+        String text;
+        ShapeStyle style;
+    }
+
+    // ---------------------------------------------------------------
+    // 样式
+    // ---------------------------------------------------------------
+
+    /**
+     * 解析样式字符串，没有等号的第一项（样式名）以空字符串为键
+     */
+    private static Map<String, String> parseStyle(String style) {
+        Map<String, String> result = new HashMap<>();
+        if (style == null) {
+            return result;
+        }
+        for (String item : style.split(";")) {
+            int equals = item.indexOf('=');
+            if (equals > 0) {
+                result.put(item.substring(0, equals).trim(), item.substring(equals + 1).trim());
+            } else if (!item.isBlank() && !result.containsKey("")) {
+                result.put("", item.trim());
+            }
+        }
+        return result;
+    }
+
+    private static ShapeType vertexType(Map<String, String> styles) {
+        String name = styles.getOrDefault("", "");
+        String shape = styles.getOrDefault("shape", "");
+        if (name.contains("ellipse") || shape.contains("ellipse") || "mxgraph.flowchart.start_1".equals(shape)) {
+            return ShapeType.OVAL;
+        }
+        if ("rhombus".equals(name) || "rhombus".equals(shape) || "mxgraph.flowchart.decision".equals(shape)) {
+            return ShapeType.DIAMOND;
+        }
+        return ShapeType.RECTANGLE;
+    }
+
+    private static ShapeStyle vertexStyle(Map<String, String> styles) {
+        // 文本单元默认没有填充和边框
+        boolean textCell = "text".equals(styles.get(""));
+        int fill = color(styles.get("fillColor"), textCell ? ShapeStyle.TRANSPARENT : WHITE,
+                styles.get("fillOpacity"));
+        int stroke = color(styles.get("strokeColor"), textCell ? ShapeStyle.TRANSPARENT : ShapeStyle.BLACK,
+                styles.get("strokeOpacity"));
+        ShapeStyle style = ShapeStyle.DEFAULT.withFillColor(fill).withStrokeColor(stroke);
+        return ShapeStyle.DEFAULT.equals(style) ? ShapeStyle.DEFAULT : style;
+    }
+
+    private static ShapeStyle edgeStyle(Map<String, String> styles) {
+        int line = color(styles.get("strokeColor"), ShapeStyle.BLACK, styles.get("strokeOpacity"));
+        double width = 1;
+        String strokeWidth = styles.get("strokeWidth");
+        if (strokeWidth != null) {
+            try {
+                width = Double.parseDouble(strokeWidth);
+            } catch (NumberFormatException e) {
+                width = 1;
+            }
+        }
+        ShapeStyle style = ShapeStyle.DEFAULT.withLineColor(line).withLineWidth(width);
+        return ShapeStyle.DEFAULT.equals(style) ? ShapeStyle.DEFAULT : style;
+    }
+
+    /**
+     * 解析颜色
+     *
+     * @param value        颜色值，例如#dae8fc、none或default
+     * @param defaultColor 没有设置或无法解析时的颜色
+     * @param opacity      不透明度（0到100），可以为null
+     * @return ARGB颜色
+     */
+    private static int color(String value, int defaultColor, String opacity) {
+        int argb = defaultColor;
+        if ("none".equals(value)) {
+            return ShapeStyle.TRANSPARENT;
+        }
+        if (value != null && value.startsWith("#")) {
+            String hex = value.substring(1);
+            if (hex.length() == 3) {
+                hex = "" + hex.charAt(0) + hex.charAt(0) + hex.charAt(1) + hex.charAt(1)
+                        + hex.charAt(2) + hex.charAt(2);
+            }
+            if (hex.length() == 6) {
+                try {
+                    argb = 0xFF000000 | Integer.parseInt(hex, 16);
+                } catch (NumberFormatException e) {
+                    argb = defaultColor;
+                }
+            }
+        }
+        if (opacity != null) {
+            try {
+                int alpha = (int) Math.round(Math.max(0, Math.min(100, Double.parseDouble(opacity))) * 255 / 100);
+                argb = (alpha << 24) | (argb & 0xFFFFFF);
+            } catch (NumberFormatException e) {
+                return argb;
+            }
+        }
+        return argb;
+    }
+
+    /**
+     * 颜色转换为draw.io的颜色值，不透明度单独保存
+     */
+    private static String colorValue(int argb) {
+        return (argb >>> 24) == 0 ? "none" : String.format("#%06X", argb & 0xFFFFFF);
+    }
+
+    private static void appendColor(StringBuilder style, String key, String opacityKey, int argb) {
+        style.append(key).append('=').append(colorValue(argb)).append(';');
+        int alpha = argb >>> 24;
+        if (alpha != 0 && alpha != 0xFF) {
+            style.append(opacityKey).append('=').append(Math.round(alpha * 100 / 255.0)).append(';');
+        }
+    }
+
+    /**
+     * 标签转换为纯文本，HTML标签中的换行保留，其余标签去掉
+     * 首尾的空白来自HTML排版，去掉；以数字字符引用写出的空白（如导出时的制表符）保留
+     */
+    static String toPlainText(String value, boolean html) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (!html) {
+            return value;
+        }
+        StringBuilder text = new StringBuilder(value.length());
+        // 去掉首尾空白后保留的范围
+        int start = -1;
+        int end = 0;
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c == '<') {
+                int close = value.indexOf('>', i);
+                if (close < 0) {
+                    break;
+                }
+                String tag = value.substring(i + 1, close).trim().toLowerCase(Locale.ROOT);
+                if ((tag.startsWith("br") || tag.equals("/div") || tag.equals("/p")) && text.length() > 0) {
+                    text.append('\n');
+                }
+                i = close + 1;
+            } else if (c == '&') {
+                int semicolon = value.indexOf(';', i);
+                String entity = semicolon > i ? value.substring(i + 1, semicolon) : "";
+                String decoded = decodeEntity(entity);
+                if (decoded == null) {
+                    decoded = "&";
+                    semicolon = i;
+                }
+                if (entity.startsWith("#") || !decoded.isBlank()) {
+                    start = start < 0 ? text.length() : start;
+                    end = text.length() + decoded.length();
+                }
+                text.append(decoded);
+                i = semicolon + 1;
+            } else {
+                if (!Character.isWhitespace(c)) {
+                    start = start < 0 ? text.length() : start;
+                    end = text.length() + 1;
+                }
+                text.append(c);
+                i++;
+            }
+        }
+        return start < 0 ? null : text.substring(start, end);
+    }
+
+    /**
+     * 纯文本转换为HTML标签，换行转换为{@code <br>}，制表符转换为数字字符引用
+     */
+    private static String toHtml(String text) {
+        StringBuilder html = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                case '&':
+                    html.append("&amp;");
+                    break;
+                case '\r':
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    html.append("<br>");
+                    break;
+                case '\n':
+                    html.append("<br>");
+                    break;
+                case '\t':
+                    html.append("&#9;");
+                    break;
+                default:
+                    html.append(c);
+                    break;
+            }
+        }
+        return html.toString();
+    }
+
+    private static String decodeEntity(String entity) {
+        switch (entity) {
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "amp":
+                return "&";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return " ";
+            default:
+                break;
+        }
+        if (entity.length() > 1 && entity.charAt(0) == '#') {
+            try {
+                int codePoint = entity.charAt(1) == 'x' || entity.charAt(1) == 'X'
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return new String(Character.toChars(codePoint));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------------
+    // 导出
+    // ---------------------------------------------------------------
+
+    /**
+     * 把图元导出为draw.io文件
+     *
+     * @param elements   图元，按此顺序导出
+     * @param path       文件路径
+     * @param compressed 是否压缩{@code <diagram>}中的内容
+     * @throws IOException 写入失败
+     */
+    public static void write(Collection<DiagramElement> elements, Path path, boolean compressed) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(elements, out, compressed);
+        }
+    }
+
+    /**
+     * 把图元导出到输出流，输出流不会被关闭
+     *
+     * @param elements   图元，按此顺序导出
+     * @param out        输出流
+     * @param compressed 是否压缩{@code <diagram>}中的内容
+     * @throws IOException 写入失败
+     */
+    public static void write(Collection<DiagramElement> elements, OutputStream out, boolean compressed)
+            throws IOException {
+        XMLOutputFactory factory = XMLOutputFactory.newFactory();
+        try {
+            XMLStreamWriter writer = factory.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("mxfile");
+            writer.writeAttribute("host", "jrawio");
+            writer.writeAttribute("compressed", String.valueOf(compressed));
+            writer.writeStartElement("diagram");
+            writer.writeAttribute("id", "jrawio");
+            writer.writeAttribute("name", "Page-1");
+            if (compressed) {
+                // 模型写入嵌套的写入器，经过URL编码、raw deflate和base64后作为文本写入<diagram>
+                OutputStream text = Base64.getEncoder().wrap(new TextOutputStream(writer));
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                try {
+                    DeflaterOutputStream deflated = new DeflaterOutputStream(text, deflater);
+                    XMLStreamWriter inner = factory.createXMLStreamWriter(
+                            new PercentEncodingOutputStream(deflated), "UTF-8");
+                    writeModel(inner, elements);
+                    inner.flush();
+                    deflated.finish();
+                    // 写出base64的结尾，不关闭外层输出流
+                    text.close();
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                writeModel(writer, elements);
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("导出draw.io文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeModel(XMLStreamWriter writer, Collection<DiagramElement> elements)
+            throws XMLStreamException {
+        writer.writeStartElement("mxGraphModel");
+        writer.writeAttribute("grid", "1");
+        writer.writeAttribute("gridSize", "10");
+        writer.writeStartElement("root");
+        writer.writeEmptyElement("mxCell");
+        writer.writeAttribute("id", ROOT_ID);
+        writer.writeEmptyElement("mxCell");
+        writer.writeAttribute("id", LAYER_ID);
+        writer.writeAttribute("parent", ROOT_ID);
+        for (DiagramElement element : elements) {
+            writeCell(writer, element);
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void writeCell(XMLStreamWriter writer, DiagramElement element) throws XMLStreamException {
+        ShapeStyle shapeStyle = element.style != null ? element.style : ShapeStyle.DEFAULT;
+        StringBuilder style = new StringBuilder();
+        writer.writeStartElement("mxCell");
+        writer.writeAttribute("id", CELL_ID_PREFIX + element.getId());
+        // XML属性中的换行和制表符读取时会变成空格，这样的文本以HTML标签保存
+        boolean html = element.text != null && (element.text.indexOf('\n') >= 0
+                || element.text.indexOf('\r') >= 0 || element.text.indexOf('\t') >= 0);
+        writer.writeAttribute("value", element.text == null ? "" : html ? toHtml(element.text) : element.text);
+        if (element.isEdge()) {
+            style.append("endArrow=classic;");
+            if (html) {
+                style.append("html=1;");
+            }
+            appendColor(style, "strokeColor", "strokeOpacity", shapeStyle.getLineColor());
+            style.append("strokeWidth=").append(number(shapeStyle.getLineWidth())).append(';');
+            writer.writeAttribute("style", style.toString());
+            writer.writeAttribute("edge", "1");
+            writer.writeAttribute("parent", LAYER_ID);
+            if (element.sourceId != DiagramElement.NO_ELEMENT) {
+                writer.writeAttribute("source", CELL_ID_PREFIX + element.sourceId);
+            }
+            if (element.targetId != DiagramElement.NO_ELEMENT) {
+                writer.writeAttribute("target", CELL_ID_PREFIX + element.targetId);
+            }
+            writer.writeStartElement("mxGeometry");
+            writer.writeAttribute("relative", "1");
+            writer.writeAttribute("as", "geometry");
+            writePoint(writer, element.startX, element.startY, "sourcePoint");
+            writePoint(writer, element.endX, element.endY, "targetPoint");
+            writer.writeEndElement();
+        } else {
+            switch (element.getType()) {
+                case OVAL:
+                    style.append("ellipse;");
+                    break;
+                case DIAMOND:
+                    style.append("rhombus;");
+                    break;
+                default:
+                    style.append("rounded=0;");
+                    break;
+            }
+            style.append("whiteSpace=wrap;");
+            if (html) {
+                style.append("html=1;");
+            }
+            appendColor(style, "fillColor", "fillOpacity", shapeStyle.getFillColor());
+            appendColor(style, "strokeColor", "strokeOpacity", shapeStyle.getStrokeColor());
+            writer.writeAttribute("style", style.toString());
+            writer.writeAttribute("vertex", "1");
+            writer.writeAttribute("parent", LAYER_ID);
+            writer.writeEmptyElement("mxGeometry");
+            writer.writeAttribute("x", number(element.x));
+            writer.writeAttribute("y", number(element.y));
+            writer.writeAttribute("width", number(element.width));
+            writer.writeAttribute("height", number(element.height));
+            writer.writeAttribute("as", "geometry");
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writePoint(XMLStreamWriter writer, double x, double y, String as) throws XMLStreamException {
+        writer.writeEmptyElement("mxPoint");
+        writer.writeAttribute("x", number(x));
+        writer.writeAttribute("y", number(y));
+        writer.writeAttribute("as", as);
+    }
+
+    /**
+     * 数值转换为字符串，整数不带小数部分
+     */
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    // ---------------------------------------------------------------
+    // 流
+    // ---------------------------------------------------------------
+
+    /**
+     * 把解析器当前元素中的文本作为字节流读出，遇到子元素或元素结束时结束
+     * 文本是base64编码，只包含ASCII字符
+     */
+    private static final class TextInputStream extends InputStream {
+        private final XMLStreamReader reader;
+        private char[] chars;
+        private int position;
+        private int limit;
+        private boolean started = false;
+        private boolean finished = false;
+
+        TextInputStream(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position >= limit) {
+                if (!advance()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, limit - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) chars[position + i];
+            }
+            position += count;
+            return count;
+        }
+
+        /**
+         * 移到下一段文本
+         *
+         * @return false如果文本已经结束
+         */
+        private boolean advance() throws IOException {
+            if (finished) {
+                return false;
+            }
+            try {
+                int event = started ? reader.next() : reader.getEventType();
+                started = true;
+                while (event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                    event = reader.next();
+                }
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    chars = reader.getTextCharacters();
+                    position = reader.getTextStart();
+                    limit = position + reader.getTextLength();
+                    return true;
+                }
+                finished = true;
+                return false;
+            } catch (XMLStreamException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * URL解码（decodeURIComponent），内容不是URL编码时原样输出
+     */
+    private static final class PercentDecodingInputStream extends FilterInputStream {
+        private final byte[] buffer = new byte[8192];
+        private int position = 0;
+        private int limit = 0;
+        private boolean checked = false;
+        private boolean encoded = true;
+
+        PercentDecodingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = nextByte();
+            if (!checked) {
+                checked = true;
+                // 较早版本的draw.io压缩前不做URL编码，解压后直接是XML
+                encoded = b != '<';
+            }
+            if (b != '%' || !encoded) {
+                return b;
+            }
+            int high = Character.digit(nextByte(), 16);
+            int low = Character.digit(nextByte(), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("无效的URL编码");
+            }
+            return (high << 4) | low;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                int c = read();
+                if (c < 0) {
+                    return count == 0 ? -1 : count;
+                }
+                b[off + count++] = (byte) c;
+            }
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return limit - position;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && read() >= 0) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private int nextByte() throws IOException {
+            if (position == limit) {
+                int count = in.read(buffer, 0, buffer.length);
+                if (count <= 0) {
+                    return -1;
+                }
+                position = 0;
+                limit = count;
+            }
+            return buffer[position++] & 0xFF;
+        }
+    }
+
+    /**
+     * URL编码（encodeURIComponent）
+     */
+    private static final class PercentEncodingOutputStream extends OutputStream {
+        private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+        private final OutputStream out;
+
+        PercentEncodingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            int c = b & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "-_.!~*'()".indexOf(c) >= 0) {
+                out.write(c);
+            } else {
+                out.write('%');
+                out.write(HEX[c >>> 4]);
+                out.write(HEX[c & 0xF]);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * 把ASCII字节作为文本写入外层写入器
+     */
+    private static final class TextOutputStream extends OutputStream {
+        private final XMLStreamWriter writer;
+        private final char[] buffer = new char[8192];
+        private int count = 0;
+
+        TextOutputStream(XMLStreamWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (char) (b & 0xFF);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            try {
+                writer.writeCharacters(buffer, 0, count);
+            } catch (XMLStreamException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            count = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * 统计读取的字节数并报告进度
+     */
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final long totalBytes;
+        private final DoubleConsumer progress;
+        private long bytesRead = 0;
+        private double reported = 0;
+
+        ProgressInputStream(InputStream in, long totalBytes, DoubleConsumer progress) {
+            super(in);
+            this.totalBytes = totalBytes;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                advance(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        private void advance(long count) {
+            bytesRead += count;
+            if (progress != null && totalBytes > 0) {
+                double fraction = Math.min(1, (double) bytesRead / totalBytes);
+                if (fraction - reported >= PROGRESS_STEP) {
+                    reported = fraction;
+                    progress.accept(fraction);
+                }
+            }
+        }
+
+        /**
+         * 读取结束，报告完成
+         */
+        void finish() {
+            if (progress != null && totalBytes > 0 && reported < 1) {
+                reported = 1;
+                progress.accept(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package org.jrawio.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 列式几何存储
+ * 以基本类型数组按列保存所有图元的位置、尺寸、类型和样式索引，
+ * 每个图元只占用几个数组槽位，没有对象头、装箱坐标和集合开销。
+ * 命中测试和范围查询通过均匀网格索引只检查相关单元格中的图元，整体包围盒直接顺序扫描数组，
+ * 适合十万级以上的图元。
+ *
+ * 图元ID通过直接索引表映射到行号；删除时把最后一行移到被删除的位置（交换删除），
+ * 因此行号不稳定，只有ID是稳定的。样式在样式表中去重，每行只保存样式索引。
+ */
+public class GeometryStore {
+
+    /** 初始容量 */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** 表示ID没有对应的行 */
+    private static final int NO_INDEX = -1;
+
+    /** 网格单元格边长 */
+    private static final double CELL_SIZE = 256;
+
+    /** 图元覆盖的单元格超过此数量时不放入网格，单独保存 */
+    private static final int MAX_CELLS_PER_ELEMENT = 64;
+
+    /** 图形类型，按序号保存 */
+    private static final ShapeType[] TYPES = ShapeType.values();
+
+    /** 行数 */
+    private int size = 0;
+
+    /** 每行的图元ID */
+    private int[] ids = new int[INITIAL_CAPACITY];
+
+    /** 每行的图形类型序号 */
+    private int[] types = new int[INITIAL_CAPACITY];
+
+    /** 每行的样式索引 */
+    private int[] styles = new int[INITIAL_CAPACITY];
+
+    /** 每行的Z序，数值越大越靠上 */
+    private int[] zOrders = new int[INITIAL_CAPACITY];
+
+    /** 位置和尺寸 */
+    private double[] xs = new double[INITIAL_CAPACITY];
+    private double[] ys = new double[INITIAL_CAPACITY];
+    private double[] widths = new double[INITIAL_CAPACITY];
+    private double[] heights = new double[INITIAL_CAPACITY];
+
+    /** ID到行号的直接索引表，ID连续分配，表的大小与最大ID成正比 */
+    private int[] indexById = newIndexTable(INITIAL_CAPACITY);
+
+    /** 样式表 */
+    private final List<ShapeStyle> styleTable = new ArrayList<>();
+
+    /** 样式到样式索引的映射 */
+    private final Map<ShapeStyle, Integer> styleIndex = new HashMap<>();
+
+    /** 网格索引，单元格坐标到该单元格中的图元ID */
+    private final Map<Long, IdBag> cells = new HashMap<>();
+
+    /** 覆盖单元格过多的图元，查询时逐个检查 */
+    private final IdBag oversized = new IdBag();
+
+    /**
+     * 单元格中的图元ID集合，删除时最后一个ID移到被删除的位置
+     */
+    private static final class IdBag {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 添加或更新一行
+     *
+     * @param id     图元ID
+     * @param zOrder Z序，数值越大越靠上
+     * @param type   图形类型
+     * @param x      左上角X坐标
+     * @param y      左上角Y坐标
+     * @param width  宽度
+     * @param height 高度
+     * @param style  样式
+     */
+    public void put(int id, int zOrder, ShapeType type, double x, double y, double width, double height,
+            ShapeStyle style) {
+        int index = indexOf(id);
+        if (index == NO_INDEX) {
+            ensureCapacity(size + 1);
+            ensureIdCapacity(id);
+            index = size++;
+            ids[index] = id;
+            indexById[id] = index;
+        } else {
+            unindex(index);
+        }
+        zOrders[index] = zOrder;
+        types[index] = type.ordinal();
+        styles[index] = internStyle(style);
+        xs[index] = x;
+        ys[index] = y;
+        widths[index] = width;
+        heights[index] = height;
+        index(index);
+    }
+
+    /**
+     * 更新位置和尺寸
+     *
+     * @param id     图元ID
+     * @param x      左上角X坐标
+     * @param y      左上角Y坐标
+     * @param width  宽度
+     * @param height 高度
+     */
+    public void setBounds(int id, double x, double y, double width, double height) {
+        int index = indexOf(id);
+        if (index == NO_INDEX) {
+            return;
+        }
+        if (cellOf(Math.min(x, x + width)) != minCellX(index) || cellOf(Math.max(x, x + width)) != maxCellX(index)
+                || cellOf(Math.min(y, y + height)) != minCellY(index)
+                || cellOf(Math.max(y, y + height)) != maxCellY(index)) {
+            // 覆盖的单元格变化时才更新网格，小范围的拖动不需要改动索引
+            unindex(index);
+            xs[index] = x;
+            ys[index] = y;
+            widths[index] = width;
+            heights[index] = height;
+            index(index);
+        } else {
+            xs[index] = x;
+            ys[index] = y;
+            widths[index] = width;
+            heights[index] = height;
+        }
+    }
+
+    /**
+     * 更新样式
+     *
+     * @param id    图元ID
+     * @param style 样式
+     */
+    public void setStyle(int id, ShapeStyle style) {
+        int index = indexOf(id);
+        if (index != NO_INDEX) {
+            styles[index] = internStyle(style);
+        }
+    }
+
+    /**
+     * 删除一行，最后一行移到被删除的位置
+     *
+     * @param id 图元ID
+     * @return true如果删除了
+     */
+    public boolean remove(int id) {
+        int index = indexOf(id);
+        if (index == NO_INDEX) {
+            return false;
+        }
+        unindex(index);
+        int last = --size;
+        if (index != last) {
+            ids[index] = ids[last];
+            types[index] = types[last];
+            styles[index] = styles[last];
+            zOrders[index] = zOrders[last];
+            xs[index] = xs[last];
+            ys[index] = ys[last];
+            widths[index] = widths[last];
+            heights[index] = heights[last];
+            indexById[ids[index]] = index;
+        }
+        indexById[id] = NO_INDEX;
+        return true;
+    }
+
+    /**
+     * 删除所有行，样式表保留
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            indexById[ids[i]] = NO_INDEX;
+        }
+        size = 0;
+        cells.clear();
+        oversized.size = 0;
+    }
+
+    /**
+     * 行数
+     *
+     * @return 行数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否包含图元
+     *
+     * @param id 图元ID
+     * @return true如果包含
+     */
+    public boolean contains(int id) {
+        return indexOf(id) != NO_INDEX;
+    }
+
+    /**
+     * 获取图元所在的行号
+     *
+     * @param id 图元ID
+     * @return 行号，不存在时返回-1
+     */
+    public int indexOf(int id) {
+        return id >= 0 && id < indexById.length ? indexById[id] : NO_INDEX;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public ShapeType getType(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int getStyleIndex(int index) {
+        return styles[index];
+    }
+
+    public ShapeStyle getStyle(int index) {
+        return styleTable.get(styles[index]);
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    public double getWidth(int index) {
+        return widths[index];
+    }
+
+    public double getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * 获取样式表，行中保存的样式索引指向此表
+     *
+     * @return 样式表的只读视图
+     */
+    public List<ShapeStyle> getStyleTable() {
+        return Collections.unmodifiableList(styleTable);
+    }
+
+    /**
+     * 查找包围盒包含指定点的最上层图元
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 图元ID，没有则返回{@link DiagramElement#NO_ELEMENT}
+     */
+    public int hitTest(double x, double y) {
+        int hit = DiagramElement.NO_ELEMENT;
+        int hitZOrder = Integer.MIN_VALUE;
+        IdBag cell = cells.get(cellKey(cellOf(x), cellOf(y)));
+        IdBag[] bags = { cell, oversized };
+        for (IdBag bag : bags) {
+            if (bag == null) {
+                continue;
+            }
+            for (int k = 0; k < bag.size; k++) {
+                int i = indexById[bag.ids[k]];
+                if (x >= xs[i] && x <= xs[i] + widths[i] && y >= ys[i] && y <= ys[i] + heights[i]
+                        && zOrders[i] > hitZOrder) {
+                    hit = ids[i];
+                    hitZOrder = zOrders[i];
+                }
+            }
+        }
+        return hit;
+    }
+
+    /**
+     * 查询包围盒与矩形区域相交的所有图元，不创建中间集合
+     *
+     * @param minX     区域左边界
+     * @param minY     区域上边界
+     * @param maxX     区域右边界
+     * @param maxY     区域下边界
+     * @param consumer 接收相交图元的ID
+     * @return 相交的图元数量
+     */
+    public int query(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        int minCellX = cellOf(minX);
+        int minCellY = cellOf(minY);
+        int maxCellX = cellOf(maxX);
+        int maxCellY = cellOf(maxY);
+        int count = 0;
+        long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+        if (cellCount > cells.size()) {
+            // 区域覆盖的单元格比已占用的单元格还多（例如缩得很小），只遍历已占用的单元格
+            for (Map.Entry<Long, IdBag> entry : cells.entrySet()) {
+                int cx = (int) (entry.getKey() >> 32);
+                int cy = (int) (long) entry.getKey();
+                if (cx >= minCellX && cx <= maxCellX && cy >= minCellY && cy <= maxCellY) {
+                    count += queryCell(entry.getValue(), cx, cy, minX, minY, maxX, maxY, consumer);
+                }
+            }
+        } else {
+            for (int cy = minCellY; cy <= maxCellY; cy++) {
+                for (int cx = minCellX; cx <= maxCellX; cx++) {
+                    IdBag cell = cells.get(cellKey(cx, cy));
+                    if (cell != null) {
+                        count += queryCell(cell, cx, cy, minX, minY, maxX, maxY, consumer);
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < oversized.size; k++) {
+            int i = indexById[oversized.ids[k]];
+            if (intersects(i, minX, minY, maxX, maxY)) {
+                consumer.accept(ids[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 报告一个单元格中与区域相交的图元
+     * 跨多个单元格的图元只在它与区域共同覆盖的第一个单元格中报告，不需要额外去重
+     */
+    private int queryCell(IdBag cell, int cx, int cy, double minX, double minY, double maxX, double maxY,
+            IntConsumer consumer) {
+        int minCellX = cellOf(minX);
+        int minCellY = cellOf(minY);
+        int count = 0;
+        for (int k = 0; k < cell.size; k++) {
+            int i = indexById[cell.ids[k]];
+            if (cx == Math.max(minCellX(i), minCellX) && cy == Math.max(minCellY(i), minCellY)
+                    && intersects(i, minX, minY, maxX, maxY)) {
+                consumer.accept(ids[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 计算所有图元的整体包围盒
+     *
+     * @param out 输出数组，依次写入minX、minY、maxX、maxY
+     * @return false如果没有图元
+     */
+    public boolean getBounds(double[] out) {
+        if (size == 0) {
+            return false;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i] + widths[i]);
+            maxY = Math.max(maxY, ys[i] + heights[i]);
+        }
+        out[0] = minX;
+        out[1] = minY;
+        out[2] = maxX;
+        out[3] = maxY;
+        return true;
+    }
+
+    private boolean intersects(int i, double minX, double minY, double maxX, double maxY) {
+        return xs[i] <= maxX && xs[i] + widths[i] >= minX && ys[i] <= maxY && ys[i] + heights[i] >= minY;
+    }
+
+    /**
+     * 把一行加入网格索引
+     */
+    private void index(int index) {
+        int id = ids[index];
+        if (isOversized(index)) {
+            oversized.add(id);
+            return;
+        }
+        for (int cy = minCellY(index); cy <= maxCellY(index); cy++) {
+            for (int cx = minCellX(index); cx <= maxCellX(index); cx++) {
+                cells.computeIfAbsent(cellKey(cx, cy), key -> new IdBag()).add(id);
+            }
+        }
+    }
+
+    /**
+     * 从网格索引中移除一行，必须在修改该行的位置和尺寸之前调用
+     */
+    private void unindex(int index) {
+        int id = ids[index];
+        if (isOversized(index)) {
+            oversized.remove(id);
+            return;
+        }
+        for (int cy = minCellY(index); cy <= maxCellY(index); cy++) {
+            for (int cx = minCellX(index); cx <= maxCellX(index); cx++) {
+                Long key = cellKey(cx, cy);
+                IdBag cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(id);
+                    if (cell.size == 0) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isOversized(int index) {
+        return ((long) maxCellX(index) - minCellX(index) + 1)
+                * ((long) maxCellY(index) - minCellY(index) + 1) > MAX_CELLS_PER_ELEMENT;
+    }
+
+    private int minCellX(int index) {
+        return cellOf(Math.min(xs[index], xs[index] + widths[index]));
+    }
+
+    private int maxCellX(int index) {
+        return cellOf(Math.max(xs[index], xs[index] + widths[index]));
+    }
+
+    private int minCellY(int index) {
+        return cellOf(Math.min(ys[index], ys[index] + heights[index]));
+    }
+
+    private int maxCellY(int index) {
+        return cellOf(Math.max(ys[index], ys[index] + heights[index]));
+    }
+
+    private static int cellOf(double coordinate) {
+        // NaN和超出范围的坐标都落在边界单元格中
+        double cell = Math.floor(coordinate / CELL_SIZE);
+        if (Double.isNaN(cell)) {
+            return 0;
+        }
+        return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, cell));
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    private int internStyle(ShapeStyle style) {
+        ShapeStyle key = style != null ? style : ShapeStyle.DEFAULT;
+        Integer index = styleIndex.get(key);
+        if (index == null) {
+            index = styleTable.size();
+            styleTable.add(key);
+            styleIndex.put(key, index);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        styles = Arrays.copyOf(styles, newCapacity);
+        zOrders = Arrays.copyOf(zOrders, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        widths = Arrays.copyOf(widths, newCapacity);
+        heights = Arrays.copyOf(heights, newCapacity);
+    }
+
+    private void ensureIdCapacity(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("图元ID不能为负数: " + id);
+        }
+        if (id < indexById.length) {
+            return;
+        }
+        int oldLength = indexById.length;
+        indexById = Arrays.copyOf(indexById, Math.max(id + 1, oldLength * 2));
+        Arrays.fill(indexById, oldLength, indexById.length, NO_INDEX);
+    }
+
+    private static int[] newIndexTable(int length) {
+        int[] table = new int[length];
+        Arrays.fill(table, NO_INDEX);
+        return table;
+    }
+}
@@ -0,0 +1,289 @@
+package org.jrawio.model;
+
+/**
+ * 不可变的整数键映射（哈希数组映射字典树）
+ * 每个内部节点最多32个槽位，用位图记录哪些槽位有内容，只为存在的槽位分配数组。
+ * 修改返回新的映射，只复制从根到被修改叶子路径上的节点（十万个元素时约4层），其余节点与旧映射共享。
+ *
+ * @param <V> 值类型，值应当不可变
+ */
+public final class PersistentIntMap<V> {
+
+    /** 每层使用的键位数 */
+    private static final int BITS = 5;
+
+    /** 每层的槽位掩码 */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** 最后一层的位移，32位整数在此层用完 */
+    private static final int MAX_SHIFT = 30;
+
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0);
+
+    /** 根节点，空映射时为null */
+    private final Node root;
+
+    /** 元素数量 */
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 获取空映射
+     *
+     * @param <V> 值类型
+     * @return 空映射
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * 元素数量
+     *
+     * @return 元素数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获取键对应的值
+     *
+     * @param key 键
+     * @return 值，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Object slot = root;
+        for (int shift = 0; slot instanceof Node; shift += BITS) {
+            slot = ((Node) slot).get(index(key, shift));
+        }
+        if (slot instanceof Leaf && ((Leaf) slot).key == key) {
+            return (V) ((Leaf) slot).value;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 返回包含新键值的映射，原映射不变
+     *
+     * @param key   键
+     * @param value 值，不能为null
+     * @return 新映射，值没有变化时返回原映射
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("值不能为null");
+        }
+        boolean[] added = new boolean[1];
+        Node newRoot = put(root != null ? root : Node.EMPTY_NODE, key, value, 0, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * 返回删除了键的映射，原映射不变
+     *
+     * @param key 键
+     * @return 新映射，键不存在时返回原映射
+     */
+    public PersistentIntMap<V> remove(int key) {
+        if (root == null) {
+            return this;
+        }
+        Object newRoot = remove(root, key, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        // 根节点始终是内部节点
+        Node node = newRoot instanceof Node ? (Node) newRoot
+                : Node.EMPTY_NODE.with(index(((Leaf) newRoot).key, 0), newRoot);
+        return new PersistentIntMap<>(node, size - 1);
+    }
+
+    /**
+     * 遍历所有键值，顺序由键的二进制位决定，与插入顺序无关
+     *
+     * @param action 对每个键值执行的操作
+     */
+    public void forEach(EntryVisitor<? super V> action) {
+        forEach(root, action);
+    }
+
+    /**
+     * 键值的接收者，键不装箱
+     *
+     * @param <V> 值类型
+     */
+    public interface EntryVisitor<V> {
+
+        void accept(int key, V value);
+    }
+
+    // ---------------------------------------------------------------
+    // 节点操作
+    // ---------------------------------------------------------------
+
+    private static int index(int key, int shift) {
+        return (key >>> shift) & MASK;
+    }
+
+    private static Node put(Node node, int key, Object value, int shift, boolean[] added) {
+        int index = index(key, shift);
+        Object slot = node.get(index);
+        if (slot == null) {
+            added[0] = true;
+            return node.with(index, new Leaf(key, value));
+        }
+        if (slot instanceof Leaf) {
+            Leaf leaf = (Leaf) slot;
+            if (leaf.key == key) {
+                return leaf.value == value ? node : node.with(index, new Leaf(key, value));
+            }
+            // 两个键在这一层冲突，向下一层展开
+            added[0] = true;
+            return node.with(index, merge(leaf, new Leaf(key, value), shift + BITS));
+        }
+        Node child = (Node) slot;
+        Node newChild = put(child, key, value, shift + BITS, added);
+        return newChild == child ? node : node.with(index, newChild);
+    }
+
+    /**
+     * 创建包含两个不同键的子树
+     */
+    private static Node merge(Leaf a, Leaf b, int shift) {
+        int indexA = index(a.key, shift);
+        int indexB = index(b.key, shift);
+        if (indexA == indexB && shift < MAX_SHIFT) {
+            return Node.EMPTY_NODE.with(indexA, merge(a, b, shift + BITS));
+        }
+        return Node.EMPTY_NODE.with(indexA, a).with(indexB, b);
+    }
+
+    /**
+     * 从子树中删除键
+     *
+     * @return 新子树，只剩一个叶子时返回该叶子，为空时返回null
+     */
+    private static Object remove(Node node, int key, int shift) {
+        int index = index(key, shift);
+        Object slot = node.get(index);
+        Object newSlot;
+        if (slot == null) {
+            return node;
+        } else if (slot instanceof Leaf) {
+            if (((Leaf) slot).key != key) {
+                return node;
+            }
+            newSlot = null;
+        } else {
+            newSlot = remove((Node) slot, key, shift + BITS);
+            if (newSlot == slot) {
+                return node;
+            }
+        }
+        Node newNode = newSlot == null ? node.without(index) : node.with(index, newSlot);
+        // 只剩一个叶子的子树收缩为叶子，保持结构规范，相同内容的映射结构相同
+        if (newNode.slots.length == 0) {
+            return null;
+        }
+        if (newNode.slots.length == 1 && newNode.slots[0] instanceof Leaf) {
+            return newNode.slots[0];
+        }
+        return newNode;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Object slot, EntryVisitor<? super V> action) {
+        if (slot instanceof Leaf) {
+            Leaf leaf = (Leaf) slot;
+            action.accept(leaf.key, (V) leaf.value);
+        } else if (slot instanceof Node) {
+            for (Object child : ((Node) slot).slots) {
+                forEach(child, action);
+            }
+        }
+    }
+
+    /**
+     * 叶子：一个键值
+     */
+    private static final class Leaf {
+        final int key;
+        final Object value;
+
+        Leaf(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 内部节点：位图记录存在的槽位，数组只保存存在的槽位
+     */
+    private static final class Node {
+        static final Node EMPTY_NODE = new Node(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        Object get(int index) {
+            int bit = 1 << index;
+            return (bitmap & bit) == 0 ? null : slots[Integer.bitCount(bitmap & (bit - 1))];
+        }
+
+        /**
+         * 返回设置了槽位的新节点
+         */
+        Node with(int index, Object slot) {
+            int bit = 1 << index;
+            int position = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) != 0) {
+                Object[] copy = slots.clone();
+                copy[position] = slot;
+                return new Node(bitmap, copy);
+            }
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, position);
+            copy[position] = slot;
+            System.arraycopy(slots, position, copy, position + 1, slots.length - position);
+            return new Node(bitmap | bit, copy);
+        }
+
+        /**
+         * 返回清除了槽位的新节点
+         */
+        Node without(int index) {
+            int bit = 1 << index;
+            int position = Integer.bitCount(bitmap & (bit - 1));
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, position);
+            System.arraycopy(slots, position + 1, copy, position, slots.length - position - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+    }
+}
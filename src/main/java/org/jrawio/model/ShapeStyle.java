@@ -0,0 +1,158 @@
+package org.jrawio.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 图元样式（不可变）
+ * 颜色以ARGB整数保存，不依赖JavaFX，可以直接比较、哈希和序列化
+ */
+public final class ShapeStyle {
+
+    /** 透明 */
+    public static final int TRANSPARENT = 0x00000000;
+
+    /** 黑色 */
+    public static final int BLACK = 0xFF000000;
+
+    /** 默认样式：透明填充、黑色边框和线条、线宽1 */
+    public static final ShapeStyle DEFAULT = new ShapeStyle(TRANSPARENT, BLACK, BLACK, 1.0);
+
+    /** 填充颜色 */
+    private final int fillColor;
+
+    /** 边框颜色 */
+    private final int strokeColor;
+
+    /** 线条颜色 */
+    private final int lineColor;
+
+    /** 线条粗细 */
+    private final double lineWidth;
+
+    /**
+     * 构造函数
+     *
+     * @param fillColor   填充颜色（ARGB）
+     * @param strokeColor 边框颜色（ARGB）
+     * @param lineColor   线条颜色（ARGB）
+     * @param lineWidth   线条粗细
+     */
+    public ShapeStyle(int fillColor, int strokeColor, int lineColor, double lineWidth) {
+        this.fillColor = fillColor;
+        this.strokeColor = strokeColor;
+        this.lineColor = lineColor;
+        this.lineWidth = lineWidth;
+    }
+
+    public int getFillColor() {
+        return fillColor;
+    }
+
+    public int getStrokeColor() {
+        return strokeColor;
+    }
+
+    public int getLineColor() {
+        return lineColor;
+    }
+
+    public double getLineWidth() {
+        return lineWidth;
+    }
+
+    /**
+     * 返回替换了填充颜色的样式
+     *
+     * @param fillColor 填充颜色（ARGB）
+     * @return 新样式
+     */
+    public ShapeStyle withFillColor(int fillColor) {
+        return new ShapeStyle(fillColor, strokeColor, lineColor, lineWidth);
+    }
+
+    /**
+     * 返回替换了边框颜色的样式
+     *
+     * @param strokeColor 边框颜色（ARGB）
+     * @return 新样式
+     */
+    public ShapeStyle withStrokeColor(int strokeColor) {
+        return new ShapeStyle(fillColor, strokeColor, lineColor, lineWidth);
+    }
+
+    /**
+     * 返回替换了线条颜色的样式
+     *
+     * @param lineColor 线条颜色（ARGB）
+     * @return 新样式
+     */
+    public ShapeStyle withLineColor(int lineColor) {
+        return new ShapeStyle(fillColor, strokeColor, lineColor, lineWidth);
+    }
+
+    /**
+     * 返回替换了线条粗细的样式
+     *
+     * @param lineWidth 线条粗细
+     * @return 新样式
+     */
+    public ShapeStyle withLineWidth(double lineWidth) {
+        return new ShapeStyle(fillColor, strokeColor, lineColor, lineWidth);
+    }
+
+    /**
+     * 把样式写入二进制流
+     *
+     * @param style 样式
+     * @param out   输出流
+     * @throws IOException 写入失败
+     */
+    public static void write(ShapeStyle style, DataOutput out) throws IOException {
+        out.writeInt(style.fillColor);
+        out.writeInt(style.strokeColor);
+        out.writeInt(style.lineColor);
+        out.writeDouble(style.lineWidth);
+    }
+
+    /**
+     * 从二进制流读取样式
+     *
+     * @param in 输入流
+     * @return 样式
+     * @throws IOException 读取失败
+     */
+    public static ShapeStyle read(DataInput in) throws IOException {
+        ShapeStyle style = new ShapeStyle(in.readInt(), in.readInt(), in.readInt(), in.readDouble());
+        return DEFAULT.equals(style) ? DEFAULT : style;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShapeStyle)) {
+            return false;
+        }
+        ShapeStyle other = (ShapeStyle) o;
+        return fillColor == other.fillColor && strokeColor == other.strokeColor
+                && lineColor == other.lineColor && Double.compare(lineWidth, other.lineWidth) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = fillColor;
+        result = 31 * result + strokeColor;
+        result = 31 * result + lineColor;
+        result = 31 * result + Double.hashCode(lineWidth);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ShapeStyle[fill=%08X, stroke=%08X, line=%08X, width=%s]",
+                fillColor, strokeColor, lineColor, lineWidth);
+    }
+}
@@ -1,4 +1,4 @@
-package org.jrawio.controller.shape;
+package org.jrawio.model;
 
 /**
  * 形状类型枚举
@@ -0,0 +1,82 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramProperty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 移动或缩放块状图元
+ */
+public class BoundsCommand extends PropertyCommand {
+
+    private final double oldX;
+    private final double oldY;
+    private final double oldWidth;
+    private final double oldHeight;
+    private double newX;
+    private double newY;
+    private double newWidth;
+    private double newHeight;
+
+    public BoundsCommand(int elementId, double oldX, double oldY, double oldWidth, double oldHeight,
+            double newX, double newY, double newWidth, double newHeight) {
+        super(elementId);
+        this.oldX = oldX;
+        this.oldY = oldY;
+        this.oldWidth = oldWidth;
+        this.oldHeight = oldHeight;
+        this.newX = newX;
+        this.newY = newY;
+        this.newWidth = newWidth;
+        this.newHeight = newHeight;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.setBounds(elementId, oldX, oldY, oldWidth, oldHeight);
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.setBounds(elementId, newX, newY, newWidth, newHeight);
+    }
+
+    @Override
+    DiagramProperty property() {
+        return DiagramProperty.BOUNDS;
+    }
+
+    @Override
+    void takeNewValue(PropertyCommand later) {
+        BoundsCommand other = (BoundsCommand) later;
+        newX = other.newX;
+        newY = other.newY;
+        newWidth = other.newWidth;
+        newHeight = other.newHeight;
+    }
+
+    @Override
+    public int estimateSize() {
+        return BASE_SIZE + 8 * Double.BYTES;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(elementId);
+        out.writeDouble(oldX);
+        out.writeDouble(oldY);
+        out.writeDouble(oldWidth);
+        out.writeDouble(oldHeight);
+        out.writeDouble(newX);
+        out.writeDouble(newY);
+        out.writeDouble(newWidth);
+        out.writeDouble(newHeight);
+    }
+
+    static BoundsCommand read(DataInput in) throws IOException {
+        return new BoundsCommand(in.readInt(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+}
@@ -0,0 +1,52 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+
+/**
+ * 可撤销的文档操作
+ * 命令只保存图元ID和被修改属性的前后值，不保存图形对象的拷贝，
+ * 撤销和重做直接修改文档模型，耗时与修改的内容成正比。
+ */
+public interface Command {
+
+    /**
+     * 撤销操作
+     *
+     * @param diagram 文档模型
+     */
+    void undo(Diagram diagram);
+
+    /**
+     * 重做操作
+     *
+     * @param diagram 文档模型
+     */
+    void redo(Diagram diagram);
+
+    /**
+     * 尝试把之后对同一属性的修改合并到此命令，合并后此命令的新值变为后者的新值
+     * 用于把拖动、缩放等连续操作合并为一条命令
+     *
+     * @param later 之后的命令
+     * @return true如果已合并
+     */
+    default boolean merge(Command later) {
+        return false;
+    }
+
+    /**
+     * 合并键，相同合并键的命令修改同一图元的同一属性
+     *
+     * @return 合并键，不能合并的命令返回-1
+     */
+    default long mergeKey() {
+        return -1;
+    }
+
+    /**
+     * 命令占用内存的估计值
+     *
+     * @return 字节数
+     */
+    int estimateSize();
+}
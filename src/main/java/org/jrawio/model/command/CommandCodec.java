@@ -0,0 +1,102 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.DiagramElement;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 命令的二进制编码
+ * 每条命令以一个字节的类型标记开头，后面是命令自己的字段，用于把旧的撤销记录写入临时文件
+ */
+final class CommandCodec {
+
+    private static final int BOUNDS = 1;
+    private static final int ENDPOINTS = 2;
+    private static final int TEXT = 3;
+    private static final int STYLE = 4;
+    private static final int CONNECT = 5;
+    private static final int CREATE = 6;
+    private static final int DELETE = 7;
+    private static final int COMPOUND = 8;
+
+    private CommandCodec() {
+    }
+
+    /**
+     * 写入命令
+     *
+     * @param command 命令
+     * @param out     输出流
+     * @throws IOException 写入失败或命令类型不支持编码
+     */
+    static void write(Command command, DataOutput out) throws IOException {
+        if (command instanceof BoundsCommand) {
+            out.writeByte(BOUNDS);
+            ((BoundsCommand) command).write(out);
+        } else if (command instanceof EndpointsCommand) {
+            out.writeByte(ENDPOINTS);
+            ((EndpointsCommand) command).write(out);
+        } else if (command instanceof TextCommand) {
+            out.writeByte(TEXT);
+            ((TextCommand) command).write(out);
+        } else if (command instanceof StyleCommand) {
+            out.writeByte(STYLE);
+            ((StyleCommand) command).write(out);
+        } else if (command instanceof ConnectCommand) {
+            out.writeByte(CONNECT);
+            ((ConnectCommand) command).write(out);
+        } else if (command instanceof CreateCommand) {
+            out.writeByte(CREATE);
+            ((CreateCommand) command).write(out);
+        } else if (command instanceof DeleteCommand) {
+            out.writeByte(DELETE);
+            ((DeleteCommand) command).write(out);
+        } else if (command instanceof CompoundCommand) {
+            out.writeByte(COMPOUND);
+            ((CompoundCommand) command).write(out);
+        } else {
+            throw new IOException("不支持编码的命令类型: " + command.getClass().getName());
+        }
+    }
+
+    /**
+     * 读取命令
+     *
+     * @param in 输入流
+     * @return 命令
+     * @throws IOException 读取失败或数据无效
+     */
+    static Command read(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case BOUNDS:
+                return BoundsCommand.read(in);
+            case ENDPOINTS:
+                return EndpointsCommand.read(in);
+            case TEXT:
+                return TextCommand.read(in);
+            case STYLE:
+                return StyleCommand.read(in);
+            case CONNECT:
+                return ConnectCommand.read(in);
+            case CREATE:
+                return CreateCommand.read(in);
+            case DELETE:
+                return DeleteCommand.read(in);
+            case COMPOUND:
+                return CompoundCommand.read(in);
+            default:
+                throw new IOException("无效的命令类型标记: " + tag);
+        }
+    }
+
+    static void writeText(String text, DataOutput out) throws IOException {
+        DiagramElement.writeText(text, out);
+    }
+
+    static String readText(DataInput in) throws IOException {
+        return DiagramElement.readText(in);
+    }
+}
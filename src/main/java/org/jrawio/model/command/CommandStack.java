@@ -0,0 +1,287 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 撤销/重做栈
+ * 文档模型的每次修改都记录为一条命令；{@link #beginCompound()}和{@link #endCompound()}之间的修改合并为一步。
+ * 撤销和重做期间以及{@link #runWithoutRecording(Runnable)}中的修改不记录。
+ *
+ * 撤销和重做记录在内存中的估计大小超过预算时，最久远的记录编码后写入临时文件，
+ * 撤销到这些记录时再按页读回，长时间编辑不会因为撤销记录耗尽内存。
+ * 只能在修改文档的线程上使用。
+ */
+public class CommandStack {
+
+    /** 文档模型 */
+    private final Diagram diagram;
+
+    /** 默认的内存预算 */
+    public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+
+    /** 可撤销的命令，栈顶是最近的命令 */
+    private final HistoryStack undoStack = new HistoryStack("jrawio-undo");
+
+    /** 可重做的命令，栈顶是最近撤销的命令 */
+    private final HistoryStack redoStack = new HistoryStack("jrawio-redo");
+
+    /** 撤销和重做记录在内存中的预算 */
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    /** 栈状态变化监听器 */
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    /** 正在组合的命令 */
+    private CompoundCommand compound;
+
+    /** 组合的嵌套深度 */
+    private int compoundDepth = 0;
+
+    /** 暂停记录的嵌套深度，撤销和重做期间也暂停记录 */
+    private int suspendDepth = 0;
+
+    /**
+     * 构造函数，创建后文档的修改记录到此栈
+     *
+     * @param diagram 文档模型
+     */
+    public CommandStack(Diagram diagram) {
+        this.diagram = diagram;
+        diagram.setCommandStack(this);
+    }
+
+    /**
+     * 是否正在记录修改
+     *
+     * @return false如果正在撤销、重做或暂停记录
+     */
+    public boolean isRecording() {
+        return suspendDepth == 0;
+    }
+
+    /**
+     * 记录一条命令，由文档模型在修改之后调用
+     *
+     * @param command 命令
+     */
+    public void record(Command command) {
+        if (!isRecording()) {
+            return;
+        }
+        if (compound != null) {
+            compound.add(command);
+            return;
+        }
+        push(command);
+    }
+
+    /**
+     * 开始组合命令，可以嵌套，最外层结束时作为一步记录
+     */
+    public void beginCompound() {
+        if (compoundDepth++ == 0) {
+            compound = new CompoundCommand();
+        }
+    }
+
+    /**
+     * 结束组合命令
+     */
+    public void endCompound() {
+        if (compoundDepth == 0) {
+            return;
+        }
+        if (--compoundDepth == 0) {
+            CompoundCommand finished = compound;
+            compound = null;
+            finished.seal();
+            if (!finished.isEmpty()) {
+                Command single = finished.single();
+                push(single != null ? single : finished);
+            }
+        }
+    }
+
+    /**
+     * 执行操作但不记录它产生的修改，用于派生的修改（例如连接线跟随图形重新计算端点）
+     *
+     * @param action 操作
+     */
+    public void runWithoutRecording(Runnable action) {
+        suspendDepth++;
+        try {
+            action.run();
+        } finally {
+            suspendDepth--;
+        }
+    }
+
+    /**
+     * 是否可以撤销
+     *
+     * @return true如果可以撤销
+     */
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    /**
+     * 是否可以重做
+     *
+     * @return true如果可以重做
+     */
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * 撤销最近一步
+     *
+     * @return true如果撤销了
+     * @throws java.io.UncheckedIOException 较早的撤销记录无法从临时文件读回，记录仍然保留，可以稍后重试
+     */
+    public boolean undo() {
+        closeCompound();
+        Command command = undoStack.pop();
+        if (command == null) {
+            return false;
+        }
+        runWithoutRecording(() -> command.undo(diagram));
+        redoStack.push(command);
+        enforceBudget();
+        fireChanged();
+        return true;
+    }
+
+    /**
+     * 重做最近撤销的一步
+     *
+     * @return true如果重做了
+     * @throws java.io.UncheckedIOException 较早的重做记录无法从临时文件读回，记录仍然保留，可以稍后重试
+     */
+    public boolean redo() {
+        closeCompound();
+        Command command = redoStack.pop();
+        if (command == null) {
+            return false;
+        }
+        runWithoutRecording(() -> command.redo(diagram));
+        undoStack.push(command);
+        enforceBudget();
+        fireChanged();
+        return true;
+    }
+
+    /**
+     * 清空撤销和重做记录，例如加载新文档之后
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        compound = null;
+        compoundDepth = 0;
+        fireChanged();
+    }
+
+    /**
+     * 可撤销的步数，包括已写入临时文件的记录
+     *
+     * @return 步数
+     */
+    public int getUndoCount() {
+        return undoStack.size();
+    }
+
+    /**
+     * 设置撤销和重做记录在内存中的预算
+     *
+     * @param memoryBudget 字节数
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("内存预算必须大于0: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        enforceBudget();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * 撤销和重做记录在内存中的估计大小
+     *
+     * @return 字节数
+     */
+    public long getMemoryBytes() {
+        return undoStack.getMemoryBytes() + redoStack.getMemoryBytes();
+    }
+
+    /**
+     * 添加栈状态变化监听器
+     *
+     * @param listener 监听器
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 移除栈状态变化监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 新命令入栈，之前撤销的命令不能再重做
+     */
+    private void push(Command command) {
+        undoStack.push(command);
+        redoStack.clear();
+        enforceBudget();
+        fireChanged();
+    }
+
+    /**
+     * 内存占用超过预算时把离当前位置最远的记录写入临时文件，一次降到预算的四分之三，避免每一步都写磁盘
+     * 先写占用较多的一侧，使当前位置两侧都保留最近的记录，连续撤销时刚读回的记录不会马上又被写出
+     */
+    private void enforceBudget() {
+        if (getMemoryBytes() <= memoryBudget) {
+            return;
+        }
+        long target = memoryBudget * 3 / 4;
+        if (undoStack.getMemoryBytes() >= redoStack.getMemoryBytes()) {
+            undoStack.spillTo(Math.max(target - redoStack.getMemoryBytes(), target / 2));
+        }
+        if (getMemoryBytes() > target) {
+            redoStack.spillTo(Math.max(0, target - undoStack.getMemoryBytes()));
+        }
+        if (getMemoryBytes() > target) {
+            undoStack.spillTo(Math.max(0, target - redoStack.getMemoryBytes()));
+        }
+    }
+
+    /**
+     * 撤销或重做前结束未完成的组合命令，例如拖动过程中按下快捷键
+     */
+    private void closeCompound() {
+        if (compoundDepth > 0) {
+            compoundDepth = 1;
+            endCompound();
+        }
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : new ArrayList<>(listeners)) {
+            listener.run();
+        }
+    }
+}
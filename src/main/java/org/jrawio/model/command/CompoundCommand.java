@@ -0,0 +1,120 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 组合命令
+ * 一次用户操作（拖动、缩放、批量删除、粘贴等）产生的所有命令，作为一步撤销和重做。
+ * 对同一图元同一属性的多次修改合并为一条命令，只保留最初的旧值和最后的新值。
+ */
+public class CompoundCommand implements Command {
+
+    /** 按执行顺序排列的子命令 */
+    private final List<Command> commands = new ArrayList<>();
+
+    /** 合并键到可合并子命令的映射 */
+    private final Map<Long, Command> mergeable = new HashMap<>();
+
+    /** 估计的内存占用 */
+    private int size = 16;
+
+    /**
+     * 添加子命令，能合并时合并到之前的子命令
+     *
+     * @param command 子命令
+     */
+    public void add(Command command) {
+        long key = command.mergeKey();
+        if (key >= 0) {
+            Command previous = mergeable.get(key);
+            if (previous != null && previous.merge(command)) {
+                return;
+            }
+            mergeable.put(key, command);
+        } else {
+            // 添加或删除图元之后，之前对同一ID的修改不能再与之后的修改合并
+            mergeable.clear();
+        }
+        commands.add(command);
+        size += command.estimateSize() + 8;
+    }
+
+    /**
+     * 组合结束，之后不再合并，释放合并用的映射
+     */
+    void seal() {
+        mergeable.clear();
+    }
+
+    /**
+     * 是否没有子命令
+     *
+     * @return true如果为空
+     */
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * 子命令数量
+     *
+     * @return 子命令数量
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * 唯一的子命令，只有一条子命令时可以直接用它代替组合命令
+     *
+     * @return 子命令，数量不为1时返回null
+     */
+    Command single() {
+        return commands.size() == 1 ? commands.get(0) : null;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            commands.get(i).undo(diagram);
+        }
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        for (Command command : commands) {
+            command.redo(diagram);
+        }
+    }
+
+    @Override
+    public int estimateSize() {
+        return size;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(commands.size());
+        for (Command command : commands) {
+            CommandCodec.write(command, out);
+        }
+    }
+
+    static CompoundCommand read(DataInput in) throws IOException {
+        CompoundCommand compound = new CompoundCommand();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Command command = CommandCodec.read(in);
+            compound.commands.add(command);
+            compound.size += command.estimateSize() + 8;
+        }
+        return compound;
+    }
+}
@@ -0,0 +1,66 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramProperty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 连接或断开连线
+ */
+public class ConnectCommand extends PropertyCommand {
+
+    private final int oldSourceId;
+    private final int oldTargetId;
+    private int newSourceId;
+    private int newTargetId;
+
+    public ConnectCommand(int edgeId, int oldSourceId, int oldTargetId, int newSourceId, int newTargetId) {
+        super(edgeId);
+        this.oldSourceId = oldSourceId;
+        this.oldTargetId = oldTargetId;
+        this.newSourceId = newSourceId;
+        this.newTargetId = newTargetId;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.connect(elementId, oldSourceId, oldTargetId);
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.connect(elementId, newSourceId, newTargetId);
+    }
+
+    @Override
+    DiagramProperty property() {
+        return DiagramProperty.CONNECTION;
+    }
+
+    @Override
+    void takeNewValue(PropertyCommand later) {
+        ConnectCommand other = (ConnectCommand) later;
+        newSourceId = other.newSourceId;
+        newTargetId = other.newTargetId;
+    }
+
+    @Override
+    public int estimateSize() {
+        return BASE_SIZE + 4 * Integer.BYTES;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(elementId);
+        out.writeInt(oldSourceId);
+        out.writeInt(oldTargetId);
+        out.writeInt(newSourceId);
+        out.writeInt(newTargetId);
+    }
+
+    static ConnectCommand read(DataInput in) throws IOException {
+        return new ConnectCommand(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+}
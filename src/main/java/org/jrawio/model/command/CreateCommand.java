@@ -0,0 +1,49 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramElement;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 添加图元
+ * 保存图元加入时的状态，之后的修改由各自的命令记录
+ */
+public class CreateCommand implements Command {
+
+    private final DiagramElement element;
+
+    /**
+     * 构造函数
+     *
+     * @param element 加入时的图元，命令保存它的拷贝
+     */
+    public CreateCommand(DiagramElement element) {
+        this.element = element.copy();
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.remove(element.getId());
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.add(element);
+    }
+
+    @Override
+    public int estimateSize() {
+        return ElementSize.of(element);
+    }
+
+    void write(DataOutput out) throws IOException {
+        element.writeTo(out);
+    }
+
+    static CreateCommand read(DataInput in) throws IOException {
+        return new CreateCommand(DiagramElement.readFrom(in));
+    }
+}
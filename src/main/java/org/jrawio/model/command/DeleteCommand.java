@@ -0,0 +1,49 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramElement;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 删除图元
+ * 删除块状图元前断开连线的操作由连接命令单独记录，撤销时按相反顺序恢复
+ */
+public class DeleteCommand implements Command {
+
+    private final DiagramElement element;
+
+    /**
+     * 构造函数
+     *
+     * @param element 被删除的图元，已从文档中移除，不再被修改
+     */
+    public DeleteCommand(DiagramElement element) {
+        this.element = element;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.add(element);
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.remove(element.getId());
+    }
+
+    @Override
+    public int estimateSize() {
+        return ElementSize.of(element);
+    }
+
+    void write(DataOutput out) throws IOException {
+        element.writeTo(out);
+    }
+
+    static DeleteCommand read(DataInput in) throws IOException {
+        return new DeleteCommand(DiagramElement.readFrom(in));
+    }
+}
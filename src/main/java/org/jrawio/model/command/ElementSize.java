@@ -0,0 +1,20 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.DiagramElement;
+
+/**
+ * 图元占用内存的估计
+ */
+final class ElementSize {
+
+    /** 对象头、ID、类型、8个坐标和2个连接ID的估计大小 */
+    private static final int BASE_SIZE = 120;
+
+    private ElementSize() {
+    }
+
+    static int of(DiagramElement element) {
+        String text = element.getText();
+        return BASE_SIZE + (text == null ? 0 : 24 + text.length() * 2);
+    }
+}
@@ -0,0 +1,82 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramProperty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 修改连线两端的坐标
+ */
+public class EndpointsCommand extends PropertyCommand {
+
+    private final double oldStartX;
+    private final double oldStartY;
+    private final double oldEndX;
+    private final double oldEndY;
+    private double newStartX;
+    private double newStartY;
+    private double newEndX;
+    private double newEndY;
+
+    public EndpointsCommand(int elementId, double oldStartX, double oldStartY, double oldEndX, double oldEndY,
+            double newStartX, double newStartY, double newEndX, double newEndY) {
+        super(elementId);
+        this.oldStartX = oldStartX;
+        this.oldStartY = oldStartY;
+        this.oldEndX = oldEndX;
+        this.oldEndY = oldEndY;
+        this.newStartX = newStartX;
+        this.newStartY = newStartY;
+        this.newEndX = newEndX;
+        this.newEndY = newEndY;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.setEndpoints(elementId, oldStartX, oldStartY, oldEndX, oldEndY);
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.setEndpoints(elementId, newStartX, newStartY, newEndX, newEndY);
+    }
+
+    @Override
+    DiagramProperty property() {
+        return DiagramProperty.ENDPOINTS;
+    }
+
+    @Override
+    void takeNewValue(PropertyCommand later) {
+        EndpointsCommand other = (EndpointsCommand) later;
+        newStartX = other.newStartX;
+        newStartY = other.newStartY;
+        newEndX = other.newEndX;
+        newEndY = other.newEndY;
+    }
+
+    @Override
+    public int estimateSize() {
+        return BASE_SIZE + 8 * Double.BYTES;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(elementId);
+        out.writeDouble(oldStartX);
+        out.writeDouble(oldStartY);
+        out.writeDouble(oldEndX);
+        out.writeDouble(oldEndY);
+        out.writeDouble(newStartX);
+        out.writeDouble(newStartY);
+        out.writeDouble(newEndX);
+        out.writeDouble(newEndY);
+    }
+
+    static EndpointsCommand read(DataInput in) throws IOException {
+        return new EndpointsCommand(in.readInt(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+}
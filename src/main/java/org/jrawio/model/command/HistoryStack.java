@@ -0,0 +1,211 @@
+package org.jrawio.model.command;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 可以溢出到磁盘的命令栈
+ * 栈顶部分保存在内存中，底部（最久远的）部分编码后追加到临时文件，文件本身也是一个栈：
+ * 每条记录后面跟着记录的长度，从文件末尾向前读取即可依次弹出。
+ * 内存中的命令用完时，从文件末尾一次读回一页，连续撤销很多步时每一页只读一次磁盘。
+ * 写入磁盘失败时命令保留在内存中并报告错误，不丢弃撤销历史；
+ * 此后不再尝试溢出，内存占用可能超过预算，直到栈被清空。
+ * 读回失败时磁盘上的命令保持不变，{@link #pop()}抛出异常，下次弹出时重新读取。
+ */
+final class HistoryStack {
+
+    /** 从磁盘读回时每页的命令数 */
+    private static final int PAGE_SIZE = 256;
+
+    /** 内存中的命令，队首是栈顶 */
+    private final Deque<Command> memory = new ArrayDeque<>();
+
+    /** 内存中命令的估计大小 */
+    private long memoryBytes = 0;
+
+    /** 临时文件名前缀 */
+    private final String filePrefix;
+
+    /** 溢出文件，第一次溢出时创建 */
+    private File spillFile;
+    private RandomAccessFile spill;
+
+    /** 磁盘上的命令数 */
+    private int spilledCount = 0;
+
+    /** 写入磁盘是否失败过，失败后不再尝试溢出 */
+    private boolean spillFailed = false;
+
+    /** 编码缓冲区，重复使用 */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    HistoryStack(String filePrefix) {
+        this.filePrefix = filePrefix;
+    }
+
+    void push(Command command) {
+        memory.push(command);
+        memoryBytes += command.estimateSize();
+    }
+
+    /**
+     * 弹出栈顶命令，内存中没有时从磁盘读回一页
+     *
+     * @return 命令，栈为空时返回null
+     * @throws UncheckedIOException 从磁盘读回失败，栈保持不变
+     */
+    Command pop() {
+        if (memory.isEmpty() && spilledCount > 0) {
+            pageIn();
+        }
+        Command command = memory.poll();
+        if (command != null) {
+            memoryBytes -= command.estimateSize();
+        }
+        return command;
+    }
+
+    boolean isEmpty() {
+        return memory.isEmpty() && spilledCount == 0;
+    }
+
+    int size() {
+        return memory.size() + spilledCount;
+    }
+
+    int getSpilledCount() {
+        return spilledCount;
+    }
+
+    long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    boolean hasMemory() {
+        return !memory.isEmpty();
+    }
+
+    /**
+     * 把内存中最久远的命令写入磁盘，直到内存占用不超过目标值或内存中没有命令
+     *
+     * @param targetBytes 目标内存占用
+     */
+    void spillTo(long targetBytes) {
+        while (!spillFailed && memoryBytes > targetBytes && !memory.isEmpty()) {
+            Command oldest = memory.peekLast();
+            if (!writeToDisk(oldest)) {
+                // 无法写入磁盘时保留在内存中，磁盘上已有的命令仍然与它连续
+                spillFailed = true;
+                System.err.println("Undo history stays in memory after a failed spill; memory use may exceed the budget");
+                return;
+            }
+            memory.pollLast();
+            memoryBytes -= oldest.estimateSize();
+        }
+    }
+
+    /**
+     * 清空栈并删除临时文件
+     */
+    void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        spillFailed = false;
+        discardDisk();
+    }
+
+    private boolean writeToDisk(Command command) {
+        long end = -1;
+        try {
+            if (spill == null) {
+                spillFile = File.createTempFile(filePrefix, ".tmp");
+                spillFile.deleteOnExit();
+                spill = new RandomAccessFile(spillFile, "rw");
+            }
+            buffer.reset();
+            DataOutputStream out = new DataOutputStream(buffer);
+            CommandCodec.write(command, out);
+            out.writeInt(buffer.size());
+            out.flush();
+            end = spill.length();
+            spill.seek(end);
+            spill.write(buffer.toByteArray());
+            spilledCount++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to spill undo history: " + e.getMessage());
+            // 去掉写了一半的记录，保持文件中的记录完整
+            if (end >= 0) {
+                try {
+                    spill.setLength(end);
+                } catch (IOException ex) {
+                    System.err.println("Failed to truncate undo history file: " + ex.getMessage());
+                    // 文件末尾不再是完整的记录，无法再从中读回
+                    discardDisk();
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 从磁盘末尾读回一页命令，放到内存栈的底部
+     * 整页读回成功后才截短文件，失败时文件和计数都不变
+     */
+    private void pageIn() {
+        try {
+            long end = spill.length();
+            int count = Math.min(PAGE_SIZE, spilledCount);
+            Deque<Command> page = new ArrayDeque<>(count);
+            for (int i = 0; i < count; i++) {
+                spill.seek(end - Integer.BYTES);
+                int length = spill.readInt();
+                long start = end - Integer.BYTES - length;
+                if (length < 0 || start < 0) {
+                    throw new IOException("撤销历史文件已损坏");
+                }
+                byte[] data = new byte[length];
+                spill.seek(start);
+                spill.readFully(data);
+                page.addLast(CommandCodec.read(new DataInputStream(new ByteArrayInputStream(data))));
+                end = start;
+            }
+            spill.setLength(end);
+            spilledCount -= count;
+            // 读回的第一条命令在栈中位置最高
+            for (Command command : page) {
+                memory.addLast(command);
+                memoryBytes += command.estimateSize();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read undo history: " + e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void discardDisk() {
+        spilledCount = 0;
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close undo history file: " + e.getMessage());
+            }
+            spill = null;
+        }
+        if (spillFile != null) {
+            if (!spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+            spillFile = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.DiagramProperty;
+
+/**
+ * 修改单个图元单个属性的命令
+ * 同一图元同一属性的连续修改可以合并
+ */
+abstract class PropertyCommand implements Command {
+
+    /** 对象头和图元ID的估计大小 */
+    static final int BASE_SIZE = 24;
+
+    /** 图元ID */
+    final int elementId;
+
+    PropertyCommand(int elementId) {
+        this.elementId = elementId;
+    }
+
+    /**
+     * 修改的属性
+     *
+     * @return 属性
+     */
+    abstract DiagramProperty property();
+
+    /**
+     * 采用之后命令的新值
+     *
+     * @param later 之后修改同一属性的命令
+     */
+    abstract void takeNewValue(PropertyCommand later);
+
+    @Override
+    public boolean merge(Command later) {
+        if (later.getClass() != getClass() || later.mergeKey() != mergeKey()) {
+            return false;
+        }
+        takeNewValue((PropertyCommand) later);
+        return true;
+    }
+
+    @Override
+    public long mergeKey() {
+        return ((long) elementId << 8) | property().ordinal();
+    }
+}
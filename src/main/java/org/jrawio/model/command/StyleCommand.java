@@ -0,0 +1,60 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramProperty;
+import org.jrawio.model.ShapeStyle;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 修改图元样式
+ * 样式对象不可变，命令只引用修改前后的样式，不复制
+ */
+public class StyleCommand extends PropertyCommand {
+
+    private final ShapeStyle oldStyle;
+    private ShapeStyle newStyle;
+
+    public StyleCommand(int elementId, ShapeStyle oldStyle, ShapeStyle newStyle) {
+        super(elementId);
+        this.oldStyle = oldStyle;
+        this.newStyle = newStyle;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.setStyle(elementId, oldStyle);
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.setStyle(elementId, newStyle);
+    }
+
+    @Override
+    DiagramProperty property() {
+        return DiagramProperty.STYLE;
+    }
+
+    @Override
+    void takeNewValue(PropertyCommand later) {
+        newStyle = ((StyleCommand) later).newStyle;
+    }
+
+    @Override
+    public int estimateSize() {
+        return BASE_SIZE + 2 * Integer.BYTES;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(elementId);
+        ShapeStyle.write(oldStyle, out);
+        ShapeStyle.write(newStyle, out);
+    }
+
+    static StyleCommand read(DataInput in) throws IOException {
+        return new StyleCommand(in.readInt(), ShapeStyle.read(in), ShapeStyle.read(in));
+    }
+}
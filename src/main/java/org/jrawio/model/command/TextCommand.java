@@ -0,0 +1,62 @@
+package org.jrawio.model.command;
+
+import org.jrawio.model.Diagram;
+import org.jrawio.model.DiagramProperty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 修改图元文本
+ */
+public class TextCommand extends PropertyCommand {
+
+    private final String oldText;
+    private String newText;
+
+    public TextCommand(int elementId, String oldText, String newText) {
+        super(elementId);
+        this.oldText = oldText;
+        this.newText = newText;
+    }
+
+    @Override
+    public void undo(Diagram diagram) {
+        diagram.setText(elementId, oldText);
+    }
+
+    @Override
+    public void redo(Diagram diagram) {
+        diagram.setText(elementId, newText);
+    }
+
+    @Override
+    DiagramProperty property() {
+        return DiagramProperty.TEXT;
+    }
+
+    @Override
+    void takeNewValue(PropertyCommand later) {
+        newText = ((TextCommand) later).newText;
+    }
+
+    @Override
+    public int estimateSize() {
+        return BASE_SIZE + 2 * Integer.BYTES + textSize(oldText) + textSize(newText);
+    }
+
+    private static int textSize(String text) {
+        return text == null ? 0 : 24 + text.length() * 2;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(elementId);
+        CommandCodec.writeText(oldText, out);
+        CommandCodec.writeText(newText, out);
+    }
+
+    static TextCommand read(DataInput in) throws IOException {
+        return new TextCommand(in.readInt(), CommandCodec.readText(in), CommandCodec.readText(in));
+    }
+}
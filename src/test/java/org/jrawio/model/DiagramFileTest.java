@@ -0,0 +1,115 @@
+package org.jrawio.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link DiagramFile}保存后重新读取的测试
+ */
+class DiagramFileTest {
+
+    @Test
+    void roundTripKeepsEveryProperty() throws IOException {
+        Diagram diagram = new Diagram();
+        double x = 10;
+        DiagramElement first = null;
+        DiagramElement last = null;
+        for (ShapeType type : ShapeType.values()) {
+            if (DiagramElement.isEdgeType(type)) {
+                continue;
+            }
+            last = diagram.addNode(type, x, 20.25, 80.5, 40);
+            if (first == null) {
+                first = last;
+            }
+            x += 120.125;
+        }
+        diagram.setText(first.getId(), "第一行\n第二行\r\n\t缩进");
+        diagram.setText(last.getId(), "");
+        diagram.setStyle(first.getId(), new ShapeStyle(0x80FF0000, 0x4000FF00, 0xFF0000FF, 2.5));
+        diagram.setStyle(last.getId(), new ShapeStyle(0x00000000, 0x12345678, 0x87654321, 0.1));
+        for (ShapeType type : ShapeType.values()) {
+            if (!DiagramElement.isEdgeType(type)) {
+                continue;
+            }
+            DiagramElement edge = diagram.addEdge(type, 90.5, 40, 130.625, -0.01);
+            diagram.connect(edge.getId(), first.getId(), last.getId());
+            diagram.setText(edge.getId(), "连线\n说明");
+            diagram.setStyle(edge.getId(), new ShapeStyle(0x7F102030, 0xFF000000, 0x01ABCDEF, 3.75));
+            DiagramElement loose = diagram.addEdge(type, 1e13, Math.PI, -0.0, 0.005);
+            diagram.connect(loose.getId(), DiagramElement.NO_ELEMENT, last.getId());
+        }
+
+        assertRoundTrip(diagram);
+    }
+
+    @Test
+    void roundTripKeepsStackingOrder() throws IOException {
+        Diagram diagram = new Diagram();
+        DiagramElement bottom = diagram.addNode(ShapeType.RECTANGLE, 0, 0, 100, 100);
+        DiagramElement edge = diagram.addEdge(ShapeType.ARROW, 0, 0, 200, 200);
+        DiagramElement top = diagram.addNode(ShapeType.OVAL, 50, 50, 100, 100);
+        diagram.connect(edge.getId(), bottom.getId(), top.getId());
+        diagram.remove(bottom.getId());
+        diagram.addNode(ShapeType.DIAMOND, 25, 25, 10, 10);
+
+        assertRoundTrip(diagram);
+    }
+
+    @Test
+    void renumbersOversizedIds() throws IOException {
+        DiagramElement node = new DiagramElement(300_000_000, ShapeType.RECTANGLE);
+        node.width = 10;
+        node.height = 10;
+        DiagramElement edge = new DiagramElement(Integer.MAX_VALUE, ShapeType.ARROW);
+        edge.sourceId = node.getId();
+        edge.targetId = 7;
+        List<DiagramElement> elements = new ArrayList<>();
+        elements.add(edge);
+        elements.add(node);
+
+        List<DiagramElement> loaded = DiagramFile.wrap(DiagramFile.encode(elements)).readAll();
+        assertEquals(1, loaded.get(0).getId());
+        assertEquals(2, loaded.get(1).getId());
+        assertEquals(2, loaded.get(0).getSourceId());
+        assertEquals(DiagramElement.NO_ELEMENT, loaded.get(0).getTargetId());
+    }
+
+    /**
+     * 保存文档后读入新的文档，检查每个图元的属性和顺序
+     */
+    private static void assertRoundTrip(Diagram diagram) throws IOException {
+        Diagram loaded = new Diagram();
+        loaded.load(DiagramFile.wrap(DiagramFile.encode(diagram.getElements())).readAll());
+
+        List<DiagramElement> expected = new ArrayList<>(diagram.getElements());
+        List<DiagramElement> actual = new ArrayList<>(loaded.getElements());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            DiagramElement a = expected.get(i);
+            DiagramElement b = actual.get(i);
+            assertEquals(a.getId(), b.getId());
+            assertEquals(a.getType(), b.getType());
+            assertEquals(a.getText(), b.getText());
+            assertEquals(a.getStyle(), b.getStyle());
+            if (a.isEdge()) {
+                assertEquals(a.getStartX(), b.getStartX());
+                assertEquals(a.getStartY(), b.getStartY());
+                assertEquals(a.getEndX(), b.getEndX());
+                assertEquals(a.getEndY(), b.getEndY());
+                assertEquals(a.getSourceId(), b.getSourceId());
+                assertEquals(a.getTargetId(), b.getTargetId());
+            } else {
+                assertEquals(a.getX(), b.getX());
+                assertEquals(a.getY(), b.getY());
+                assertEquals(a.getWidth(), b.getWidth());
+                assertEquals(a.getHeight(), b.getHeight());
+            }
+        }
+    }
+}